@@ -0,0 +1,46 @@
+package org.beyene.ledger.api;
+
+import org.beyene.ledger.api.error.MappingException;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Serializer that writes into a buffer supplied by the caller.</p>
+ * <p>Ledgers pass a reused buffer, so serializing a message doesn't allocate. If the remaining space isn't
+ * sufficient, the serializer throws a BufferOverflowException and the ledger retries with a larger buffer.</p>
+ *
+ * @param <T>
+ */
+@FunctionalInterface
+public interface BufferSerializer<T> extends Serializer<T, ByteBuffer> {
+
+    /**
+     * @param t      object to be serialized
+     * @param target serialized data is written at the position of the buffer
+     * @throws MappingException
+     * @throws IllegalArgumentException if given object is not supported
+     * @throws BufferOverflowException  if the remaining space of target is too small
+     */
+    void serialize(T t, ByteBuffer target) throws MappingException, IllegalArgumentException, BufferOverflowException;
+
+    /**
+     * @return new buffer with the serialized data between position and limit
+     */
+    @Override
+    default ByteBuffer serialize(T t) throws MappingException, IllegalArgumentException {
+        int maxCapacity = Integer.MAX_VALUE - 8;
+        ByteBuffer target = ByteBuffer.allocate(256);
+        while (true) {
+            try {
+                serialize(t, target);
+                target.flip();
+                return target;
+            } catch (BufferOverflowException e) {
+                if (target.capacity() >= maxCapacity)
+                    throw new IllegalArgumentException("Serialized object exceeds " + maxCapacity + " bytes", e);
+                target = ByteBuffer.allocate((int) Math.min(2L * target.capacity(), maxCapacity));
+            }
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package org.beyene.ledger.api;
+
+import org.beyene.ledger.api.metrics.Metrics;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Read-through cache in front of another ledger.</p>
+ * <p>Decoded transactions are kept in a time index together with the time ranges they cover. A range query only
+ * asks the delegate for the parts of the range that are not cached yet, a query within cached ranges doesn't
+ * reach the delegate at all. Ranges later than the settle time before now are not cached, since the delegate may
+ * still receive transactions for them; the default of five minutes matches the sliding window of IotaLedger, a
+ * delegate that receives late transactions for longer needs a longer settle time. The number of cached
+ * transactions is bounded, the oldest are evicted first.</p>
+ * <p>Writes go to the delegate and invalidate the cached range at the timestamp of the transaction. Tag queries
+ * are forwarded, because the delegate may answer them from other sources. Transactions without timestamp can't be
+ * indexed, ranges that return them are not cached.</p>
+ * <p>The delegate is read without holding the lock. If a write invalidates cached ranges meanwhile, the query is
+ * answered by the delegate alone and nothing is cached.</p>
+ *
+ * @param <M> Message type
+ * @param <D> Data type in ledger, e.g. String or byte[]
+ */
+public class CachingLedger<M, D> implements Ledger<M, D> {
+
+    private static final Duration NANO = Duration.ofNanos(1);
+
+    private final Ledger<M, D> delegate;
+    private final int maxSize;
+    private final Duration settleTime;
+    private final Clock clock;
+    private final Metrics metrics;
+
+    private final ConcurrentNavigableMap<Key, Transaction<M>> cache;
+    private final ReadWriteLock lock;
+
+    // guarded by lock, disjoint open intervals (start, end) whose transactions are cached
+    private final NavigableMap<Instant, Instant> covered;
+    private int size;
+    private long sequence;
+    // incremented whenever cached ranges are invalidated
+    private long version;
+
+    private CachingLedger(Builder<M, D> builder) {
+        this.delegate = Objects.requireNonNull(builder.delegate);
+        this.maxSize = builder.maxSize;
+        this.settleTime = builder.settleTime;
+        this.clock = builder.clock;
+        this.metrics = builder.metrics;
+
+        this.cache = new ConcurrentSkipListMap<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.covered = new TreeMap<>();
+    }
+
+    @Override
+    public Transaction<M> addTransaction(Transaction<M> transaction) throws IOException {
+        Transaction<M> added = delegate.addTransaction(transaction);
+
+        Instant timestamp = added != null && added.getTimestamp() != null
+                ? added.getTimestamp()
+                : transaction.getTimestamp();
+
+        lock.writeLock().lock();
+        try {
+            if (timestamp != null)
+                invalidate(timestamp);
+            else
+                clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return added;
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
+        Objects.requireNonNull(since);
+        Objects.requireNonNull(to);
+        if (!since.isBefore(to))
+            return new ArrayList<>();
+
+        List<Range> gaps;
+        long readVersion;
+        lock.readLock().lock();
+        try {
+            gaps = gaps(since, to);
+            if (gaps.isEmpty()) {
+                metrics.increment("cache.range.hits", 1);
+                return read(since, to);
+            }
+            readVersion = version;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        metrics.increment("cache.range.misses", 1);
+        List<List<Transaction<M>>> fetched = new ArrayList<>(gaps.size());
+        for (Range gap : gaps)
+            fetched.add(delegate.getTransactions(gap.since, gap.to));
+
+        lock.writeLock().lock();
+        try {
+            if (readVersion == version)
+                return merge(since, to, gaps, fetched);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // a write invalidated cached ranges while the gaps were read
+        return delegate.getTransactions(since, to);
+    }
+
+    // requires write lock
+    private List<Transaction<M>> merge(Instant since, Instant to, List<Range> gaps, List<List<Transaction<M>>> fetched) {
+        Instant horizon = clock.instant().minus(settleTime);
+        // transactions of ranges that are too recent or can't be cached
+        List<Transaction<M>> uncached = new ArrayList<>();
+
+        for (int i = 0; i < gaps.size(); i++) {
+            Range gap = gaps.get(i);
+            List<Transaction<M>> transactions = fetched.get(i);
+            boolean indexable = transactions.stream().allMatch(tx -> tx.getTimestamp() != null);
+
+            Instant coveredTo = horizon.isBefore(gap.to) ? horizon : gap.to;
+            for (Transaction<M> tx : transactions) {
+                Instant timestamp = tx.getTimestamp();
+                if (timestamp == null) {
+                    uncached.add(tx);
+                    continue;
+                }
+
+                // a concurrent query may have cached the timestamp already
+                if (!timestamp.isAfter(gap.since) || !timestamp.isBefore(gap.to) || isCovered(timestamp))
+                    continue;
+
+                if (indexable && timestamp.isBefore(coveredTo))
+                    put(tx);
+                else
+                    uncached.add(tx);
+            }
+
+            if (indexable)
+                cover(gap.since, coveredTo);
+        }
+
+        // answer may be larger than the cache
+        List<Transaction<M>> transactions = read(since, to);
+        evict();
+
+        if (!uncached.isEmpty()) {
+            transactions.addAll(uncached);
+            transactions.sort(Comparator.comparing(Transaction::getTimestamp,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        return transactions;
+    }
+
+    private boolean isCovered(Instant timestamp) {
+        Map.Entry<Instant, Instant> interval = covered.lowerEntry(timestamp);
+        return interval != null && interval.getValue().isAfter(timestamp);
+    }
+
+    /**
+     * @return ranges in (since, to) that are not covered, ordered by time
+     */
+    private List<Range> gaps(Instant since, Instant to) {
+        List<Range> gaps = new ArrayList<>();
+
+        List<Map.Entry<Instant, Instant>> candidates = new ArrayList<>();
+        Map.Entry<Instant, Instant> floor = covered.floorEntry(since);
+        if (floor != null && floor.getValue().isAfter(since))
+            candidates.add(floor);
+        candidates.addAll(covered.subMap(since, false, to, false).entrySet());
+
+        // instants are discrete, (cursor, x) contains everything from cursor + 1ns up to x - 1ns
+        Instant cursor = since;
+        for (Map.Entry<Instant, Instant> interval : candidates) {
+            Instant start = interval.getKey();
+            if (start.isAfter(cursor)) {
+                // start itself is not part of the open interval
+                Instant end = start.plus(NANO);
+                gaps.add(new Range(cursor, end.isBefore(to) ? end : to));
+            }
+
+            Instant last = interval.getValue().minus(NANO);
+            if (last.isAfter(cursor))
+                cursor = last;
+        }
+
+        if (cursor.plus(NANO).isBefore(to))
+            gaps.add(new Range(cursor, to));
+        return gaps;
+    }
+
+    private void cover(Instant since, Instant to) {
+        if (!since.plus(NANO).isBefore(to))
+            return;
+
+        Instant start = since;
+        Instant end = to;
+        // intervals are disjoint, so the ends decrease with the starts
+        Map.Entry<Instant, Instant> interval = covered.lowerEntry(end);
+        while (interval != null && interval.getValue().isAfter(start)) {
+            if (interval.getKey().isBefore(start))
+                start = interval.getKey();
+            if (interval.getValue().isAfter(end))
+                end = interval.getValue();
+
+            covered.remove(interval.getKey());
+            interval = covered.lowerEntry(end);
+        }
+        covered.put(start, end);
+    }
+
+    private void invalidate(Instant timestamp) {
+        version++;
+        Map.Entry<Instant, Instant> interval = covered.lowerEntry(timestamp);
+        if (interval != null && interval.getValue().isAfter(timestamp)) {
+            covered.remove(interval.getKey());
+            cover(interval.getKey(), timestamp);
+            cover(timestamp, interval.getValue());
+        }
+
+        NavigableMap<Key, Transaction<M>> removed =
+                cache.subMap(new Key(timestamp, Long.MIN_VALUE), true, new Key(timestamp, Long.MAX_VALUE), true);
+        size -= removed.size();
+        removed.clear();
+    }
+
+    private void evict() {
+        if (maxSize <= 0)
+            return;
+
+        while (size > maxSize) {
+            Instant oldest = cache.firstKey().timestamp;
+
+            // all transactions of a timestamp are evicted together, so (oldest, end) stays covered
+            NavigableMap<Key, Transaction<M>> removed = cache.headMap(new Key(oldest, Long.MAX_VALUE), true);
+            size -= removed.size();
+            removed.clear();
+
+            NavigableMap<Instant, Instant> clipped = new TreeMap<>(covered.headMap(oldest, false));
+            clipped.forEach((start, end) -> {
+                covered.remove(start);
+                cover(oldest, end);
+            });
+        }
+    }
+
+    private void put(Transaction<M> transaction) {
+        cache.put(new Key(transaction.getTimestamp(), sequence++), transaction);
+        size++;
+    }
+
+    private List<Transaction<M>> read(Instant since, Instant to) {
+        return new ArrayList<>(cache.subMap(
+                new Key(since, Long.MAX_VALUE), false, new Key(to, Long.MIN_VALUE), false).values());
+    }
+
+    private void clear() {
+        version++;
+        cache.clear();
+        covered.clear();
+        size = 0;
+    }
+
+    /**
+     * Drops all cached transactions, the next query reads through to the delegate.
+     */
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        return delegate.getTransactions(tag, since, to);
+    }
+
+    @Override
+    public boolean addTransactionListener(String tag, TransactionListener<M> listener) {
+        return delegate.addTransactionListener(tag, listener);
+    }
+
+    @Override
+    public boolean removeTransactionListener(String tag) {
+        return delegate.removeTransactionListener(tag);
+    }
+
+    @Override
+    public Map<String, TransactionListener<M>> getTransactionListeners() {
+        return delegate.getTransactionListeners();
+    }
+
+    @Override
+    public Format<D> getFormat() {
+        return delegate.getFormat();
+    }
+
+    @Override
+    public void close() throws IOException {
+        invalidateAll();
+        delegate.close();
+    }
+
+    private static final class Range {
+
+        private final Instant since;
+        private final Instant to;
+
+        Range(Instant since, Instant to) {
+            this.since = since;
+            this.to = to;
+        }
+    }
+
+    private static final class Key implements Comparable<Key> {
+
+        private final Instant timestamp;
+        private final long sequence;
+
+        Key(Instant timestamp, long sequence) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int cmp = timestamp.compareTo(other.timestamp);
+            return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key that = (Key) o;
+            return sequence == that.sequence && timestamp.equals(that.timestamp);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * timestamp.hashCode() + Long.hashCode(sequence);
+        }
+    }
+
+    public static class Builder<M, D> {
+
+        private Ledger<M, D> delegate;
+        private int maxSize = 10_000; // in transactions, 0 is unbounded
+        private Duration settleTime = Duration.ofMinutes(5);
+        private Clock clock = Clock.systemUTC();
+        private Metrics metrics = Metrics.noop();
+
+        public Builder<M, D> setDelegate(Ledger<M, D> delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        public Builder<M, D> setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param settleTime time after which the delegate doesn't receive transactions for a timestamp anymore,
+         *                   zero only if transactions always arrive in timestamp order
+         */
+        public Builder<M, D> setSettleTime(Duration settleTime) {
+            Objects.requireNonNull(settleTime);
+            if (settleTime.isNegative())
+                throw new IllegalArgumentException("Settle time must not be negative: " + settleTime);
+            this.settleTime = settleTime;
+            return this;
+        }
+
+        public Builder<M, D> setClock(Clock clock) {
+            Objects.requireNonNull(clock);
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder<M, D> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public CachingLedger<M, D> build() {
+            return new CachingLedger<>(this);
+        }
+    }
+}
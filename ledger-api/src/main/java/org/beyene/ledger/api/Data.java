@@ -1,5 +1,7 @@
 package org.beyene.ledger.api;
 
+import java.nio.ByteBuffer;
+
 /**
  * <p>Utility class that stores standard formats.</p>
  * In order to define own formats, implement org.beyene.ledger.api.Format.
@@ -17,6 +19,14 @@ public final class Data {
      */
     public static final Format<byte[]> BYTES = () -> byte[].class;
 
+    /**
+     * <p>Binary data without intermediate copies.</p>
+     * <p>Serialized data is read from position to limit. Buffers passed to a Deserializer are only valid during
+     * the call, since ledgers reuse them; Deserializers must not keep a reference. Use a BufferSerializer to
+     * write into buffers provided by the ledger.</p>
+     */
+    public static final Format<ByteBuffer> BYTE_BUFFER = () -> ByteBuffer.class;
+
     private Data() {
         throw new AssertionError("no instances allowed");
     }
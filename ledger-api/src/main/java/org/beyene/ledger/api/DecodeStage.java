@@ -0,0 +1,146 @@
+package org.beyene.ledger.api;
+
+import org.beyene.ledger.api.error.MappingException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Decodes batches of messages, e.g. with a Deserializer, on several threads.</p>
+ * <p>A batch is split into chunks that run on a dedicated ForkJoinPool; small batches stay on the calling thread.
+ * Results keep the order of the inputs. A message that fails with a MappingException is logged and left out, so
+ * it doesn't affect the others. Other exceptions are thrown to the caller after the batch is done.</p>
+ * <p>With more than one thread the decoder is called concurrently, so it has to be thread-safe.</p>
+ */
+public class DecodeStage implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(DecodeStage.class.getName());
+
+    /**
+     * Name of the property with the number of decoding threads. Use 0 for the number of available processors.
+     */
+    public static final String PROPERTY = "ledger.decode.threads";
+
+    // messages per task, smaller chunks don't pay off
+    private static final int MIN_CHUNK = 16;
+
+    private static final DecodeStage SEQUENTIAL = new DecodeStage(1);
+
+    // marks inputs that failed
+    private static final Object SKIPPED = new Object();
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param threads number of decoding threads, 1 decodes on the calling thread
+     */
+    public DecodeStage(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is required: " + threads);
+
+        this.parallelism = threads;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * @return stage that decodes on the calling thread
+     */
+    public static DecodeStage sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * @param threads number of decoding threads, 0 for the number of available processors
+     * @return sequential stage for one thread, otherwise a new stage
+     */
+    public static DecodeStage withThreads(int threads) {
+        if (threads == 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        return threads == 1 ? sequential() : new DecodeStage(threads);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return decoded inputs in input order, without the ones that failed with a MappingException
+     */
+    public <T, R> List<R> decode(List<? extends T> inputs, Function<? super T, ? extends R> decoder) {
+        Object[] results = new Object[inputs.size()];
+        int chunks = pool == null ? 1 : Math.min(parallelism * 4, (inputs.size() + MIN_CHUNK - 1) / MIN_CHUNK);
+
+        if (chunks <= 1) {
+            decode(inputs, decoder, results, 0, inputs.size());
+        } else {
+            int chunkSize = (inputs.size() + chunks - 1) / chunks;
+            List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+            for (int from = 0; from < inputs.size(); from += chunkSize) {
+                int start = from;
+                int end = Math.min(from + chunkSize, inputs.size());
+                futures.add(CompletableFuture.runAsync(() -> decode(inputs, decoder, results, start, end), pool));
+            }
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        return collect(results);
+    }
+
+    private static <T, R> void decode(List<? extends T> inputs, Function<? super T, ? extends R> decoder,
+                                      Object[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                results[i] = decoder.apply(inputs.get(i));
+            } catch (MappingException e) {
+                // e.g. message of a non-conforming client, just log and ignore
+                LOGGER.log(Level.INFO, e.toString(), e);
+                results[i] = SKIPPED;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> collect(Object[] results) {
+        List<R> decoded = new ArrayList<>(results.length);
+        for (Object result : results)
+            if (result != SKIPPED)
+                decoded.add((R) result);
+        return decoded;
+    }
+
+    /**
+     * Stops the threads, the sequential stage can't be closed.
+     */
+    @Override
+    public void close() {
+        if (pool == null)
+            return;
+
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DecodeStage[parallelism=" + parallelism + "]";
+    }
+}
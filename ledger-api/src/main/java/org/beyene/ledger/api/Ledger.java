@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * @param <M> Message type
@@ -28,6 +30,23 @@ public interface Ledger<M, D> extends AutoCloseable {
      */
     List<Transaction<M>> getTransactions(Instant since, Instant to);
 
+    /**
+     * Unlike {@link #getTransactions(Instant, Instant)}, the tag doesn't have to be subscribed. Implementations
+     * may query the backend for it.
+     *
+     * @param tag   <code>null</code> is not allowed
+     * @param since has to be greater or equal to Instant.MIN
+     * @param to    has to be smaller or equal to Instant.MAX
+     * @return
+     */
+    default List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        Objects.requireNonNull(tag);
+        return getTransactions(since, to)
+                .stream()
+                .filter(tx -> tag.equals(tx.getTag()))
+                .collect(Collectors.toList());
+    }
+
     // tag == null means listen to all, already registered, tags (i.e. through configuration)
     // TODO check whether null tag makes sense
 
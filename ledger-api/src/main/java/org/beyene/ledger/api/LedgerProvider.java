@@ -13,7 +13,8 @@ public interface LedgerProvider {
      * <p>General properties and default values:</p>
      * <ul>
      * <li>ledger.poll.interval</li>
-     * <p>Interval in which the ledger should be polled for new data (if necessary).</p>
+     * <p>Interval in which the ledger should be polled for new data (if necessary). Ledgers that adapt the
+     * interval to the traffic start with it.</p>
      * <p>Default value is 5000 (in ms, int).</p>
      * <p>
      * <li>client.push.interval</li>
@@ -34,6 +35,20 @@ public interface LedgerProvider {
      * <p>Number of threads in the used pool. Use 0 to set threads to number of available processors.</p>
      * <p>Default is 2 (int).</p>
      * <p>
+     * <li>ledger.metrics</li>
+     * <p>Instance of org.beyene.ledger.api.metrics.Metrics that records latencies and sizes of hot paths.</p>
+     * <p>Default is no instrumentation.</p>
+     * <p>
+     * <li>ledger.buffer.pool</li>
+     * <p>Instance of org.beyene.ledger.api.buffer.BufferPool that provides scratch space for serialization and
+     * I/O.</p>
+     * <p>Default is the shared pool.</p>
+     * <p>
+     * <li>ledger.decode.threads</li>
+     * <p>Number of threads that deserialize received and read messages, the Deserializer has to be thread-safe
+     * for more than one. Use 0 to set threads to number of available processors.</p>
+     * <p>Default is 1 (int).</p>
+     * <p>
      * </ul>
      *
      * @param serializer
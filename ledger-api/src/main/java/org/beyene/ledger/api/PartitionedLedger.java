@@ -0,0 +1,183 @@
+package org.beyene.ledger.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Ledger that spreads tags over several partitions.</p>
+ * <p>Every tag belongs to exactly one partition, chosen by consistent hashing, so adding a partition moves only
+ * a fraction of the tags. Writes, listeners and tag queries go to the partition of the tag. Range queries ask all
+ * partitions in parallel and merge the answers by timestamp; transactions without timestamp come last.</p>
+ *
+ * @param <M> Message type
+ * @param <D> Data type in ledger, e.g. String or byte[]
+ */
+public class PartitionedLedger<M, D> implements Ledger<M, D> {
+
+    // points per partition on the ring, evens out the share of each partition
+    private static final int VIRTUAL_NODES = 64;
+
+    private static final Comparator<Transaction<?>> BY_TIMESTAMP =
+            Comparator.comparing(Transaction::getTimestamp, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final List<Ledger<M, D>> partitions;
+    private final NavigableMap<Long, Integer> ring;
+    private final ExecutorService executor;
+
+    /**
+     * @param partitions ledgers of the same format, the order defines the assignment of tags
+     */
+    public PartitionedLedger(List<? extends Ledger<M, D>> partitions) {
+        if (partitions.isEmpty())
+            throw new IllegalArgumentException("At least one partition is required");
+
+        this.partitions = Collections.unmodifiableList(new ArrayList<>(partitions));
+        this.ring = new TreeMap<>();
+        for (int i = 0; i < partitions.size(); i++)
+            for (int v = 0; v < VIRTUAL_NODES; v++)
+                ring.put(hash("partition-" + i + "#" + v), i);
+
+        this.executor = Executors.newFixedThreadPool(partitions.size(), runnable -> {
+            Thread thread = new Thread(runnable, "partitioned-ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int partitionOf(String tag) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(Objects.toString(tag, "")));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    private Ledger<M, D> partition(String tag) {
+        return partitions.get(partitionOf(tag));
+    }
+
+    @Override
+    public Transaction<M> addTransaction(Transaction<M> transaction) throws IOException {
+        return partition(transaction.getTag()).addTransaction(transaction);
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
+        List<CompletableFuture<List<Transaction<M>>>> futures = partitions.stream()
+                .map(ledger -> CompletableFuture.supplyAsync(() -> sorted(ledger.getTransactions(since, to)), executor))
+                .collect(Collectors.toList());
+
+        List<List<Transaction<M>>> results;
+        try {
+            results = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return merge(results);
+    }
+
+    private static <M> List<Transaction<M>> sorted(List<Transaction<M>> transactions) {
+        List<Transaction<M>> copy = new ArrayList<>(transactions);
+        copy.sort(BY_TIMESTAMP);
+        return copy;
+    }
+
+    private static <M> List<Transaction<M>> merge(List<List<Transaction<M>>> results) {
+        int size = results.stream().mapToInt(List::size).sum();
+        List<Transaction<M>> merged = new ArrayList<>(size);
+
+        // heads of the sorted partition answers, ties keep the partition order
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, results.size()), (lhs, rhs) -> {
+            int cmp = BY_TIMESTAMP.compare(results.get(lhs[0]).get(lhs[1]), results.get(rhs[0]).get(rhs[1]));
+            return cmp != 0 ? cmp : Integer.compare(lhs[0], rhs[0]);
+        });
+        for (int i = 0; i < results.size(); i++)
+            if (!results.get(i).isEmpty())
+                heads.add(new int[]{i, 0});
+
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Transaction<M>> result = results.get(head[0]);
+            merged.add(result.get(head[1]));
+            if (++head[1] < result.size())
+                heads.add(head);
+        }
+
+        return merged;
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        Objects.requireNonNull(tag);
+        return sorted(partition(tag).getTransactions(tag, since, to));
+    }
+
+    @Override
+    public boolean addTransactionListener(String tag, TransactionListener<M> listener) {
+        Objects.requireNonNull(tag);
+        return partition(tag).addTransactionListener(tag, listener);
+    }
+
+    @Override
+    public boolean removeTransactionListener(String tag) {
+        return partition(tag).removeTransactionListener(tag);
+    }
+
+    @Override
+    public Map<String, TransactionListener<M>> getTransactionListeners() {
+        Map<String, TransactionListener<M>> listeners = new HashMap<>();
+        partitions.forEach(ledger -> listeners.putAll(ledger.getTransactionListeners()));
+        return listeners;
+    }
+
+    @Override
+    public Format<D> getFormat() {
+        return partitions.get(0).getFormat();
+    }
+
+    public List<Ledger<M, D>> getPartitions() {
+        return partitions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+
+        IOException failure = null;
+        for (Ledger<M, D> ledger : partitions) {
+            try {
+                ledger.close();
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    // 64 bit FNV-1a with MurmurHash3 finalizer, similar tags have to land far apart on the ring
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,99 @@
+package org.beyene.ledger.api;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Provider for PartitionedLedger, the partitions are created by another provider.</p>
+ * <p>Properties and default values:</p>
+ * <ul>
+ * <li>ledger.partitions</li>
+ * <p>Number of partitions.</p>
+ * <p>Default is 1 (int).</p>
+ * <li>partition.&lt;index&gt;.&lt;property&gt;</li>
+ * <p>Overrides a property for the partition with the given index, e.g. partition.1.file.directory.</p>
+ * </ul>
+ * <p>All other properties are passed to every partition. Listeners are registered at the partition of their
+ * tag.</p>
+ */
+public class PartitionedLedgerProvider implements LedgerProvider {
+
+    private static final Logger LOGGER = Logger.getLogger(PartitionedLedgerProvider.class.getName());
+
+    private static final String PREFIX = "partition.";
+
+    private final LedgerProvider provider;
+
+    public PartitionedLedgerProvider(LedgerProvider provider) {
+        this.provider = Objects.requireNonNull(provider);
+    }
+
+    @Override
+    public <M, D> Ledger<M, D> newLedger(Serializer<M, D> serializer,
+                                         Deserializer<M, D> deserializer,
+                                         Format<D> format,
+                                         Map<String, TransactionListener<M>> listeners,
+                                         Map<String, Object> properties) {
+        Objects.requireNonNull(listeners);
+        Objects.requireNonNull(properties);
+
+        int count = parsePartitions(properties.get("ledger.partitions"));
+        List<Ledger<M, D>> partitions = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++)
+                partitions.add(provider.newLedger(serializer, deserializer, format,
+                        Collections.emptyMap(), propertiesOf(i, properties)));
+        } catch (RuntimeException e) {
+            closeQuietly(partitions);
+            throw e;
+        }
+
+        PartitionedLedger<M, D> ledger = new PartitionedLedger<>(partitions);
+        listeners.forEach(ledger::addTransactionListener);
+        return ledger;
+    }
+
+    private static Map<String, Object> propertiesOf(int partition, Map<String, Object> properties) {
+        String prefix = PREFIX + partition + ".";
+
+        Map<String, Object> result = new HashMap<>();
+        properties.forEach((key, value) -> {
+            if (!key.startsWith(PREFIX))
+                result.put(key, value);
+        });
+        properties.forEach((key, value) -> {
+            if (key.startsWith(prefix))
+                result.put(key.substring(prefix.length()), value);
+        });
+        return result;
+    }
+
+    private static int parsePartitions(Object value) {
+        if (Objects.isNull(value))
+            return 1;
+
+        int partitions;
+        try {
+            partitions = Integer.parseInt(Objects.toString(value).trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalArgumentException("Not a valid number: " + value, e);
+        }
+
+        if (partitions < 1)
+            throw new IllegalArgumentException("ledger.partitions must be positive: " + partitions);
+        return partitions;
+    }
+
+    private static void closeQuietly(List<? extends Ledger<?, ?>> ledgers) {
+        for (Ledger<?, ?> ledger : ledgers) {
+            try {
+                ledger.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.toString(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package org.beyene.ledger.api.buffer;
+
+import org.beyene.ledger.api.BufferSerializer;
+import org.beyene.ledger.api.error.MappingException;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * <p>Pool of reusable byte buffers and char arrays for serialization and I/O.</p>
+ * <p>Requests are rounded up to size classes of powers of two, from 256 up to the maximum pooled size; larger
+ * requests are allocated and never pooled. Every thread keeps a few released instances per size class, so most
+ * acquire and release calls don't synchronize. Surplus instances go to a shared cache, which is bounded per size
+ * class by a number of instances and by bytes, so it keeps fewer instances of large classes. Instances beyond
+ * that are left to the garbage collector.</p>
+ * <p>Released instances must not be used any more. Releasing an instance that wasn't acquired from the pool is
+ * allowed, it is kept if its size matches a size class.</p>
+ */
+public class BufferPool {
+
+    /**
+     * Name of the property that holds the BufferPool instance of a ledger.
+     */
+    public static final String PROPERTY = "ledger.buffer.pool";
+
+    private static final int MIN_SHIFT = 8;
+
+    private static final BufferPool SHARED = new Builder().build();
+
+    private final int maxShift;
+    private final boolean direct;
+    private final Arena<ByteBuffer> buffers;
+    private final Arena<char[]> chars;
+
+    private BufferPool(Builder builder) {
+        if (builder.maxSize < 1 << MIN_SHIFT)
+            throw new IllegalArgumentException("Maximum pooled size must be at least " + (1 << MIN_SHIFT));
+
+        this.maxShift = Integer.SIZE - Integer.numberOfLeadingZeros(builder.maxSize - 1);
+        this.direct = builder.direct;
+
+        int classes = maxShift - MIN_SHIFT + 1;
+        IntFunction<ByteBuffer> allocator = direct ? ByteBuffer::allocateDirect : ByteBuffer::allocate;
+        this.buffers = new Arena<>(classes, builder.threadCacheSize, sharedLimits(classes, Byte.BYTES, builder),
+                allocator);
+        this.chars = new Arena<>(classes, builder.threadCacheSize, sharedLimits(classes, Character.BYTES, builder),
+                char[]::new);
+    }
+
+    private static int[] sharedLimits(int classes, int unitBytes, Builder builder) {
+        int[] limits = new int[classes];
+        for (int i = 0; i < classes; i++) {
+            long bytes = (long) unitBytes << (i + MIN_SHIFT);
+            limits[i] = (int) Math.min(builder.sharedCacheSize, builder.sharedCacheBytes / bytes);
+        }
+        return limits;
+    }
+
+    /**
+     * @return pool used by the ledgers, unless another pool is configured
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return BufferPool of the property <code>ledger.buffer.pool</code> or the shared pool
+     */
+    public static BufferPool fromProperties(Map<String, Object> properties) {
+        Object pool = properties.get(PROPERTY);
+        return pool instanceof BufferPool ? (BufferPool) pool : shared();
+    }
+
+    /**
+     * @return cleared buffer with at least the given capacity
+     */
+    public ByteBuffer acquire(int capacity) {
+        int index = sizeClass(capacity);
+        if (index < 0)
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+
+        ByteBuffer buffer = buffers.acquire(index, 1 << (index + MIN_SHIFT));
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isReadOnly() || buffer.isDirect() != direct)
+            return;
+
+        int index = exactSizeClass(buffer.capacity());
+        if (index >= 0)
+            buffers.release(index, buffer);
+    }
+
+    /**
+     * @return array with at least the given length, its content is undefined
+     */
+    public char[] acquireChars(int length) {
+        int index = sizeClass(length);
+        if (index < 0)
+            return new char[length];
+        return chars.acquire(index, 1 << (index + MIN_SHIFT));
+    }
+
+    public void release(char[] array) {
+        if (array == null)
+            return;
+
+        int index = exactSizeClass(array.length);
+        if (index >= 0)
+            chars.release(index, array);
+    }
+
+    /**
+     * Serializes into a pooled buffer, that grows until the serialized object fits.
+     *
+     * @param maxCapacity maximum size of the serialized object in bytes
+     * @return buffer with the serialized data between position and limit, to be released by the caller
+     * @throws IllegalArgumentException if the serialized object exceeds maxCapacity
+     */
+    public <T> ByteBuffer serialize(BufferSerializer<T> serializer, T t, int maxCapacity) throws MappingException {
+        int limit = Math.min(4096, maxCapacity);
+        while (true) {
+            ByteBuffer buffer = acquire(limit);
+            // size classes may exceed the maximum
+            buffer.limit(limit);
+            try {
+                serializer.serialize(t, buffer);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                release(buffer);
+                if (limit >= maxCapacity)
+                    throw new IllegalArgumentException("Serialized object exceeds " + maxCapacity + " bytes", e);
+                limit = (int) Math.min(2L * limit, maxCapacity);
+            } catch (RuntimeException e) {
+                release(buffer);
+                throw e;
+            }
+        }
+    }
+
+    private int sizeClass(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Negative size: " + size);
+
+        int shift = Math.max(MIN_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(0, size - 1)));
+        return shift <= maxShift ? shift - MIN_SHIFT : -1;
+    }
+
+    private int exactSizeClass(int size) {
+        int index = size > 0 && Integer.bitCount(size) == 1 ? sizeClass(size) : -1;
+        return index >= 0 && 1 << (index + MIN_SHIFT) == size ? index : -1;
+    }
+
+    /**
+     * @return number of instances that were allocated since the pool had none of the requested size
+     */
+    public long getAllocations() {
+        return buffers.allocations.sum() + chars.allocations.sum();
+    }
+
+    public long getReuses() {
+        return buffers.reuses.sum() + chars.reuses.sum();
+    }
+
+    private static final class Arena<T> {
+
+        private final int threadCacheSize;
+        // instances per size class
+        private final int[] sharedLimits;
+        private final IntFunction<T> allocator;
+
+        private final ThreadLocal<ThreadCache> threadCaches;
+        private final List<Queue<T>> shared;
+        private final AtomicIntegerArray sharedSizes;
+
+        private final LongAdder allocations;
+        private final LongAdder reuses;
+
+        Arena(int classes, int threadCacheSize, int[] sharedLimits, IntFunction<T> allocator) {
+            this.threadCacheSize = threadCacheSize;
+            this.sharedLimits = sharedLimits;
+            this.allocator = allocator;
+            this.threadCaches = ThreadLocal.withInitial(() -> new ThreadCache(classes));
+            this.shared = new ArrayList<>(classes);
+            for (int i = 0; i < classes; i++)
+                shared.add(new ConcurrentLinkedQueue<>());
+            this.sharedSizes = new AtomicIntegerArray(classes);
+            this.allocations = new LongAdder();
+            this.reuses = new LongAdder();
+        }
+
+        T acquire(int index, int size) {
+            ThreadCache cache = threadCaches.get();
+            T instance = cache.pop(index);
+            if (instance == null) {
+                instance = shared.get(index).poll();
+                if (instance != null)
+                    sharedSizes.decrementAndGet(index);
+            }
+
+            if (instance != null) {
+                reuses.increment();
+                return instance;
+            }
+
+            allocations.increment();
+            return allocator.apply(size);
+        }
+
+        void release(int index, T instance) {
+            if (threadCaches.get().push(index, instance))
+                return;
+
+            if (sharedSizes.incrementAndGet(index) <= sharedLimits[index])
+                shared.get(index).offer(instance);
+            else
+                sharedSizes.decrementAndGet(index);
+        }
+
+        private final class ThreadCache {
+
+            private final Object[][] stacks;
+            private final int[] sizes;
+
+            ThreadCache(int classes) {
+                this.stacks = new Object[classes][threadCacheSize];
+                this.sizes = new int[classes];
+            }
+
+            @SuppressWarnings("unchecked")
+            T pop(int index) {
+                if (sizes[index] == 0)
+                    return null;
+
+                Object[] stack = stacks[index];
+                Object instance = stack[--sizes[index]];
+                stack[sizes[index]] = null;
+                return (T) instance;
+            }
+
+            boolean push(int index, T instance) {
+                if (sizes[index] == threadCacheSize)
+                    return false;
+
+                stacks[index][sizes[index]++] = instance;
+                return true;
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private int maxSize = 1 << 20;
+        private int threadCacheSize = 4;
+        private int sharedCacheSize = 64;
+        private long sharedCacheBytes = 2 << 20;
+        private boolean direct;
+
+        /**
+         * @param maxSize largest pooled size, rounded up to a power of two, at most 2^30
+         */
+        public Builder setMaxSize(int maxSize) {
+            this.maxSize = Math.min(maxSize, 1 << 30);
+            return this;
+        }
+
+        /**
+         * @param threadCacheSize instances per size class that every thread keeps
+         */
+        public Builder setThreadCacheSize(int threadCacheSize) {
+            this.threadCacheSize = Math.max(0, threadCacheSize);
+            return this;
+        }
+
+        /**
+         * @param sharedCacheSize instances per size class that all threads share
+         */
+        public Builder setSharedCacheSize(int sharedCacheSize) {
+            this.sharedCacheSize = Math.max(0, sharedCacheSize);
+            return this;
+        }
+
+        /**
+         * @param sharedCacheBytes bytes per size class that all threads share, limits the instances of large
+         *                         classes below sharedCacheSize
+         */
+        public Builder setSharedCacheBytes(long sharedCacheBytes) {
+            this.sharedCacheBytes = Math.max(0, sharedCacheBytes);
+            return this;
+        }
+
+        /**
+         * @param direct whether byte buffers are allocated outside of the Java heap
+         */
+        public Builder setDirect(boolean direct) {
+            this.direct = direct;
+            return this;
+        }
+
+        public BufferPool build() {
+            return new BufferPool(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BufferPool[direct=%s, max=%d, allocations=%d, reuses=%d]",
+                direct, 1 << maxShift, getAllocations(), getReuses());
+    }
+}
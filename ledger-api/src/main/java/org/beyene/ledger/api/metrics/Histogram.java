@@ -0,0 +1,92 @@
+package org.beyene.ledger.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Lock-free histogram of non-negative samples.</p>
+ * <p>Samples are counted in buckets of powers of two, so percentiles are approximated by the upper bound of
+ * their bucket and are at most twice the exact value. Count, sum, minimum and maximum are exact.</p>
+ */
+public class Histogram {
+
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    // bucket i holds samples in [2^(i-1), 2^i), bucket 0 holds 0
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final LongAccumulator min;
+    private final LongAccumulator max;
+
+    public Histogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        this.max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    }
+
+    public void record(long value) {
+        long sample = Math.max(0, value);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(sample));
+        count.increment();
+        sum.add(sample);
+        min.accumulate(sample);
+        max.accumulate(sample);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return upper bound of the bucket that contains the percentile, capped by the maximum
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile not in [0, 100]: " + percentile);
+
+        long n = getCount();
+        if (n == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, min=%d, mean=%.1f, p50=%d, p99=%d, max=%d",
+                getCount(), getMin(), getMean(), getPercentile(50), getPercentile(99), getMax());
+    }
+}
@@ -0,0 +1,84 @@
+package org.beyene.ledger.api.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Metrics that keep histograms, counters and gauges in memory.</p>
+ * <p>Intended for tests, benchmarks and for exporting to a monitoring system by polling the getters.</p>
+ */
+public class InMemoryMetrics implements Metrics {
+
+    private final ConcurrentMap<String, Histogram> histograms;
+    private final ConcurrentMap<String, LongAdder> counters;
+    private final ConcurrentMap<String, LongSupplier> gauges;
+
+    public InMemoryMetrics() {
+        this.histograms = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void record(String name, long value) {
+        histograms.computeIfAbsent(name, n -> new Histogram()).record(value);
+    }
+
+    @Override
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier supplier) {
+        Objects.requireNonNull(supplier);
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * @return histogram with the given name, empty if nothing was recorded
+     */
+    public Histogram getHistogram(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram : new Histogram();
+    }
+
+    public long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * @return current value of the gauge, 0 if no gauge is registered
+     */
+    public long getGauge(String name) {
+        LongSupplier gauge = gauges.get(name);
+        return gauge != null ? gauge.getAsLong() : 0;
+    }
+
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(histograms).forEach((name, histogram) ->
+                sb.append(name).append(": ").append(histogram).append(System.lineSeparator()));
+        new TreeMap<>(counters).forEach((name, counter) ->
+                sb.append(name).append(": ").append(counter.sum()).append(System.lineSeparator()));
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+                sb.append(name).append(": ").append(gauge.getAsLong()).append(System.lineSeparator()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package org.beyene.ledger.api.metrics;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Service provider interface for the instrumentation of ledger hot paths.</p>
+ * <p>Durations are recorded in nanoseconds. Implementations are called from several threads concurrently and
+ * must not block. Ledgers accept an implementation as value of the property <code>ledger.metrics</code>,
+ * without it nothing is recorded.</p>
+ */
+public interface Metrics {
+
+    /**
+     * Name of the property that holds the Metrics instance of a ledger.
+     */
+    String PROPERTY = "ledger.metrics";
+
+    /**
+     * Adds a sample, e.g. a duration or a batch size, to the histogram with the given name.
+     */
+    void record(String name, long value);
+
+    /**
+     * Adds delta to the counter with the given name.
+     */
+    void increment(String name, long delta);
+
+    /**
+     * Registers a gauge that is sampled when read, e.g. the size of a queue.
+     */
+    void gauge(String name, LongSupplier supplier);
+
+    /**
+     * Adds the nanoseconds elapsed since start to the histogram with the given name.
+     *
+     * @param start value of System.nanoTime() at the start of the measurement
+     */
+    default void recordSince(String name, long start) {
+        record(name, System.nanoTime() - start);
+    }
+
+    /**
+     * @return Metrics that discards all samples
+     */
+    static Metrics noop() {
+        return NoopMetrics.INSTANCE;
+    }
+
+    /**
+     * @return Metrics of the property <code>ledger.metrics</code> or no-op Metrics
+     */
+    static Metrics fromProperties(Map<String, Object> properties) {
+        Object metrics = properties.get(PROPERTY);
+        return metrics instanceof Metrics ? (Metrics) metrics : noop();
+    }
+}
@@ -0,0 +1,24 @@
+package org.beyene.ledger.api.metrics;
+
+import java.util.function.LongSupplier;
+
+enum NoopMetrics implements Metrics {
+
+    INSTANCE;
+
+    @Override
+    public void record(String name, long value) {
+    }
+
+    @Override
+    public void increment(String name, long delta) {
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier supplier) {
+    }
+
+    @Override
+    public void recordSince(String name, long start) {
+    }
+}
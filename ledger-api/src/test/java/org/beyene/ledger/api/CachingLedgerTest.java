@@ -0,0 +1,187 @@
+package org.beyene.ledger.api;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class CachingLedgerTest {
+
+    private static final Instant T0 = Instant.parse("2018-10-01T00:00:00Z");
+
+    private ListLedger delegate;
+    private CachingLedger<String, String> ledger;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = new ListLedger();
+        for (int i = 1; i <= 10; i++)
+            delegate.transactions.add(new SimpleTransaction("TAG", at(i), "m" + i));
+
+        ledger = new CachingLedger.Builder<String, String>()
+                .setDelegate(delegate)
+                .setClock(Clock.fixed(at(1000), ZoneOffset.UTC))
+                .build();
+    }
+
+    @Test
+    public void testOnlyUncachedRangesAreRead() throws Exception {
+        Assert.assertThat("first query", messages(ledger.getTransactions(at(2), at(6))),
+                is(Arrays.asList("m3", "m4", "m5")));
+        Assert.assertThat("read through", delegate.queries.size(), is(1));
+
+        Assert.assertThat("within cached range", messages(ledger.getTransactions(at(3), at(5))),
+                is(Collections.singletonList("m4")));
+        Assert.assertThat("served from cache", delegate.queries.size(), is(1));
+
+        Assert.assertThat("overlapping query", messages(ledger.getTransactions(at(4), at(9))),
+                is(Arrays.asList("m5", "m6", "m7", "m8")));
+        Assert.assertThat("one more read", delegate.queries.size(), is(2));
+        ListLedger.Range gap = delegate.queries.get(1);
+        Assert.assertThat("gap starts within cached range", gap.since.isBefore(at(6)) && gap.since.isAfter(at(5)), is(true));
+        Assert.assertThat("gap ends at query end", gap.to, is(at(9)));
+
+        Assert.assertThat("merged range", messages(ledger.getTransactions(at(2), at(9))).size(), is(6));
+        Assert.assertThat("no read", delegate.queries.size(), is(2));
+    }
+
+    @Test
+    public void testAdjacentRangesAreNotMergedAcrossBoundary() throws Exception {
+        ledger.getTransactions(at(1), at(5));
+        ledger.getTransactions(at(5), at(9));
+
+        // m5 lies on the shared bound and was in neither query
+        Assert.assertThat("boundary fetched", messages(ledger.getTransactions(at(1), at(9))),
+                is(Arrays.asList("m2", "m3", "m4", "m5", "m6", "m7", "m8")));
+        Assert.assertThat("reads", delegate.queries.size(), is(3));
+
+        ledger.getTransactions(at(1), at(9));
+        Assert.assertThat("covered now", delegate.queries.size(), is(3));
+    }
+
+    @Test
+    public void testWriteInvalidatesTimestamp() throws Exception {
+        ledger.getTransactions(at(0), at(20));
+        ledger.addTransaction(new SimpleTransaction("TAG", at(4), "m4'"));
+
+        Assert.assertThat("new transaction visible", messages(ledger.getTransactions(at(0), at(20))),
+                is(Arrays.asList("m1", "m2", "m3", "m4", "m4'", "m5", "m6", "m7", "m8", "m9", "m10")));
+        Assert.assertThat("reads", delegate.queries.size(), is(2));
+        Assert.assertThat("only the timestamp is read", delegate.queries.get(1).to,
+                is(at(4).plus(Duration.ofNanos(1))));
+    }
+
+    @Test
+    public void testRecentRangeIsNotCachedByDefault() throws Exception {
+        ledger = new CachingLedger.Builder<String, String>()
+                .setDelegate(delegate)
+                .setClock(Clock.fixed(at(100), ZoneOffset.UTC))
+                .build();
+
+        ledger.getTransactions(at(0), at(20));
+        ledger.getTransactions(at(0), at(20));
+        Assert.assertThat("within settle time", delegate.queries.size(), is(2));
+    }
+
+    @Test
+    public void testUnsettledRangeIsNotCached() throws Exception {
+        ledger = new CachingLedger.Builder<String, String>()
+                .setDelegate(delegate)
+                .setClock(Clock.fixed(at(8), ZoneOffset.UTC))
+                .setSettleTime(Duration.ofSeconds(2))
+                .build();
+
+        Assert.assertThat("complete answer", messages(ledger.getTransactions(at(0), at(20))).size(), is(10));
+        ledger.getTransactions(at(0), at(20));
+        Assert.assertThat("reads", delegate.queries.size(), is(2));
+        Assert.assertThat("only recent range is read again", delegate.queries.get(1).since.isAfter(at(5)), is(true));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ledger = new CachingLedger.Builder<String, String>()
+                .setDelegate(delegate)
+                .setClock(Clock.fixed(at(1000), ZoneOffset.UTC))
+                .setMaxSize(5)
+                .build();
+
+        Assert.assertThat("complete answer", messages(ledger.getTransactions(at(0), at(20))).size(), is(10));
+        Assert.assertThat("recent range still cached", messages(ledger.getTransactions(at(5), at(20))).size(), is(5));
+        Assert.assertThat("reads", delegate.queries.size(), is(1));
+
+        Assert.assertThat("evicted range", messages(ledger.getTransactions(at(0), at(20))).size(), is(10));
+        Assert.assertThat("read again", delegate.queries.size(), is(2));
+    }
+
+    @Test
+    public void testTransactionsWithoutTimestampAreNotCached() throws Exception {
+        delegate.transactions.add(new SimpleTransaction("TAG", null, "m"));
+
+        Assert.assertThat("delegate answer", ledger.getTransactions(at(0), at(20)).size(), is(11));
+        Assert.assertThat("read once", delegate.queries.size(), is(1));
+        ledger.getTransactions(at(0), at(20));
+        Assert.assertThat("not cached", delegate.queries.size(), is(2));
+    }
+
+    @Test
+    public void testCachedRangeIsServedDuringReadThrough() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ListLedger blocking = new ListLedger() {
+            @Override
+            public List<Transaction<String>> getTransactions(Instant since, Instant to) {
+                if (!since.isBefore(at(5))) {
+                    reading.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getTransactions(since, to);
+            }
+        };
+        blocking.transactions.addAll(delegate.transactions);
+        ledger = new CachingLedger.Builder<String, String>()
+                .setDelegate(blocking)
+                .setClock(Clock.fixed(at(1000), ZoneOffset.UTC))
+                .build();
+        ledger.getTransactions(at(0), at(5));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Transaction<String>>> readThrough = executor.submit(() -> ledger.getTransactions(at(5), at(20)));
+            Assert.assertThat("delegate is read", reading.await(5, TimeUnit.SECONDS), is(true));
+
+            Future<List<Transaction<String>>> cached = executor.submit(() -> ledger.getTransactions(at(0), at(5)));
+            Assert.assertThat("cached range", messages(cached.get(1, TimeUnit.SECONDS)),
+                    is(Arrays.asList("m1", "m2", "m3", "m4")));
+            release.countDown();
+            Assert.assertThat("read through", readThrough.get(5, TimeUnit.SECONDS).size(), is(5));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static Instant at(int second) {
+        return T0.plusSeconds(second);
+    }
+
+    private static List<String> messages(List<Transaction<String>> transactions) {
+        return transactions.stream().map(Transaction::getObject).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,73 @@
+package org.beyene.ledger.api;
+
+import org.beyene.ledger.api.error.MappingException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class DecodeStageTest {
+
+    private static final List<Integer> INPUTS = IntStream.range(0, 1_000).boxed().collect(Collectors.toList());
+
+    @Test
+    public void testKeepsOrder() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try (DecodeStage stage = new DecodeStage(4)) {
+            List<String> decoded = stage.decode(INPUTS, i -> {
+                threads.add(Thread.currentThread());
+                return Integer.toString(i);
+            });
+
+            List<String> expected = INPUTS.stream().map(Object::toString).collect(Collectors.toList());
+            Assert.assertThat("input order", decoded, is(expected));
+            Assert.assertThat("decoded by pool", threads.contains(Thread.currentThread()), is(false));
+        }
+    }
+
+    @Test
+    public void testSkipsMappingFailures() throws Exception {
+        try (DecodeStage stage = new DecodeStage(4)) {
+            List<Integer> decoded = stage.decode(INPUTS, i -> {
+                if (i % 10 == 0)
+                    throw new MappingException("not a message: " + i);
+                return i;
+            });
+
+            List<Integer> expected = INPUTS.stream().filter(i -> i % 10 != 0).collect(Collectors.toList());
+            Assert.assertThat(decoded, is(expected));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOtherFailures() throws Exception {
+        try (DecodeStage stage = new DecodeStage(4)) {
+            stage.decode(INPUTS, i -> {
+                if (i == 500)
+                    throw new IllegalStateException("Reading tx failed");
+                return i;
+            });
+        }
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        DecodeStage stage = DecodeStage.withThreads(1);
+        Assert.assertThat(stage.getParallelism(), is(1));
+
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        stage.decode(INPUTS, i -> threads.add(Thread.currentThread()));
+        Assert.assertThat(threads, is(Collections.singleton(Thread.currentThread())));
+
+        DecodeStage configured = DecodeStage.withThreads(3);
+        Assert.assertThat(configured.getParallelism(), is(3));
+        configured.close();
+    }
+}
@@ -0,0 +1,68 @@
+package org.beyene.ledger.api;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Ledger backed by a list, records the range queries it receives.
+ */
+class ListLedger implements Ledger<String, String> {
+
+    final List<Transaction<String>> transactions = new CopyOnWriteArrayList<>();
+    final List<Range> queries = new CopyOnWriteArrayList<>();
+    final Map<String, TransactionListener<String>> listeners = new HashMap<>();
+    boolean closed;
+
+    @Override
+    public Transaction<String> addTransaction(Transaction<String> transaction) {
+        transactions.add(transaction);
+        return transaction;
+    }
+
+    @Override
+    public List<Transaction<String>> getTransactions(Instant since, Instant to) {
+        queries.add(new Range(since, to));
+        return transactions.stream()
+                .filter(tx -> tx.getTimestamp() == null
+                        || tx.getTimestamp().isAfter(since) && tx.getTimestamp().isBefore(to))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean addTransactionListener(String tag, TransactionListener<String> listener) {
+        return listeners.putIfAbsent(tag, listener) == null;
+    }
+
+    @Override
+    public boolean removeTransactionListener(String tag) {
+        return listeners.remove(tag) != null;
+    }
+
+    @Override
+    public Map<String, TransactionListener<String>> getTransactionListeners() {
+        return listeners;
+    }
+
+    @Override
+    public Format<String> getFormat() {
+        return Data.STRING;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    static class Range {
+
+        final Instant since;
+        final Instant to;
+
+        Range(Instant since, Instant to) {
+            this.since = since;
+            this.to = to;
+        }
+    }
+}
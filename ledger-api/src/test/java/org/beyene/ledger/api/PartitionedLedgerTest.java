@@ -0,0 +1,105 @@
+package org.beyene.ledger.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class PartitionedLedgerTest {
+
+    private static final Instant T0 = Instant.parse("2018-10-01T00:00:00Z");
+
+    @Test
+    public void testRoutingIsStableAndSpread() throws Exception {
+        List<ListLedger> partitions = partitions(4);
+        PartitionedLedger<String, String> ledger = new PartitionedLedger<>(partitions);
+
+        for (int i = 0; i < 400; i++)
+            ledger.addTransaction(new SimpleTransaction("TAG" + i, at(i), "m" + i));
+
+        for (ListLedger partition : partitions) {
+            Assert.assertThat("every partition is used", partition.transactions.size() > 40, is(true));
+            for (Transaction<String> tx : partition.transactions)
+                Assert.assertThat("tag stays in partition", partitions.get(ledger.partitionOf(tx.getTag())),
+                        is(partition));
+        }
+
+        // one more partition moves only a part of the tags
+        PartitionedLedger<String, String> grown = new PartitionedLedger<>(partitions(5));
+        long moved = IntStream.range(0, 400)
+                .filter(i -> ledger.partitionOf("TAG" + i) != grown.partitionOf("TAG" + i))
+                .count();
+        Assert.assertThat("moved tags: " + moved, moved < 200, is(true));
+
+        ledger.close();
+        Assert.assertThat("partitions closed", partitions.stream().allMatch(p -> p.closed), is(true));
+    }
+
+    @Test
+    public void testRangeQueryMergesByTimestamp() throws Exception {
+        List<ListLedger> partitions = partitions(3);
+        PartitionedLedger<String, String> ledger = new PartitionedLedger<>(partitions);
+
+        // reverse order, so partitions answer unsorted
+        for (int i = 20; i > 0; i--)
+            ledger.addTransaction(new SimpleTransaction("TAG" + i % 7, at(i), "m" + i));
+
+        List<String> expected = IntStream.range(6, 15).mapToObj(i -> "m" + i).collect(Collectors.toList());
+        Assert.assertThat("merged", messages(ledger.getTransactions(at(5), at(15))), is(expected));
+        Assert.assertThat("all partitions asked", partitions.stream().allMatch(p -> p.queries.size() == 1), is(true));
+
+        Assert.assertThat("tag query", messages(ledger.getTransactions("TAG3", at(0), at(20))),
+                is(Arrays.asList("m3", "m10", "m17")));
+        ledger.close();
+    }
+
+    @Test
+    public void testProvider() throws Exception {
+        List<Map<String, Object>> created = new ArrayList<>();
+        LedgerProvider provider = new PartitionedLedgerProvider(new LedgerProvider() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <M, D> Ledger<M, D> newLedger(Serializer<M, D> serializer, Deserializer<M, D> deserializer,
+                                                 Format<D> format, Map<String, TransactionListener<M>> listeners,
+                                                 Map<String, Object> properties) {
+                created.add(properties);
+                return (Ledger<M, D>) new ListLedger();
+            }
+        });
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("ledger.partitions", 2);
+        properties.put("file.directory", "txs");
+        properties.put("partition.1.file.directory", "txs-1");
+
+        TransactionListener<String> listener = tx -> {
+        };
+        Ledger<String, String> ledger = provider.newLedger(s -> s, s -> s, Data.STRING,
+                Collections.singletonMap("TAG", listener), properties);
+
+        Assert.assertThat("partitions", created.size(), is(2));
+        Assert.assertThat("shared property", created.get(0).get("file.directory"), is("txs"));
+        Assert.assertThat("override", created.get(1).get("file.directory"), is("txs-1"));
+        Assert.assertThat("overrides are not passed on", created.get(0).containsKey("partition.1.file.directory"),
+                is(false));
+        Assert.assertThat("listener", ledger.getTransactionListeners().get("TAG"), is(listener));
+        ledger.close();
+    }
+
+    private static List<ListLedger> partitions(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new ListLedger()).collect(Collectors.toList());
+    }
+
+    private static Instant at(int second) {
+        return T0.plusSeconds(second);
+    }
+
+    private static List<String> messages(List<Transaction<String>> transactions) {
+        return transactions.stream().map(Transaction::getObject).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,36 @@
+package org.beyene.ledger.api;
+
+import java.time.Instant;
+
+class SimpleTransaction implements Transaction<String> {
+
+    private final String tag;
+    private final Instant timestamp;
+    private final String object;
+
+    SimpleTransaction(String tag, Instant timestamp, String object) {
+        this.tag = tag;
+        this.timestamp = timestamp;
+        this.object = object;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return "";
+    }
+
+    @Override
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String getTag() {
+        return tag;
+    }
+
+    @Override
+    public String getObject() {
+        return object;
+    }
+}
@@ -0,0 +1,108 @@
+package org.beyene.ledger.api.buffer;
+
+import org.beyene.ledger.api.BufferSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testSizeClassesAndReuse() throws Exception {
+        BufferPool pool = new BufferPool.Builder().setMaxSize(4096).build();
+
+        ByteBuffer buffer = pool.acquire(300);
+        Assert.assertThat("rounded up", buffer.capacity(), is(512));
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire(400);
+        Assert.assertThat("reused", reused, sameInstance(buffer));
+        Assert.assertThat("cleared", reused.position(), is(0));
+        Assert.assertThat("other class", pool.acquire(100).capacity(), is(256));
+
+        ByteBuffer large = pool.acquire(5000);
+        Assert.assertThat("not rounded", large.capacity(), is(5000));
+        pool.release(large);
+        Assert.assertThat("not pooled", pool.acquire(5000), not(sameInstance(large)));
+
+        char[] chars = pool.acquireChars(2673);
+        Assert.assertThat("char class", chars.length, is(4096));
+        pool.release(chars);
+        Assert.assertThat("chars reused", pool.acquireChars(3000), sameInstance(chars));
+
+        Assert.assertThat("allocations", pool.getAllocations(), is(3L));
+        Assert.assertThat("reuses", pool.getReuses(), is(2L));
+    }
+
+    @Test
+    public void testSharedCacheAcrossThreads() throws Exception {
+        BufferPool pool = new BufferPool.Builder().setThreadCacheSize(0).build();
+
+        ByteBuffer buffer = pool.acquire(1024);
+        CompletableFuture.runAsync(() -> pool.release(buffer)).get();
+
+        Assert.assertThat("released by other thread", pool.acquire(1024), sameInstance(buffer));
+    }
+
+    @Test
+    public void testSharedCacheBoundedByBytes() throws Exception {
+        BufferPool pool = new BufferPool.Builder()
+                .setThreadCacheSize(0)
+                .setSharedCacheSize(4)
+                .setSharedCacheBytes(4096)
+                .build();
+
+        ByteBuffer[] small = {pool.acquire(1024), pool.acquire(1024), pool.acquire(1024), pool.acquire(1024)};
+        ByteBuffer[] large = {pool.acquire(2048), pool.acquire(2048), pool.acquire(2048)};
+        char[][] chars = {pool.acquireChars(2048), pool.acquireChars(2048)};
+        Arrays.stream(small).forEach(pool::release);
+        Arrays.stream(large).forEach(pool::release);
+        Arrays.stream(chars).forEach(pool::release);
+
+        long allocations = pool.getAllocations();
+        for (int i = 0; i < 4; i++)
+            pool.acquire(1024);
+        Assert.assertThat("four small buffers kept", pool.getAllocations(), is(allocations));
+        for (int i = 0; i < 3; i++)
+            pool.acquire(2048);
+        Assert.assertThat("two large buffers kept", pool.getAllocations(), is(allocations + 1));
+        pool.acquireChars(2048);
+        pool.acquireChars(2048);
+        Assert.assertThat("one char array kept", pool.getAllocations(), is(allocations + 2));
+    }
+
+    @Test
+    public void testSerializeGrowsBuffer() throws Exception {
+        BufferPool pool = new BufferPool.Builder().build();
+        BufferSerializer<String> serializer = (s, target) -> target.put(s.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            message.append("message-");
+
+        ByteBuffer buffer = pool.serialize(serializer, message.toString(), 1 << 20);
+        Assert.assertThat("capacity", buffer.capacity(), is(8192));
+        Assert.assertThat("content", StandardCharsets.UTF_8.decode(buffer).toString(), is(message.toString()));
+        pool.release(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSerializeRespectsMaxCapacity() throws Exception {
+        BufferPool pool = new BufferPool.Builder().build();
+        BufferSerializer<String> serializer = (s, target) -> target.put(s.getBytes(StandardCharsets.UTF_8));
+
+        // 5000 bytes fit into the 8192 size class, but not into the maximum
+        char[] message = new char[5_000];
+        Arrays.fill(message, 'm');
+        pool.serialize(serializer, new String(message), 4_500);
+    }
+}
@@ -0,0 +1,64 @@
+package org.beyene.ledger.api.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+public class InMemoryMetricsTest {
+
+    private final InMemoryMetrics metrics = new InMemoryMetrics();
+
+    @Test
+    public void testHistogram() throws Exception {
+        IntStream.rangeClosed(1, 100).forEach(i -> metrics.record("latency", i));
+
+        Histogram histogram = metrics.getHistogram("latency");
+        Assert.assertThat("count", histogram.getCount(), is(100L));
+        Assert.assertThat("sum", histogram.getSum(), is(5050L));
+        Assert.assertThat("min", histogram.getMin(), is(1L));
+        Assert.assertThat("max", histogram.getMax(), is(100L));
+        Assert.assertThat("mean", histogram.getMean(), is(50.5));
+
+        // p50 is 50, bucket [32, 64)
+        Assert.assertThat("p50", histogram.getPercentile(50), is(63L));
+        Assert.assertThat("p100 capped by max", histogram.getPercentile(100), is(100L));
+        Assert.assertThat("p0", histogram.getPercentile(0), is(1L));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Histogram histogram = metrics.getHistogram("unknown");
+        Assert.assertThat("count", histogram.getCount(), is(0L));
+        Assert.assertThat("min", histogram.getMin(), is(0L));
+        Assert.assertThat("p99", histogram.getPercentile(99), is(0L));
+        Assert.assertThat("counter", metrics.getCounter("unknown"), is(0L));
+        Assert.assertThat("gauge", metrics.getGauge("unknown"), is(0L));
+    }
+
+    @Test
+    public void testCounterAndGauge() throws Exception {
+        metrics.increment("transactions", 3);
+        metrics.increment("transactions", 4);
+        Assert.assertThat("counter", metrics.getCounter("transactions"), is(7L));
+
+        AtomicLong size = new AtomicLong(5);
+        metrics.gauge("queue", size::get);
+        Assert.assertThat("gauge", metrics.getGauge("queue"), is(5L));
+        size.set(2);
+        Assert.assertThat("gauge is sampled", metrics.getGauge("queue"), is(2L));
+    }
+
+    @Test
+    public void testFromProperties() throws Exception {
+        Assert.assertThat("configured", Metrics.fromProperties(Collections.singletonMap(Metrics.PROPERTY, metrics)),
+                is(sameInstance(metrics)));
+        Assert.assertThat("default", Metrics.fromProperties(Collections.emptyMap()),
+                is(sameInstance(Metrics.noop())));
+    }
+}
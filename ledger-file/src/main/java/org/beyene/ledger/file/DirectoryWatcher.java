@@ -0,0 +1,73 @@
+package org.beyene.ledger.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Reports files that other writers, also in other processes, create in a directory.</p>
+ * <p>Events come from a WatchService on a daemon thread. If events were lost, the directory has to be scanned,
+ * which is signalled separately.</p>
+ */
+final class DirectoryWatcher implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectoryWatcher.class.getName());
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Consumer<Path> onCreate;
+    private final Runnable onOverflow;
+    private final Thread thread;
+
+    DirectoryWatcher(Path directory, Consumer<Path> onCreate, Runnable onOverflow) throws IOException {
+        this.directory = directory;
+        this.onCreate = onCreate;
+        this.onOverflow = onOverflow;
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+
+        this.thread = new Thread(this::watch, "file-ledger-watcher-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    try {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            onOverflow.run();
+                        else
+                            onCreate.accept(directory.resolve((Path) event.context()));
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.INFO, e.toString(), e);
+                    }
+                }
+
+                if (!key.reset()) {
+                    LOGGER.info("Directory is no longer watched: " + directory);
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.log(Level.FINE, "Watcher closed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -1,105 +1,425 @@
 package org.beyene.ledger.file;
 
 import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.beyene.ledger.api.metrics.Metrics;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-
+import java.util.stream.Stream;
+
+/**
+ * <p>Ledger that stores every transaction in its own file.</p>
+ * <p>Timestamp and tag are part of the file name, cf. FileRecord. An index by time and tag is built from the file
+ * names, so range and tag queries only read the selected files.
+ * Files are written under a temporary name and linked to their final name when complete, readers never see
+ * partial data. Linking fails if the name is taken, e.g. by another writer, so files are never replaced.</p>
+ * <p>Listeners are called asynchronously; all transactions of a tag are delivered by the same thread. Appends of
+ * this ledger are delivered directly. Files of other writers, e.g. other processes, are delivered if the directory
+ * is watched, otherwise they are only found by range queries. Those list the directory only if it was modified
+ * since it was listed last, at most once per scan interval.</p>
+ * <p>With retention settings, expired files are deleted in the background, cf. {@link #compact()}.</p>
+ *
+ * @param <M> Message type
+ * @param <D> Data type in ledger, e.g. String, byte[] or ByteBuffer
+ */
 public class FileLedger<M, D> implements Ledger<M, D> {
 
     private static final Logger LOGGER = Logger.getLogger(FileLedger.class.getName());
 
+    private static final int MAX_MESSAGE_SIZE = Integer.MAX_VALUE - 8;
+
+    // temporary files of crashed writers
+    private static final Duration TEMPORARY_FILE_TIMEOUT = Duration.ofHours(1);
+
+    // coarsest resolution of modification times, e.g. FAT
+    private static final Duration MODIFICATION_RESOLUTION = Duration.ofSeconds(2);
+
+    // replaces malformed input like String.getBytes
+    private static final ThreadLocal<CharsetEncoder> ENCODER = ThreadLocal.withInitial(() -> StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+
     private final Serializer<M, D> serializer;
     private final Deserializer<M, D> deserializer;
     private final Format<D> format;
     private final Path directory;
-    private final AtomicInteger counter;
+    private final AtomicLong counter;
+    private final Metrics metrics;
+    private final BufferPool pool;
+    private final DecodeStage decodeStage;
+
+    // complete files, by time and per tag
+    private final RecordIndex index;
+    // own files that are renamed right now
+    private final Set<String> committing;
+
+    private final ConcurrentMap<String, TransactionListener<M>> listeners;
+    private final List<ExecutorService> dispatchers;
+    private final DirectoryWatcher watcher;
+
+    // listing of the directory by queries without watcher
+    private final long scanInterval;
+    private final AtomicLong lastScan;
+    private volatile FileTime scannedModification;
+
+    private final RetentionPolicy retention;
+    private final ScheduledExecutorService compactor;
 
     public FileLedger(Serializer<M, D> serializer,
                       Deserializer<M, D> deserializer, Format<D> format, Path directory) {
-        this.serializer = serializer;
-        this.deserializer = deserializer;
-        this.format = format;
-        this.directory = directory;
-        this.counter = new AtomicInteger(determineMaxCounter());
+        this(serializer, deserializer, format, directory, Metrics.noop());
+    }
+
+    public FileLedger(Serializer<M, D> serializer,
+                      Deserializer<M, D> deserializer, Format<D> format, Path directory, Metrics metrics) {
+        this(serializer, deserializer, format, directory, metrics, BufferPool.shared());
     }
 
-    private int determineMaxCounter() {
-        Optional<Integer> max;
+    /**
+     * @param pool provides scratch buffers for serialization and I/O
+     */
+    public FileLedger(Serializer<M, D> serializer, Deserializer<M, D> deserializer, Format<D> format,
+                      Path directory, Metrics metrics, BufferPool pool) {
+        this(serializer, deserializer, format, directory, metrics, pool, DecodeStage.sequential());
+    }
+
+    /**
+     * @param decodeStage reads and deserializes the files of {@link #getTransactions(Instant, Instant)}, it is
+     *                    closed with the ledger
+     */
+    public FileLedger(Serializer<M, D> serializer, Deserializer<M, D> deserializer, Format<D> format,
+                      Path directory, Metrics metrics, BufferPool pool, DecodeStage decodeStage) {
+        this(new Builder<M, D>()
+                .setSerializer(serializer)
+                .setDeserializer(deserializer)
+                .setFormat(format)
+                .setDirectory(directory)
+                .setMetrics(metrics)
+                .setBufferPool(pool)
+                .setDecodeStage(decodeStage));
+    }
+
+    private FileLedger(Builder<M, D> builder) {
+        this.serializer = builder.serializer;
+        this.deserializer = builder.deserializer;
+        this.format = builder.format;
+        this.directory = builder.directory;
+        this.metrics = Objects.requireNonNull(builder.metrics);
+        this.pool = Objects.requireNonNull(builder.pool);
+        this.decodeStage = Objects.requireNonNull(builder.decodeStage);
+
+        this.index = new RecordIndex();
+        this.committing = ConcurrentHashMap.newKeySet();
+        this.counter = new AtomicLong();
+        this.scanInterval = builder.scanInterval.toNanos();
+        this.lastScan = new AtomicLong();
+        scanDirectory();
+
+        this.listeners = new ConcurrentHashMap<>(builder.listeners);
+        int threads = builder.listenerThreads;
+        if (threads == 0)
+            threads = Runtime.getRuntime().availableProcessors();
+
+        // one single-threaded executor per slot keeps the order of each tag
+        List<ExecutorService> dispatchers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++)
+            dispatchers.add(Executors.newSingleThreadExecutor());
+        this.dispatchers = Collections.unmodifiableList(dispatchers);
+
+        DirectoryWatcher watcher = null;
+        if (builder.watch) {
+            try {
+                Files.createDirectories(directory);
+                watcher = new DirectoryWatcher(directory, this::onCreate, () -> scan(true));
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.toString(), e);
+                dispatchers.forEach(ExecutorService::shutdown);
+                throw new IllegalStateException("Could not watch directory: " + directory, e);
+            }
+        }
+        this.watcher = watcher;
+        // files created before the watch was registered
+        if (watcher != null)
+            scan(true);
+
+        this.retention = new RetentionPolicy(builder.maxAge, builder.maxSize, builder.tagRetention);
+        if (retention.isUnbounded()) {
+            this.compactor = null;
+        } else {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "file-ledger-compactor-" + directory.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = builder.compactionInterval.toMillis();
+            compactor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        metrics.gauge("file.size", index::getTotalSize);
+    }
 
+    /**
+     * Adds files that aren't known yet, e.g. of other writers.
+     *
+     * @param notify whether listeners are called for new files
+     */
+    private void scan(boolean notify) {
+        metrics.increment("file.scans", 1);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(FileRecord::parse)
+                    .filter(Objects::nonNull)
+                    .sorted()
+                    .forEach(record -> found(record, notify));
+        } catch (NoSuchFileException e) {
+            // created with the first transaction
+            LOGGER.log(Level.FINE, e.toString(), e);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void scanDirectory() {
+        lastScan.set(System.nanoTime());
+        FileTime modification = lastModification();
+        // modifications within the resolution would keep the time unchanged
+        boolean settled = modification != null
+                && modification.toInstant().isBefore(Instant.now().minus(MODIFICATION_RESOLUTION));
+        scannedModification = settled ? modification : null;
+        scan(false);
+    }
+
+    /**
+     * Without watcher, files of other writers are only found by listing. Own appends are indexed directly, so the
+     * directory is only listed if it was modified, at most once per scan interval.
+     */
+    private void scanIfModified() {
+        if (watcher != null)
+            return;
+
+        long last = lastScan.get();
+        long now = System.nanoTime();
+        if (now - last < scanInterval || !lastScan.compareAndSet(last, now))
+            return;
+
+        FileTime modification = lastModification();
+        if (modification == null || !modification.equals(scannedModification))
+            scanDirectory();
+    }
+
+    private FileTime lastModification() {
         try {
-            max = Files.list(directory)
-                    .map(Path::toFile)
-                    .filter(File::isFile)
-                    .map(File::getName)
-                    .map(Integer::parseInt)
-                    .max(Comparator.naturalOrder());
+            return Files.getLastModifiedTime(directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, e.toString(), e);
+            return null;
+        }
+    }
+
+    private void onCreate(Path file) {
+        FileRecord record = FileRecord.parse(file);
+        if (record != null)
+            found(record, true);
+    }
 
-            if (!max.isPresent())
-                max = Optional.of(0);
+    private void found(FileRecord record, boolean notify) {
+        if (committing.contains(record.getName()) || index.contains(record))
+            return;
 
+        try {
+            if (!index.add(record, Files.size(directory.resolve(record.getName()))))
+                return;
+        } catch (NoSuchFileException e) {
+            // removed by retention of another ledger
+            LOGGER.log(Level.FINE, e.toString(), e);
+            return;
         } catch (IOException e) {
             LOGGER.log(Level.INFO, e.toString(), e);
-            max = Optional.of(0);
+            return;
         }
 
-        return max.get();
+        // appends of this ledger follow the files of other writers
+        counter.accumulateAndGet(record.getCounter() + 1, Math::max);
+        if (notify)
+            notify(record);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+        }
+    }
+
+    /**
+     * Deletes the files that expired according to the retention settings, also runs on schedule. Files are
+     * removed from the index before they are deleted, so queries don't select them any more; appends aren't
+     * blocked. Runs don't overlap, a call waits for the scheduled run to finish.
+     *
+     * @return number of deleted transactions
+     */
+    public synchronized int compact() {
+        long start = System.nanoTime();
+        int deleted = 0;
+        for (FileRecord record : retention.expired(index, Instant.now())) {
+            if (!index.remove(record))
+                continue;
+
+            try {
+                Files.deleteIfExists(directory.resolve(record.getName()));
+                deleted++;
+            } catch (IOException e) {
+                // indexed again by the next scan
+                LOGGER.log(Level.INFO, e.toString(), e);
+            }
+        }
+        deleteTemporaryFiles();
+
+        metrics.increment("file.compaction.deleted", deleted);
+        metrics.recordSince("file.compaction", start);
+        return deleted;
+    }
+
+    private void deleteTemporaryFiles() {
+        Instant timeout = Instant.now().minus(TEMPORARY_FILE_TIMEOUT);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> FileRecord.isTemporary(file.getFileName().toString()))
+                    .filter(file -> {
+                        try {
+                            return Files.getLastModifiedTime(file).toInstant().isBefore(timeout);
+                        } catch (IOException e) {
+                            return false;
+                        }
+                    })
+                    .forEach(FileLedger::deleteQuietly);
+        } catch (NoSuchFileException e) {
+            LOGGER.log(Level.FINE, e.toString(), e);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+        }
     }
 
     @Override
     public Transaction<M> addTransaction(Transaction<M> transaction) {
-        Path path = createFile();
+        Objects.requireNonNull(transaction);
+        long start = System.nanoTime();
 
-        M message = transaction.getObject();
-        D serialized = serializer.serialize(message);
-        write(path, serialized);
+        Instant timestamp = Optional.ofNullable(transaction.getTimestamp()).orElse(Instant.now());
+        String tag = Objects.toString(transaction.getTag(), "");
+        FileRecord created = createFile(timestamp, tag);
+        Path temporary = directory.resolve(created.getTemporaryName());
+        FileRecord record;
 
-        return fromMessage(message);
-    }
+        M message = transaction.getObject();
+        try {
+            if (serializer instanceof BufferSerializer)
+                writeBuffer(temporary, message);
+            else
+                write(temporary, serializer.serialize(message));
+            record = commit(created, temporary);
+        } catch (RuntimeException e) {
+            deleteQuietly(temporary);
+            throw e;
+        }
+        metrics.recordSince("file.write", start);
 
-    private Transaction<M> fromMessage(M message) {
-        SimpleTransaction<M> tx = new SimpleTransaction<>();
-        tx.object = message;
+        Transaction<M> tx = new FileTransaction<>(record, message);
+        dispatch(tx);
         return tx;
     }
 
-    private Path createFile() {
-        Path path = Paths.get(directory.toString(), Objects.toString(counter.getAndIncrement()));
-
+    private FileRecord createFile(Instant timestamp, String tag) {
         while (true) {
+            FileRecord record = new FileRecord(counter.getAndIncrement(), timestamp, tag);
+            Path path = directory.resolve(record.getTemporaryName());
             try {
                 Files.createDirectories(path.getParent());
                 Files.createFile(path);
-                break;
+                return record;
             } catch (FileAlreadyExistsException e) {
                 LOGGER.log(Level.INFO, e.toString(), e);
-                counter.incrementAndGet();
             } catch (IOException e) {
                 LOGGER.log(Level.INFO, e.toString(), e);
                 throw new IllegalStateException("Could not create tx file", e);
             }
         }
+    }
+
+    // links the final name exclusively, takes the next counter if another writer got the name first
+    private FileRecord commit(FileRecord record, Path temporary) {
+        while (true) {
+            String name = record.getName();
+            Path path = directory.resolve(name);
+            // the watcher must not take the file for one of another writer
+            committing.add(name);
+            try {
+                link(path, temporary);
+                index.add(record, Files.size(path));
+                deleteQuietly(temporary);
+                return record;
+            } catch (FileAlreadyExistsException e) {
+                LOGGER.log(Level.INFO, e.toString(), e);
+                record = new FileRecord(counter.getAndIncrement(), record.getTimestamp(), record.getTag());
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.toString(), e);
+                throw new IllegalStateException("Writing tx failed", e);
+            } finally {
+                committing.remove(name);
+            }
+        }
+    }
+
+    private static void link(Path path, Path temporary) throws IOException {
+        try {
+            Files.createLink(path, temporary);
+        } catch (UnsupportedOperationException e) {
+            // without hard links, a move that doesn't replace the target is the closest
+            LOGGER.log(Level.FINE, e.toString(), e);
+            Files.move(temporary, path);
+        }
+    }
 
-        return path;
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+        }
     }
 
     private void write(Path path, D serialized) {
         try {
             if (String.class.isAssignableFrom(format.getType())) {
-                Files.write(path, String.class.cast(serialized).getBytes(StandardCharsets.UTF_8));
+                writeString(path, String.class.cast(serialized));
             } else if (byte[].class.isAssignableFrom(format.getType())) {
-                Files.write(path, byte[].class.cast(serialized));
+                writeFully(path, ByteBuffer.wrap(byte[].class.cast(serialized)));
+            } else if (ByteBuffer.class.isAssignableFrom(format.getType())) {
+                writeFully(path, ByteBuffer.class.cast(serialized).duplicate());
             } else {
                 throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
             }
@@ -109,77 +429,236 @@ public class FileLedger<M, D> implements Ledger<M, D> {
         }
     }
 
-    private M read(Path path) {
-        M message;
-
+    private void writeString(Path path, String string) throws IOException {
+        CharsetEncoder encoder = ENCODER.get().reset();
+        long maxBytes = (long) Math.ceil(encoder.maxBytesPerChar() * string.length());
+        ByteBuffer buffer = pool.acquire((int) Math.min(maxBytes, MAX_MESSAGE_SIZE));
         try {
-            Object object;
-            if (String.class.isAssignableFrom(format.getType())) {
-                object = Files.readAllLines(path, StandardCharsets.UTF_8).stream().collect(Collectors.joining());
-            } else if (byte[].class.isAssignableFrom(format.getType())) {
-                object = Files.readAllBytes(path);
-            } else {
-                throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
-            }
+            CoderResult result = encoder.encode(CharBuffer.wrap(string), buffer, true);
+            if (!result.isUnderflow())
+                result.throwException();
+            encoder.flush(buffer);
+            buffer.flip();
+            writeFully(path, buffer);
+        } finally {
+            pool.release(buffer);
+        }
+    }
 
-            D data = format.getType().cast(object);
-            message = deserializer.deserialize(data);
+    @SuppressWarnings("unchecked")
+    private void writeBuffer(Path path, M message) {
+        ByteBuffer buffer = pool.serialize((BufferSerializer<M>) serializer, message, MAX_MESSAGE_SIZE);
+        try {
+            writeFully(path, buffer);
         } catch (IOException e) {
             LOGGER.log(Level.INFO, e.toString(), e);
             throw new IllegalStateException("Writing tx failed", e);
+        } finally {
+            pool.release(buffer);
         }
+    }
 
-        return message;
+    private static void writeFully(Path path, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
     }
 
-    @SuppressWarnings("unused")
-    @Override
-    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
-        List<Path> files = new ArrayList<>();
+    /**
+     * @return pooled buffer with the content of the file, to be released by the caller
+     */
+    private ByteBuffer readBuffer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_MESSAGE_SIZE)
+                throw new IOException("Tx file too large: " + path);
+
+            ByteBuffer buffer = pool.acquire((int) size);
+            try {
+                buffer.limit((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0)
+                        throw new IOException("Tx file truncated: " + path);
+                }
+            } catch (IOException | RuntimeException e) {
+                pool.release(buffer);
+                throw e;
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * @return transaction or <code>null</code> if the file was removed in the meantime
+     */
+    private Transaction<M> read(FileRecord record) {
         try {
-            Files.list(directory).forEach(files::add);
+            return new FileTransaction<>(record, read(directory.resolve(record.getName())));
+        } catch (NoSuchFileException e) {
+            // expired while it was selected
+            LOGGER.log(Level.FINE, e.toString(), e);
+            return null;
         } catch (IOException e) {
             LOGGER.log(Level.INFO, e.toString(), e);
-            throw new IllegalStateException(e);
+            throw new IllegalStateException("Reading tx failed", e);
         }
+    }
 
-        return files.stream()
-                .map(this::read)
-                .map(this::fromMessage)
-                //.filter(tx -> tx.getTimestamp().isAfter(since))
-                //.filter(tx -> tx.getTimestamp().isBefore(to))
-                .collect(Collectors.toList());
+    private M read(Path path) throws IOException {
+        if (ByteBuffer.class.isAssignableFrom(format.getType())) {
+            // buffer is reused after deserialization, cf. Data.BYTE_BUFFER
+            ByteBuffer buffer = readBuffer(path);
+            try {
+                return deserializer.deserialize(format.getType().cast(buffer));
+            } finally {
+                pool.release(buffer);
+            }
+        }
+
+        Object object;
+        if (String.class.isAssignableFrom(format.getType())) {
+            object = Files.readAllLines(path, StandardCharsets.UTF_8).stream().collect(Collectors.joining());
+        } else if (byte[].class.isAssignableFrom(format.getType())) {
+            object = Files.readAllBytes(path);
+        } else {
+            throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
+        }
+
+        D data = format.getType().cast(object);
+        return deserializer.deserialize(data);
     }
 
+    /**
+     * @return transactions with timestamp in (since, to), ordered by timestamp and insertion
+     */
+    @Override
+    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
+        long start = System.nanoTime();
+        scanIfModified();
+
+        List<Transaction<M>> transactions = read(index.range(since, to));
+        metrics.recordSince("file.read", start);
+        return transactions;
+    }
+
+    /**
+     * Only reads the files of the tag, cf. RecordIndex.
+     *
+     * @return transactions of tag with timestamp in (since, to), ordered by timestamp and insertion
+     */
+    @Override
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        Objects.requireNonNull(tag);
+        long start = System.nanoTime();
+        scanIfModified();
+
+        List<Transaction<M>> transactions = read(index.range(tag, since, to));
+        metrics.recordSince("file.read", start);
+        return transactions;
+    }
+
+    private List<Transaction<M>> read(List<FileRecord> records) {
+        // files are read and deserialized in parallel, unreadable messages are skipped
+        List<Transaction<M>> transactions = decodeStage.decode(records, this::read);
+        transactions.removeIf(Objects::isNull);
+        return transactions;
+    }
+
+    private void dispatch(Transaction<M> tx) {
+        TransactionListener<M> listener = listeners.get(tx.getTag());
+        if (listener != null)
+            dispatch(tx.getTag(), () -> listener.onTransaction(tx));
+    }
+
+    private void notify(FileRecord record) {
+        TransactionListener<M> listener = listeners.get(record.getTag());
+        if (listener != null)
+            dispatch(record.getTag(), () -> {
+                Transaction<M> tx = read(record);
+                if (tx != null)
+                    listener.onTransaction(tx);
+            });
+    }
+
+    private void dispatch(String tag, Runnable notification) {
+        ExecutorService dispatcher = dispatchers.get(Math.floorMod(tag.hashCode(), dispatchers.size()));
+        try {
+            dispatcher.execute(() -> {
+                try {
+                    notification.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.INFO, e.toString(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Ledger is closed, dropping notification", e);
+        }
+    }
+
+    @Override
     public boolean addTransactionListener(String tag, TransactionListener<M> listener) {
+        Objects.requireNonNull(tag);
+        Objects.requireNonNull(listener);
+        listeners.put(tag, listener);
         return true;
     }
 
-    // removeTransactionListener
+    @Override
     public boolean removeTransactionListener(String tag) {
-        return true;
+        return listeners.remove(tag) != null;
     }
 
-    // getTransactionListeners
+    @Override
     public Map<String, TransactionListener<M>> getTransactionListeners() {
-        return Collections.emptyMap();
+        return Collections.unmodifiableMap(listeners);
+    }
+
+    /**
+     * @return number of indexed files per tag
+     */
+    public Map<String, Integer> getTagSizes() {
+        return index.getTagSizes();
     }
 
+    @Override
     public Format<D> getFormat() {
         return format;
     }
 
     @Override
     public void close() {
+        if (compactor != null)
+            compactor.shutdownNow();
 
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.toString(), e);
+            }
+        }
+
+        dispatchers.forEach(ExecutorService::shutdown);
+        try {
+            for (ExecutorService dispatcher : dispatchers)
+                dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        decodeStage.close();
     }
 
-    private static class SimpleTransaction<M> implements Transaction<M> {
+    private static class FileTransaction<M> implements Transaction<M> {
 
-        M object;
-        String identifier;
-        Instant timestamp;
-        String tag;
+        private final FileRecord record;
+        private final M object;
+
+        FileTransaction(FileRecord record, M object) {
+            this.record = record;
+            this.object = object;
+        }
 
         @Override
         public M getObject() {
@@ -188,17 +667,161 @@ public class FileLedger<M, D> implements Ledger<M, D> {
 
         @Override
         public String getIdentifier() {
-            return identifier;
+            return record.getName();
         }
 
         @Override
         public Instant getTimestamp() {
-            return timestamp;
+            return record.getTimestamp();
         }
 
         @Override
         public String getTag() {
-            return tag;
+            return record.getTag();
+        }
+    }
+
+    public static class Builder<M, D> {
+
+        private Serializer<M, D> serializer;
+        private Deserializer<M, D> deserializer;
+        private Format<D> format;
+        private Path directory;
+        private Metrics metrics = Metrics.noop();
+        private BufferPool pool = BufferPool.shared();
+        private DecodeStage decodeStage = DecodeStage.sequential();
+        private Map<String, TransactionListener<M>> listeners = Collections.emptyMap();
+        private int listenerThreads = 2;
+        private boolean watch;
+        private Duration maxAge;
+        private long maxSize;
+        private Map<String, Duration> tagRetention = new HashMap<>();
+        private Duration compactionInterval = Duration.ofMinutes(1);
+        private Duration scanInterval = Duration.ofSeconds(1);
+
+        public Builder<M, D> setSerializer(Serializer<M, D> serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        public Builder<M, D> setDeserializer(Deserializer<M, D> deserializer) {
+            this.deserializer = deserializer;
+            return this;
+        }
+
+        public Builder<M, D> setFormat(Format<D> format) {
+            this.format = format;
+            return this;
+        }
+
+        public Builder<M, D> setDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public Builder<M, D> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param pool provides scratch buffers for serialization and I/O
+         */
+        public Builder<M, D> setBufferPool(BufferPool pool) {
+            Objects.requireNonNull(pool);
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * @param decodeStage reads and deserializes the files of range queries, it is closed with the ledger
+         */
+        public Builder<M, D> setDecodeStage(DecodeStage decodeStage) {
+            Objects.requireNonNull(decodeStage);
+            this.decodeStage = decodeStage;
+            return this;
+        }
+
+        public Builder<M, D> setListeners(Map<String, TransactionListener<M>> listeners) {
+            Objects.requireNonNull(listeners);
+            this.listeners = listeners;
+            return this;
+        }
+
+        /**
+         * @param listenerThreads threads that call listeners, 0 is number of processors
+         */
+        public Builder<M, D> setListenerThreads(int listenerThreads) {
+            if (listenerThreads < 0)
+                throw new IllegalArgumentException("Number of listener threads must not be negative: " + listenerThreads);
+            this.listenerThreads = listenerThreads;
+            return this;
+        }
+
+        /**
+         * @param watch whether files of other writers are delivered to listeners as soon as they are created
+         */
+        public Builder<M, D> setWatch(boolean watch) {
+            this.watch = watch;
+            return this;
+        }
+
+        /**
+         * @param maxAge age after which transactions are deleted, <code>null</code> keeps them
+         */
+        public Builder<M, D> setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * @param maxSize total size of the files in bytes, the oldest transactions are deleted beyond it, 0 is
+         *                unbounded
+         */
+        public Builder<M, D> setMaxSize(long maxSize) {
+            this.maxSize = Math.max(0, maxSize);
+            return this;
+        }
+
+        /**
+         * @param retention age after which transactions of tag are deleted, instead of the maximum age
+         */
+        public Builder<M, D> setTagRetention(String tag, Duration retention) {
+            Objects.requireNonNull(tag);
+            Objects.requireNonNull(retention);
+            this.tagRetention.put(tag, retention);
+            return this;
+        }
+
+        /**
+         * @param compactionInterval delay before and between compaction runs, only used with retention settings
+         */
+        public Builder<M, D> setCompactionInterval(Duration compactionInterval) {
+            Objects.requireNonNull(compactionInterval);
+            if (compactionInterval.isNegative() || compactionInterval.isZero())
+                throw new IllegalArgumentException("Compaction interval must be positive: " + compactionInterval);
+            this.compactionInterval = compactionInterval;
+            return this;
+        }
+
+        /**
+         * @param scanInterval minimum delay between listings of the directory by queries, only used without watch
+         */
+        public Builder<M, D> setScanInterval(Duration scanInterval) {
+            Objects.requireNonNull(scanInterval);
+            if (scanInterval.isNegative())
+                throw new IllegalArgumentException("Scan interval must not be negative: " + scanInterval);
+            this.scanInterval = scanInterval;
+            return this;
+        }
+
+        public FileLedger<M, D> build() {
+            Objects.requireNonNull(serializer);
+            Objects.requireNonNull(deserializer);
+            Objects.requireNonNull(format);
+            Objects.requireNonNull(directory);
+            return new FileLedger<>(this);
         }
     }
 }
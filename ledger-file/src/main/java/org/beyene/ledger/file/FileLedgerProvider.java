@@ -1,20 +1,61 @@
 package org.beyene.ledger.file;
 
 import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.beyene.ledger.api.metrics.Metrics;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * <p>Provider for FileLedger.</p>
+ * <p>Properties and default values:</p>
+ * <ul>
+ * <li>file.directory</li>
+ * <p>Directory of the transaction files, required.</p>
+ * <li>file.watch</li>
+ * <p>Whether files of other writers, e.g. other processes, are delivered to listeners when they are created.</p>
+ * <p>Default is false (boolean).</p>
+ * <li>file.scan.interval</li>
+ * <p>Without watch, minimum delay between listings of the directory by queries, which find files of other
+ * writers. The directory is only listed if it was modified.</p>
+ * <p>Default is 1000 (in ms, long).</p>
+ * <li>file.listener.threads</li>
+ * <p>Number of threads that call listeners. Use 0 to set threads to number of available processors.</p>
+ * <p>Default is 2 (int).</p>
+ * <li>file.retention.age</li>
+ * <p>Age after which transactions are deleted.</p>
+ * <p>Default is unbounded (in ms, long).</p>
+ * <li>file.retention.size</li>
+ * <p>Total size of the transaction files, the oldest transactions are deleted beyond it.</p>
+ * <p>Default is unbounded (in bytes, long).</p>
+ * <li>file.retention.tag.&lt;tag&gt;</li>
+ * <p>Age after which transactions of the tag are deleted, instead of file.retention.age.</p>
+ * <p>Default is file.retention.age (in ms, long).</p>
+ * <li>file.compaction.interval</li>
+ * <p>Delay between runs that delete expired transactions.</p>
+ * <p>Default is 60000 (in ms, long).</p>
+ * </ul>
+ */
 public class FileLedgerProvider implements LedgerProvider {
 
     private static final Logger LOGGER = Logger.getLogger(FileLedgerProvider.class.getName());
 
+    private static final String TAG_RETENTION = "file.retention.tag.";
+
+    private final NumberFormat nf = NumberFormat.getInstance();
+
     @Override
     public <M, D> Ledger<M, D> newLedger(Serializer<M, D> serializer,
                                          Deserializer<M, D> deserializer,
@@ -38,6 +79,45 @@ public class FileLedgerProvider implements LedgerProvider {
             throw new IllegalStateException("file.directory could not be created: " + path, e);
         }
 
-        return new FileLedger<>(serializer, deserializer, format, directory);
+        FileLedger.Builder<M, D> builder = new FileLedger.Builder<M, D>()
+                .setSerializer(serializer)
+                .setDeserializer(deserializer)
+                .setFormat(format)
+                .setDirectory(directory)
+                .setListeners(listeners)
+                .setMetrics(Metrics.fromProperties(properties))
+                .setBufferPool(BufferPool.fromProperties(properties))
+                .setWatch(Boolean.valueOf(Objects.toString(properties.get("file.watch"))));
+
+        setNumber(properties.get("file.listener.threads"), Number::intValue, builder::setListenerThreads);
+        setNumber(properties.get(DecodeStage.PROPERTY), Number::intValue,
+                threads -> builder.setDecodeStage(DecodeStage.withThreads(threads)));
+        setNumber(properties.get("file.scan.interval"), Number::longValue,
+                interval -> builder.setScanInterval(Duration.ofMillis(interval)));
+        setNumber(properties.get("file.retention.age"), Number::longValue,
+                age -> builder.setMaxAge(Duration.ofMillis(age)));
+        setNumber(properties.get("file.retention.size"), Number::longValue, builder::setMaxSize);
+        setNumber(properties.get("file.compaction.interval"), Number::longValue,
+                interval -> builder.setCompactionInterval(Duration.ofMillis(interval)));
+        properties.entrySet()
+                .stream()
+                .filter(e -> e.getKey().startsWith(TAG_RETENTION))
+                .forEach(e -> setNumber(e.getValue(), Number::longValue, retention -> builder.setTagRetention(
+                        e.getKey().substring(TAG_RETENTION.length()), Duration.ofMillis(retention))));
+
+        return builder.build();
+    }
+
+    private <T extends Number> void setNumber(Object value, Function<Number, T> converter, Consumer<T> setter) {
+        if (Objects.isNull(value))
+            return;
+
+        try {
+            Number number = nf.parse(Objects.toString(value));
+            setter.accept(converter.apply(number));
+        } catch (ParseException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalArgumentException("Not a valid number: " + value, e);
+        }
     }
 }
@@ -0,0 +1,141 @@
+package org.beyene.ledger.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Metadata of one transaction file of a FileLedger.</p>
+ * <p>Counter, timestamp and tag are kept in the file name, <code>counter.timestamp.tag</code> with the timestamp
+ * in ms and the tag encoded as URL-safe Base64, without the tag part for the empty tag. So listing a directory
+ * is enough to select files by time or tag. Files that are named by their counter only were written by earlier
+ * versions, their modification time is used as timestamp.</p>
+ */
+final class FileRecord implements Comparable<FileRecord> {
+
+    private static final Logger LOGGER = Logger.getLogger(FileRecord.class.getName());
+
+    private static final char SEPARATOR = '.';
+
+    private final long counter;
+    private final Instant timestamp;
+    private final String tag;
+    private final String name;
+
+    FileRecord(long counter, Instant timestamp, String tag) {
+        this.counter = counter;
+        this.timestamp = Objects.requireNonNull(timestamp);
+        this.tag = Objects.requireNonNull(tag);
+
+        StringBuilder name = new StringBuilder()
+                .append(counter)
+                .append(SEPARATOR)
+                .append(timestamp.toEpochMilli());
+        if (!tag.isEmpty())
+            name.append(SEPARATOR).append(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(tag.getBytes(StandardCharsets.UTF_8)));
+        this.name = name.toString();
+    }
+
+    private FileRecord(long counter, Instant timestamp, String tag, String name) {
+        this.counter = counter;
+        this.timestamp = timestamp;
+        this.tag = tag;
+        this.name = name;
+    }
+
+    /**
+     * @return record without file to compare with, the timestamp may be Instant.MIN or Instant.MAX
+     */
+    static FileRecord bound(Instant timestamp, long counter) {
+        return new FileRecord(counter, timestamp, "", "");
+    }
+
+    /**
+     * @return record of a transaction file or <code>null</code> for other files, e.g. files being written
+     */
+    static FileRecord parse(Path file) {
+        String name = file.getFileName().toString();
+        if (name.isEmpty() || name.charAt(0) == SEPARATOR)
+            return null;
+
+        try {
+            String[] parts = name.split("\\" + SEPARATOR, 3);
+            long counter = Long.parseLong(parts[0]);
+            if (parts.length == 1)
+                return new FileRecord(counter, Files.getLastModifiedTime(file).toInstant(), "", name);
+
+            Instant timestamp = Instant.ofEpochMilli(Long.parseLong(parts[1]));
+            String tag = parts.length == 3
+                    ? new String(Base64.getUrlDecoder().decode(parts[2]), StandardCharsets.UTF_8)
+                    : "";
+            return new FileRecord(counter, timestamp, tag, name);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, "Not a transaction file: " + name, e);
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            return null;
+        }
+    }
+
+    static boolean isTemporary(String name) {
+        return name.length() > 1 && name.charAt(0) == SEPARATOR && name.endsWith(".tmp");
+    }
+
+    long getCounter() {
+        return counter;
+    }
+
+    Instant getTimestamp() {
+        return timestamp;
+    }
+
+    String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return file name, also the identifier of the transaction
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return name of the file that holds the data until it is complete
+     */
+    String getTemporaryName() {
+        return SEPARATOR + name + ".tmp";
+    }
+
+    @Override
+    public int compareTo(FileRecord other) {
+        int cmp = Long.compare(counter, other.counter);
+        return cmp != 0 ? cmp : name.compareTo(other.name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FileRecord)) return false;
+
+        return name.equals(((FileRecord) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,252 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.Format;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>Durable queue of pending transactions, one file per entry.</p>
+ * <p>An entry is written to a temporary file, forced to disk and then moved in place, so a crash never leaves a
+ * partial entry behind. The directory is forced after the move, so the rename survives a crash as well. Pending
+ * entries are kept in memory as well and are reloaded from the directory on creation. Complete temporary files
+ * are recovered too, since their entry may have been acknowledged; partial ones are deleted. Removing an entry
+ * deletes its file.</p>
+ *
+ * @param <D> Data type in ledger, e.g. String or byte[]
+ */
+class Journal<D> {
+
+    private static final Logger LOGGER = Logger.getLogger(Journal.class.getName());
+
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".wal";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final Format<D> format;
+    private final ConcurrentNavigableMap<Long, Entry<D>> pending;
+    private final AtomicLong sequence;
+
+    Journal(Path directory, Format<D> format) {
+        this.directory = directory;
+        this.format = format;
+        this.pending = new ConcurrentSkipListMap<>();
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalStateException("Journal directory could not be created: " + directory, e);
+        }
+
+        recover();
+        this.sequence = new AtomicLong(pending.isEmpty() ? 0 : pending.lastKey() + 1);
+    }
+
+    private void recover() {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalStateException("Journal could not be read: " + directory, e);
+        }
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    recoverTemporary(file, Long.parseLong(name.substring(0, name.length() - TEMP_SUFFIX.length())));
+                } else if (name.endsWith(SUFFIX)) {
+                    long seq = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                    pending.put(seq, read(seq, file));
+                }
+            } catch (IOException | NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Skipping journal file " + file, e);
+            }
+        }
+
+        if (!pending.isEmpty())
+            LOGGER.info(() -> String.format("Recovered %d pending entries from %s", pending.size(), directory));
+    }
+
+    private void recoverTemporary(Path file, long seq) throws IOException {
+        Entry<D> entry;
+        try {
+            entry = read(seq, file);
+        } catch (IOException e) {
+            // crashed while writing, entry was never acknowledged
+            LOGGER.log(Level.FINE, "Deleting partial journal file " + file, e);
+            Files.delete(file);
+            return;
+        }
+
+        // forced before the move, the move itself may not have reached the disk
+        Files.move(file, fileOf(seq), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        pending.put(seq, entry);
+    }
+
+    /**
+     * Returns after the entry is on disk.
+     */
+    Entry<D> append(String identifier, Instant timestamp, String tag, D data) throws IOException {
+        // buffers may be reused by the caller, entries keep a copy
+        D stable = data instanceof ByteBuffer ? fromBytes(toBytes(data)) : data;
+        Entry<D> entry = new Entry<>(sequence.getAndIncrement(), identifier, timestamp, tag, stable);
+
+        Path temp = directory.resolve(entry.sequence + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(encode(entry));
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temp, fileOf(entry.sequence), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        pending.put(entry.sequence, entry);
+        return entry;
+    }
+
+    private void forceDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // directories can't be opened on some platforms, e.g. Windows
+            LOGGER.log(Level.FINE, "Journal directory can't be forced: " + directory, e);
+        }
+    }
+
+    void remove(Entry<D> entry) throws IOException {
+        Files.deleteIfExists(fileOf(entry.sequence));
+        pending.remove(entry.sequence);
+    }
+
+    /**
+     * @return oldest pending entries
+     */
+    List<Entry<D>> peek(int max) {
+        return pending.values().stream().limit(max).collect(Collectors.toList());
+    }
+
+    Collection<Entry<D>> getPending() {
+        return Collections.unmodifiableCollection(pending.values());
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return data of entry, buffers are duplicated so every reader starts at the beginning
+     */
+    D dataOf(Entry<D> entry) {
+        if (entry.data instanceof ByteBuffer)
+            return format.getType().cast(((ByteBuffer) entry.data).duplicate());
+        return entry.data;
+    }
+
+    private Path fileOf(long seq) {
+        return directory.resolve(String.format("%019d%s", seq, SUFFIX));
+    }
+
+    private byte[] encode(Entry<D> entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            out.writeLong(entry.timestamp.getEpochSecond());
+            out.writeInt(entry.timestamp.getNano());
+            writeNullable(out, entry.tag);
+            writeNullable(out, entry.identifier);
+
+            byte[] data = toBytes(entry.data);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Entry<D> read(long seq, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported journal version: " + version);
+
+            Instant timestamp = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            String tag = readNullable(in);
+            String identifier = readNullable(in);
+
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new Entry<>(seq, identifier, timestamp, tag, fromBytes(data));
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private byte[] toBytes(D data) {
+        if (String.class.isAssignableFrom(format.getType()))
+            return String.class.cast(data).getBytes(StandardCharsets.UTF_8);
+        else if (byte[].class.isAssignableFrom(format.getType()))
+            return byte[].class.cast(data);
+        else if (ByteBuffer.class.isAssignableFrom(format.getType())) {
+            ByteBuffer buffer = ByteBuffer.class.cast(data).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
+    }
+
+    private D fromBytes(byte[] data) {
+        Object object;
+        if (String.class.isAssignableFrom(format.getType()))
+            object = new String(data, StandardCharsets.UTF_8);
+        else if (byte[].class.isAssignableFrom(format.getType()))
+            object = data;
+        else if (ByteBuffer.class.isAssignableFrom(format.getType()))
+            object = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        else
+            throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
+        return format.getType().cast(object);
+    }
+
+    static final class Entry<D> {
+
+        final long sequence;
+        final String identifier;
+        final Instant timestamp;
+        final String tag;
+        final D data;
+
+        Entry(long sequence, String identifier, Instant timestamp, String tag, D data) {
+            this.sequence = sequence;
+            this.identifier = identifier;
+            this.timestamp = timestamp;
+            this.tag = tag;
+            this.data = data;
+        }
+    }
+}
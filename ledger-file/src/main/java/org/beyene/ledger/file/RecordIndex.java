@@ -0,0 +1,133 @@
+package org.beyene.ledger.file;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Index of the files of a FileLedger, globally and per tag.</p>
+ * <p>Records are ordered by timestamp and counter, so range queries cost O(log n + matches); a tag query only
+ * visits the posting list of its tag. The index is kept in memory and rebuilt from the file names on
+ * recovery. It also sums up the file sizes for retention.</p>
+ */
+final class RecordIndex {
+
+    private static final Comparator<FileRecord> BY_TIME = Comparator.comparing(FileRecord::getTimestamp)
+            .thenComparing(Comparator.naturalOrder());
+
+    // file size by record
+    private final ConcurrentNavigableMap<FileRecord, Long> records;
+    private final ConcurrentMap<String, NavigableSet<FileRecord>> tags;
+    private final AtomicLong totalSize;
+
+    RecordIndex() {
+        this.records = new ConcurrentSkipListMap<>(BY_TIME);
+        this.tags = new ConcurrentHashMap<>();
+        this.totalSize = new AtomicLong();
+    }
+
+    /**
+     * @return whether the record wasn't indexed yet
+     */
+    boolean add(FileRecord record, long size) {
+        if (records.putIfAbsent(record, size) != null)
+            return false;
+
+        totalSize.addAndGet(size);
+        tags.computeIfAbsent(record.getTag(), tag -> new ConcurrentSkipListSet<>(BY_TIME)).add(record);
+        return true;
+    }
+
+    boolean contains(FileRecord record) {
+        return records.containsKey(record);
+    }
+
+    /**
+     * Removes the record from the posting list of its tag first, then from the global index.
+     *
+     * @return whether the record was indexed
+     */
+    boolean remove(FileRecord record) {
+        NavigableSet<FileRecord> postings = tags.get(record.getTag());
+        if (postings != null)
+            postings.remove(record);
+
+        Long size = records.remove(record);
+        if (size == null)
+            return false;
+
+        totalSize.addAndGet(-size);
+        return true;
+    }
+
+    /**
+     * @return view of all records, ordered by timestamp
+     */
+    NavigableSet<FileRecord> oldestFirst() {
+        return Collections.unmodifiableNavigableSet(records.navigableKeySet());
+    }
+
+    /**
+     * @return file size in bytes, 0 if the record isn't indexed
+     */
+    long getSize(FileRecord record) {
+        return records.getOrDefault(record, 0L);
+    }
+
+    /**
+     * @return sum of the file sizes in bytes
+     */
+    long getTotalSize() {
+        return totalSize.get();
+    }
+
+    Set<String> getTags() {
+        return Collections.unmodifiableSet(tags.keySet());
+    }
+
+    /**
+     * @return records with timestamp in (since, to)
+     */
+    List<FileRecord> range(Instant since, Instant to) {
+        return range(records.navigableKeySet(), since, to);
+    }
+
+    /**
+     * @return records of tag with timestamp in (since, to)
+     */
+    List<FileRecord> range(String tag, Instant since, Instant to) {
+        NavigableSet<FileRecord> postings = tags.get(tag);
+        return postings != null ? range(postings, since, to) : new ArrayList<>();
+    }
+
+    private static List<FileRecord> range(NavigableSet<FileRecord> index, Instant since, Instant to) {
+        if (!since.isBefore(to))
+            return new ArrayList<>();
+
+        // counters are non-negative, so the bounds exclude all records with timestamp since or to
+        return new ArrayList<>(index.subSet(FileRecord.bound(since, Long.MAX_VALUE), false,
+                FileRecord.bound(to, -1), false));
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    Map<String, Integer> getTagSizes() {
+        return Collections.unmodifiableMap(tags.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().size())));
+    }
+}
@@ -0,0 +1,69 @@
+package org.beyene.ledger.file;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>Decides which files of a FileLedger expire.</p>
+ * <p>A file expires if it is older than the maximum age or than the retention of its tag, the retention of a tag
+ * takes precedence. If the files are still larger than the maximum size, the oldest files expire until they fit.
+ * Age is measured by the transaction timestamp.</p>
+ */
+final class RetentionPolicy {
+
+    private final Duration maxAge;
+    private final long maxSize;
+    private final Map<String, Duration> tagRetention;
+
+    /**
+     * @param maxAge       <code>null</code> is unbounded
+     * @param maxSize      in bytes, 0 is unbounded
+     * @param tagRetention maximum age by tag
+     */
+    RetentionPolicy(Duration maxAge, long maxSize, Map<String, Duration> tagRetention) {
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+        this.tagRetention = Collections.unmodifiableMap(Objects.requireNonNull(tagRetention));
+    }
+
+    boolean isUnbounded() {
+        return maxAge == null && maxSize <= 0 && tagRetention.isEmpty();
+    }
+
+    /**
+     * @return expired records, oldest first for each rule
+     */
+    Set<FileRecord> expired(RecordIndex index, Instant now) {
+        Set<FileRecord> expired = new LinkedHashSet<>();
+
+        for (String tag : index.getTags()) {
+            Duration retention = tagRetention.getOrDefault(tag, maxAge);
+            if (retention != null)
+                expired.addAll(index.range(tag, Instant.MIN, now.minus(retention)));
+        }
+
+        if (maxSize > 0) {
+            long size = index.getTotalSize();
+            for (FileRecord record : expired)
+                size -= index.getSize(record);
+
+            for (FileRecord record : index.oldestFirst()) {
+                if (size <= maxSize)
+                    break;
+                if (expired.add(record))
+                    size -= index.getSize(record);
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RetentionPolicy[maxAge=%s, maxSize=%d, tags=%s]", maxAge, maxSize, tagRetention);
+    }
+}
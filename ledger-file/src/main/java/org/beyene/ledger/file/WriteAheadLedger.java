@@ -0,0 +1,321 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Ledger that journals writes on local disk and forwards them to another ledger in the background.</p>
+ * <p>A write returns as soon as the transaction is in the journal. A single drain thread sends the oldest
+ * journaled transactions to the delegate in batches and removes each one after the delegate accepted it. If the
+ * delegate fails, the batch stops and is retried with exponential backoff; the order of the transactions is
+ * kept. Transactions left in the journal, e.g. after a crash, are sent when the ledger is created again, so
+ * delivery is at least once.</p>
+ * <p>Range queries include pending transactions. Listeners and tag queries are handled by the delegate.</p>
+ *
+ * @param <M> Message type
+ * @param <D> Data type in ledger, e.g. String, byte[] or ByteBuffer
+ */
+public class WriteAheadLedger<M, D> implements Ledger<M, D> {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLedger.class.getName());
+
+    private final Ledger<M, D> delegate;
+    private final Serializer<M, D> serializer;
+    private final Deserializer<M, D> deserializer;
+    private final Journal<D> journal;
+    private final int batchSize;
+    private final Duration retryInterval;
+    private final Duration maxRetryInterval;
+    private final Metrics metrics;
+
+    private final ScheduledExecutorService drainer;
+    private final AtomicBoolean drainScheduled;
+    // only accessed by drain thread
+    private Duration backoff;
+    private long retryAt;
+    // sequence of the last entry the delegate accepted
+    private volatile long forwarded;
+
+    private WriteAheadLedger(Builder<M, D> builder) {
+        this.delegate = Objects.requireNonNull(builder.delegate);
+        this.serializer = Objects.requireNonNull(builder.serializer);
+        this.deserializer = Objects.requireNonNull(builder.deserializer);
+        this.journal = new Journal<>(Objects.requireNonNull(builder.directory), delegate.getFormat());
+        this.batchSize = Math.max(1, builder.batchSize);
+        this.retryInterval = builder.retryInterval;
+        this.maxRetryInterval = builder.maxRetryInterval;
+        this.metrics = builder.metrics;
+
+        Path directory = builder.directory;
+        this.drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-ahead-drainer-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.drainScheduled = new AtomicBoolean();
+        this.backoff = retryInterval;
+        this.retryAt = System.nanoTime();
+        this.forwarded = -1;
+
+        metrics.gauge("journal.pending", journal::size);
+        if (journal.size() > 0)
+            scheduleDrain(0);
+    }
+
+    @Override
+    public Transaction<M> addTransaction(Transaction<M> transaction) throws IOException {
+        long start = System.nanoTime();
+        M message = transaction.getObject();
+        Instant timestamp = Optional.ofNullable(transaction.getTimestamp()).orElse(Instant.now());
+
+        Journal.Entry<D> entry = journal.append(transaction.getIdentifier(), timestamp, transaction.getTag(),
+                serializer.serialize(message));
+        metrics.recordSince("journal.append", start);
+
+        scheduleDrain(0);
+        return new JournaledTransaction<>(entry, message);
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        // one drain run at a time, a run started later picks up all entries appended until then
+        if (!drainScheduled.compareAndSet(false, true))
+            return;
+
+        try {
+            drainer.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            drainScheduled.set(false);
+            LOGGER.log(Level.FINE, "Ledger is closed, pending transactions stay in journal", e);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+
+        // appends don't shorten the backoff
+        long wait = TimeUnit.NANOSECONDS.toMillis(retryAt - System.nanoTime());
+        if (wait > 0) {
+            scheduleDrain(wait);
+            return;
+        }
+
+        List<Journal.Entry<D>> batch = journal.peek(batchSize);
+        for (Journal.Entry<D> entry : batch) {
+            long start = System.nanoTime();
+            try {
+                delegate.addTransaction(toTransaction(entry));
+                forwarded = entry.sequence;
+                journal.remove(entry);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.INFO, String.format("Forwarding journal entry %d failed, retrying in %s",
+                        entry.sequence, backoff), e);
+                metrics.increment("journal.retries", 1);
+                retryAt = System.nanoTime() + backoff.toNanos();
+                scheduleDrain(backoff.toMillis());
+
+                Duration next = backoff.multipliedBy(2);
+                backoff = next.compareTo(maxRetryInterval) < 0 ? next : maxRetryInterval;
+                return;
+            }
+            metrics.recordSince("journal.forward", start);
+        }
+
+        backoff = retryInterval;
+        if (journal.size() > 0)
+            scheduleDrain(0);
+    }
+
+    private Transaction<M> toTransaction(Journal.Entry<D> entry) {
+        return new JournaledTransaction<>(entry, deserializer.deserialize(journal.dataOf(entry)));
+    }
+
+    /**
+     * @return number of transactions that are not yet accepted by the delegate
+     */
+    public int getPendingCount() {
+        return journal.size();
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
+        List<Journal.Entry<D>> entries = journal.getPending().stream()
+                .filter(entry -> entry.timestamp.isAfter(since) && entry.timestamp.isBefore(to))
+                .collect(Collectors.toList());
+        // entries accepted up to here are part of the delegate's answer
+        long accepted = forwarded;
+
+        List<Transaction<M>> transactions = delegate.getTransactions(since, to);
+        if (entries.isEmpty())
+            return transactions;
+
+        // entries accepted during the query may be part of the answer as well
+        Set<String> identifiers = transactions.stream()
+                .map(Transaction::getIdentifier)
+                .filter(identifier -> identifier != null && !identifier.isEmpty())
+                .collect(Collectors.toSet());
+        List<Transaction<M>> pending = entries.stream()
+                .filter(entry -> entry.sequence > accepted && !identifiers.contains(entry.identifier))
+                .map(this::toTransaction)
+                .collect(Collectors.toList());
+        if (pending.isEmpty())
+            return transactions;
+
+        List<Transaction<M>> merged = new ArrayList<>(transactions);
+        merged.addAll(pending);
+        merged.sort(Comparator.comparing(Transaction::getTimestamp, Comparator.nullsLast(Comparator.naturalOrder())));
+        return merged;
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        return delegate.getTransactions(tag, since, to);
+    }
+
+    @Override
+    public boolean addTransactionListener(String tag, TransactionListener<M> listener) {
+        return delegate.addTransactionListener(tag, listener);
+    }
+
+    @Override
+    public boolean removeTransactionListener(String tag) {
+        return delegate.removeTransactionListener(tag);
+    }
+
+    @Override
+    public Map<String, TransactionListener<M>> getTransactionListeners() {
+        return delegate.getTransactionListeners();
+    }
+
+    @Override
+    public Format<D> getFormat() {
+        return delegate.getFormat();
+    }
+
+    /**
+     * Stops forwarding, pending transactions stay in the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        drainer.shutdownNow();
+        try {
+            drainer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    private static class JournaledTransaction<M> implements Transaction<M> {
+
+        private final String identifier;
+        private final Instant timestamp;
+        private final String tag;
+        private final M object;
+
+        JournaledTransaction(Journal.Entry<?> entry, M object) {
+            this.identifier = entry.identifier;
+            this.timestamp = entry.timestamp;
+            this.tag = entry.tag;
+            this.object = object;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public M getObject() {
+            return object;
+        }
+    }
+
+    public static class Builder<M, D> {
+
+        private Ledger<M, D> delegate;
+        private Serializer<M, D> serializer;
+        private Deserializer<M, D> deserializer;
+        private Path directory;
+        private int batchSize = 10;
+        private Duration retryInterval = Duration.ofSeconds(5);
+        private Duration maxRetryInterval = Duration.ofMinutes(5);
+        private Metrics metrics = Metrics.noop();
+
+        public Builder<M, D> setDelegate(Ledger<M, D> delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        public Builder<M, D> setSerializer(Serializer<M, D> serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        public Builder<M, D> setDeserializer(Deserializer<M, D> deserializer) {
+            this.deserializer = deserializer;
+            return this;
+        }
+
+        public Builder<M, D> setDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param batchSize maximum number of transactions forwarded per drain run
+         */
+        public Builder<M, D> setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param retryInterval delay after the first failure, doubles with every further failure
+         */
+        public Builder<M, D> setRetryInterval(Duration retryInterval) {
+            Objects.requireNonNull(retryInterval);
+            this.retryInterval = retryInterval;
+            return this;
+        }
+
+        public Builder<M, D> setMaxRetryInterval(Duration maxRetryInterval) {
+            Objects.requireNonNull(maxRetryInterval);
+            this.maxRetryInterval = maxRetryInterval;
+            return this;
+        }
+
+        public Builder<M, D> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public WriteAheadLedger<M, D> build() {
+            return new WriteAheadLedger<>(this);
+        }
+    }
+}
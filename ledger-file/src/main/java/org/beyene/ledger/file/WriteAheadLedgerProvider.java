@@ -0,0 +1,87 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.metrics.Metrics;
+
+import java.nio.file.Paths;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Provider for WriteAheadLedger, the ledger behind the journal is created by another provider.</p>
+ * <p>Properties and default values:</p>
+ * <ul>
+ * <li>journal.directory</li>
+ * <p>Directory of the journal, required.</p>
+ * <li>journal.batch</li>
+ * <p>Maximum number of transactions forwarded per run.</p>
+ * <p>Default is 10 (int).</p>
+ * <li>journal.retry</li>
+ * <p>Delay after the first failed forward, doubles with every further failure.</p>
+ * <p>Default is 5000 (in ms, long).</p>
+ * <li>journal.retry.max</li>
+ * <p>Maximum delay between retries.</p>
+ * <p>Default is 300000 (in ms, long).</p>
+ * </ul>
+ * <p>All properties are passed to the other provider as well.</p>
+ */
+public class WriteAheadLedgerProvider implements LedgerProvider {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLedgerProvider.class.getName());
+
+    private final NumberFormat nf = NumberFormat.getInstance();
+    private final LedgerProvider provider;
+
+    public WriteAheadLedgerProvider(LedgerProvider provider) {
+        this.provider = Objects.requireNonNull(provider);
+    }
+
+    @Override
+    public <M, D> Ledger<M, D> newLedger(Serializer<M, D> serializer,
+                                         Deserializer<M, D> deserializer,
+                                         Format<D> format,
+                                         Map<String, TransactionListener<M>> listeners,
+                                         Map<String, Object> properties) {
+        Objects.requireNonNull(serializer);
+        Objects.requireNonNull(deserializer);
+        Objects.requireNonNull(properties);
+
+        Object directory = properties.get("journal.directory");
+        Objects.requireNonNull(directory, "journal.directory is not set!");
+
+        WriteAheadLedger.Builder<M, D> builder = new WriteAheadLedger.Builder<M, D>()
+                .setSerializer(serializer)
+                .setDeserializer(deserializer)
+                .setDirectory(Paths.get(Objects.toString(directory)))
+                .setMetrics(Metrics.fromProperties(properties));
+
+        setNumber(properties.get("journal.batch"), Number::intValue, builder::setBatchSize);
+        setNumber(properties.get("journal.retry"), Number::longValue,
+                retry -> builder.setRetryInterval(Duration.ofMillis(retry)));
+        setNumber(properties.get("journal.retry.max"), Number::longValue,
+                retry -> builder.setMaxRetryInterval(Duration.ofMillis(retry)));
+
+        Ledger<M, D> delegate = provider.newLedger(serializer, deserializer, format, listeners, properties);
+        return builder.setDelegate(delegate).build();
+    }
+
+    private <T extends Number> void setNumber(Object value, Function<Number, T> converter, Consumer<T> setter) {
+        if (Objects.isNull(value))
+            return;
+
+        try {
+            Number number = nf.parse(Objects.toString(value));
+            setter.accept(converter.apply(number));
+        } catch (ParseException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalArgumentException("Not a valid number: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.BufferSerializer;
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Deserializer;
+import org.beyene.ledger.api.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+
+public class FileLedgerBufferTest {
+
+    private Path txs;
+
+    @Before
+    public void setUp() throws Exception {
+        txs = Files.createTempDirectory("txs");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(txs)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    public void testBufferSerializer() throws Exception {
+        BufferSerializer<String> serializer = (s, target) -> target.put(s.getBytes(StandardCharsets.UTF_8));
+        Deserializer<String, ByteBuffer> deserializer = buffer -> StandardCharsets.UTF_8.decode(buffer).toString();
+        FileLedger<String, ByteBuffer> ledger = new FileLedger<>(serializer, deserializer, Data.BYTE_BUFFER, txs);
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            large.append("large-");
+
+        ledger.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", "small"));
+        // exceeds the initial buffer
+        ledger.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", large.toString()));
+        ledger.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", "tiny"));
+
+        List<String> messages = ledger.getTransactions(Instant.MIN, Instant.MAX)
+                .stream()
+                .map(Transaction::getObject)
+                .collect(Collectors.toList());
+
+        Assert.assertThat(messages.size(), is(3));
+        Assert.assertThat(messages, hasItems("small", large.toString(), "tiny"));
+    }
+}
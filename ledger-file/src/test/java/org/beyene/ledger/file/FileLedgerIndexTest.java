@@ -0,0 +1,153 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.api.metrics.InMemoryMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class FileLedgerIndexTest {
+
+    private final AtomicInteger reads = new AtomicInteger();
+    private Path txs;
+
+    @Before
+    public void setUp() throws Exception {
+        txs = Files.createTempDirectory("txs");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(txs)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private FileLedger<String, String> ledger() {
+        return new FileLedger.Builder<String, String>()
+                .setSerializer(s -> s)
+                .setDeserializer(s -> {
+                    reads.incrementAndGet();
+                    return s;
+                })
+                .setFormat(Data.STRING)
+                .setDirectory(txs)
+                .build();
+    }
+
+    private static List<String> objects(List<Transaction<String>> txs) {
+        return txs.stream().map(Transaction::getObject).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testTagQuery() throws Exception {
+        Instant now = Instant.now();
+        FileLedger<String, String> ledger = ledger();
+        for (int i = 0; i < 30; i++)
+            ledger.addTransaction(new MessageTransaction<>("", now.plusMillis(i), i % 10 == 0 ? "RARE" : "BUSY", "m" + i));
+
+        List<Transaction<String>> rare = ledger.getTransactions("RARE", Instant.MIN, Instant.MAX);
+        Assert.assertThat(objects(rare), is(Arrays.asList("m0", "m10", "m20")));
+        Assert.assertThat("only files of tag are read", reads.get(), is(3));
+
+        reads.set(0);
+        List<Transaction<String>> range = ledger.getTransactions("RARE", now, now.plusMillis(20));
+        Assert.assertThat("bounds are exclusive", objects(range), is(Arrays.asList("m10")));
+        Assert.assertThat(reads.get(), is(1));
+
+        Assert.assertThat(ledger.getTransactions("NONE", Instant.MIN, Instant.MAX).isEmpty(), is(true));
+        ledger.close();
+    }
+
+    @Test
+    public void testQueriesDontListDirectory() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        FileLedger<String, String> ledger = new FileLedger.Builder<String, String>()
+                .setSerializer(s -> s)
+                .setDeserializer(s -> s)
+                .setFormat(Data.STRING)
+                .setDirectory(txs)
+                .setMetrics(metrics)
+                .setScanInterval(Duration.ofHours(1))
+                .build();
+        Instant now = Instant.now();
+        for (int i = 0; i < 10; i++)
+            ledger.addTransaction(new MessageTransaction<>("", now.plusMillis(i), "TAG", "m" + i));
+
+        Assert.assertThat(ledger.getTransactions("TAG", Instant.MIN, Instant.MAX).size(), is(10));
+        Assert.assertThat(ledger.getTransactions(Instant.MIN, Instant.MAX).size(), is(10));
+        Assert.assertThat("listed on creation only", metrics.getCounter("file.scans"), is(1L));
+        ledger.close();
+    }
+
+    @Test
+    public void testQueryFindsFilesOfOtherWriters() throws Exception {
+        FileLedger<String, String> reader = new FileLedger.Builder<String, String>()
+                .setSerializer(s -> s)
+                .setDeserializer(s -> s)
+                .setFormat(Data.STRING)
+                .setDirectory(txs)
+                .setScanInterval(Duration.ZERO)
+                .build();
+        FileLedger<String, String> writer = ledger();
+        writer.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", "other"));
+
+        Assert.assertThat(objects(reader.getTransactions("TAG", Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("other")));
+        writer.close();
+        reader.close();
+    }
+
+    @Test
+    public void testNameTakenByOtherWriter() throws Exception {
+        FileLedger<String, String> first = ledger();
+        FileLedger<String, String> second = ledger();
+        Instant now = Instant.now();
+        Transaction<String> a = first.addTransaction(new MessageTransaction<>("", now, "TAG", "a"));
+        Transaction<String> b = second.addTransaction(new MessageTransaction<>("", now, "TAG", "b"));
+        first.close();
+        second.close();
+
+        Assert.assertThat("next counter", a.getIdentifier().equals(b.getIdentifier()), is(false));
+        FileLedger<String, String> reader = ledger();
+        Assert.assertThat("not replaced", objects(reader.getTransactions("TAG", Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("a", "b")));
+        Assert.assertThat("no temporary files left", Files.list(txs).count(), is(2L));
+        reader.close();
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        Instant now = Instant.now();
+        FileLedger<String, String> ledger = ledger();
+        // out of order timestamps
+        ledger.addTransaction(new MessageTransaction<>("", now.plusSeconds(2), "A", "late"));
+        ledger.addTransaction(new MessageTransaction<>("", now.plusSeconds(1), "A", "early"));
+        ledger.addTransaction(new MessageTransaction<>("", now, "B", "other"));
+        ledger.close();
+
+        FileLedger<String, String> recovered = ledger();
+        Assert.assertThat(recovered.getTagSizes().get("A"), is(2));
+        Assert.assertThat(objects(recovered.getTransactions("A", Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("early", "late")));
+        Assert.assertThat(objects(recovered.getTransactions(Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("other", "early", "late")));
+        recovered.close();
+    }
+}
@@ -0,0 +1,111 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class FileLedgerListenerTest {
+
+    private Path txs;
+
+    @Before
+    public void setUp() throws Exception {
+        txs = Files.createTempDirectory("txs");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(txs)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private FileLedger<String, String> ledger(boolean watch) {
+        return new FileLedger.Builder<String, String>()
+                .setSerializer(s -> s)
+                .setDeserializer(s -> s)
+                .setFormat(Data.STRING)
+                .setDirectory(txs)
+                .setWatch(watch)
+                .build();
+    }
+
+    @Test
+    public void testTagAndTimestamp() throws Exception {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        FileLedger<String, String> ledger = ledger(false);
+        ledger.addTransaction(new MessageTransaction<>("", now.minusSeconds(60), "OLD", "a"));
+        ledger.addTransaction(new MessageTransaction<>("", now, "TAG-\u00fc", "b"));
+        ledger.addTransaction(new MessageTransaction<>("", now.plusSeconds(1), "", "c"));
+        ledger.close();
+
+        FileLedger<String, String> recovered = ledger(false);
+        List<Transaction<String>> all = recovered.getTransactions(Instant.MIN, Instant.MAX);
+        Assert.assertThat(all.stream().map(Transaction::getTag).collect(Collectors.toList()),
+                is(Arrays.asList("OLD", "TAG-\u00fc", "")));
+        Assert.assertThat(all.get(1).getTimestamp(), is(now));
+
+        List<String> recent = recovered.getTransactions(now.minusSeconds(1), Instant.MAX).stream()
+                .map(Transaction::getObject)
+                .collect(Collectors.toList());
+        Assert.assertThat("range", recent, is(Arrays.asList("b", "c")));
+        recovered.close();
+    }
+
+    @Test
+    public void testAppendNotification() throws Exception {
+        BlockingQueue<Transaction<String>> received = new LinkedBlockingQueue<>();
+        FileLedger<String, String> ledger = ledger(false);
+        ledger.addTransactionListener("TAG", received::add);
+
+        ledger.addTransaction(new MessageTransaction<>("", Instant.now(), "OTHER", "ignored"));
+        ledger.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", "m"));
+
+        Transaction<String> tx = received.poll(5, TimeUnit.SECONDS);
+        Assert.assertThat(tx, notNullValue());
+        Assert.assertThat(tx.getObject(), is("m"));
+        Assert.assertThat(received.poll(100, TimeUnit.MILLISECONDS) == null, is(true));
+        ledger.close();
+    }
+
+    @Test
+    public void testWatchOtherWriter() throws Exception {
+        BlockingQueue<Transaction<String>> received = new LinkedBlockingQueue<>();
+        FileLedger<String, String> reader = ledger(true);
+        reader.addTransactionListener("TAG", received::add);
+
+        FileLedger<String, String> writer = ledger(false);
+        writer.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", "m1"));
+        writer.addTransaction(new MessageTransaction<>("", Instant.now(), "TAG", "m2"));
+
+        // WatchService may poll, e.g. on macOS
+        Transaction<String> first = received.poll(15, TimeUnit.SECONDS);
+        Transaction<String> second = received.poll(15, TimeUnit.SECONDS);
+        Assert.assertThat(first, notNullValue());
+        Assert.assertThat(second, notNullValue());
+        Assert.assertThat(Arrays.asList(first.getObject(), second.getObject()), is(Arrays.asList("m1", "m2")));
+
+        writer.close();
+        reader.close();
+    }
+}
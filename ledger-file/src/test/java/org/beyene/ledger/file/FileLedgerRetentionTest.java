@@ -0,0 +1,116 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Ledger;
+import org.beyene.ledger.api.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class FileLedgerRetentionTest {
+
+    private Path txs;
+
+    @Before
+    public void setUp() throws Exception {
+        txs = Files.createTempDirectory("txs");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(txs)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private FileLedger.Builder<String, String> builder() {
+        return new FileLedger.Builder<String, String>()
+                .setSerializer(s -> s)
+                .setDeserializer(s -> s)
+                .setFormat(Data.STRING)
+                .setDirectory(txs)
+                .setCompactionInterval(Duration.ofHours(1));
+    }
+
+    private static List<String> objects(Ledger<String, ?> ledger) {
+        return ledger.getTransactions(Instant.MIN, Instant.MAX).stream()
+                .map(Transaction::getObject)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAgeAndTagRetention() throws Exception {
+        Instant now = Instant.now();
+        FileLedger<String, String> ledger = builder()
+                .setMaxAge(Duration.ofHours(1))
+                .setTagRetention("SHORT", Duration.ofMinutes(1))
+                .setTagRetention("LONG", Duration.ofDays(1))
+                .build();
+
+        ledger.addTransaction(new MessageTransaction<>("", now.minus(Duration.ofHours(2)), "TAG", "expired"));
+        ledger.addTransaction(new MessageTransaction<>("", now.minus(Duration.ofHours(2)), "LONG", "kept by tag"));
+        ledger.addTransaction(new MessageTransaction<>("", now.minus(Duration.ofMinutes(5)), "SHORT", "expired by tag"));
+        ledger.addTransaction(new MessageTransaction<>("", now, "TAG", "recent"));
+
+        Assert.assertThat(ledger.compact(), is(2));
+        Assert.assertThat(objects(ledger), is(Arrays.asList("kept by tag", "recent")));
+        Assert.assertThat("files deleted", Files.list(txs).count(), is(2L));
+        Assert.assertThat(ledger.getTagSizes().get("SHORT"), is(0));
+        ledger.close();
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        Instant now = Instant.now();
+        FileLedger<String, String> ledger = builder()
+                .setMaxSize(25)
+                .build();
+
+        for (int i = 0; i < 5; i++)
+            ledger.addTransaction(new MessageTransaction<>("", now.plusMillis(i), "TAG", "message-" + i));
+
+        // 9 bytes each, the oldest are deleted
+        Assert.assertThat(ledger.compact(), is(3));
+        Assert.assertThat(objects(ledger), is(Arrays.asList("message-3", "message-4")));
+        ledger.close();
+    }
+
+    @Test
+    public void testProviderSchedule() throws Exception {
+        FileLedger<String, String> writer = builder().build();
+        writer.addTransaction(new MessageTransaction<>("", Instant.now().minusSeconds(120), "OLD", "expired"));
+        writer.addTransaction(new MessageTransaction<>("", Instant.now(), "OLD", "recent"));
+        writer.close();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("file.directory", txs.toString());
+        properties.put("file.retention.tag.OLD", "60000");
+        properties.put("file.compaction.interval", "10");
+        Ledger<String, String> ledger = new FileLedgerProvider().newLedger(s -> s, s -> s, Data.STRING,
+                Collections.emptyMap(), properties);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (Files.list(txs).count() > 1 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        Assert.assertThat(objects(ledger), is(Arrays.asList("recent")));
+        ledger.close();
+    }
+}
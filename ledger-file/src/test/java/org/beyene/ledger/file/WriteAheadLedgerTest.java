@@ -0,0 +1,200 @@
+package org.beyene.ledger.file;
+
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Ledger;
+import org.beyene.ledger.api.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class WriteAheadLedgerTest {
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private Path directory;
+    private Ledger<String, String> delegate;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("journal");
+        delegate = newDelegate();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Ledger<String, String> newDelegate() {
+        Ledger<String, String> delegate = mock(Ledger.class);
+        when(delegate.getFormat()).thenReturn(Data.STRING);
+        when(delegate.getTransactions(any(Instant.class), any(Instant.class))).thenReturn(new ArrayList<>());
+        return delegate;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(directory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private WriteAheadLedger<String, String> ledger() {
+        return new WriteAheadLedger.Builder<String, String>()
+                .setDelegate(delegate)
+                .setSerializer(s -> s)
+                .setDeserializer(s -> s)
+                .setDirectory(directory)
+                .setRetryInterval(Duration.ofMillis(10))
+                .build();
+    }
+
+    private void deliverTo(List<String> messages) throws IOException {
+        when(delegate.addTransaction(any())).then(invocation -> {
+            Transaction<String> tx = invocation.getArgument(0);
+            messages.add(tx.getObject());
+            return tx;
+        });
+    }
+
+    @Test
+    public void testForwardsInOrder() throws Exception {
+        deliverTo(delivered);
+        WriteAheadLedger<String, String> ledger = ledger();
+
+        for (int i = 0; i < 25; i++)
+            ledger.addTransaction(new MessageTransaction<>("", null, "TAG", "m" + i));
+
+        awaitDrained(ledger);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++)
+            expected.add("m" + i);
+        Assert.assertThat("delivered in order", delivered, is(expected));
+        Assert.assertThat("journal truncated", Files.list(directory).count(), is(0L));
+        ledger.close();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        when(delegate.addTransaction(any()))
+                .thenThrow(new IOException("node down"))
+                .thenThrow(new IllegalStateException("node down"))
+                .then(invocation -> {
+                    delivered.add(invocation.<Transaction<String>>getArgument(0).getObject());
+                    return null;
+                });
+        WriteAheadLedger<String, String> ledger = ledger();
+
+        ledger.addTransaction(new MessageTransaction<>("", null, "TAG", "m"));
+        awaitDrained(ledger);
+
+        Assert.assertThat("delivered once", delivered, is(Arrays.asList("m")));
+        verify(delegate, times(3)).addTransaction(any());
+        ledger.close();
+    }
+
+    @Test
+    public void testRecoveryAndPendingReads() throws Exception {
+        when(delegate.addTransaction(any())).thenThrow(new IOException("node down"));
+        WriteAheadLedger<String, String> ledger = ledger();
+
+        Instant now = Instant.now();
+        ledger.addTransaction(new MessageTransaction<>("ID", now.plusSeconds(2), "TAG", "b"));
+        ledger.addTransaction(new MessageTransaction<>("ID", now.plusSeconds(1), "TAG", "a"));
+
+        List<String> pending = ledger.getTransactions(now, now.plusSeconds(10)).stream()
+                .map(Transaction::getObject)
+                .collect(Collectors.toList());
+        Assert.assertThat("pending are readable", pending, is(Arrays.asList("a", "b")));
+        ledger.close();
+
+        delegate = newDelegate();
+        deliverTo(delivered);
+        WriteAheadLedger<String, String> recovered = ledger();
+        awaitDrained(recovered);
+
+        Assert.assertThat("journal order", delivered, is(Arrays.asList("b", "a")));
+        recovered.close();
+    }
+
+    @Test
+    public void testRecoveryOfAcknowledgedTemporaryEntry() throws Exception {
+        when(delegate.addTransaction(any())).thenThrow(new IOException("node down"));
+        WriteAheadLedger<String, String> ledger = ledger();
+        ledger.addTransaction(new MessageTransaction<>("ID", Instant.now(), "TAG", "acknowledged"));
+        ledger.close();
+
+        // crash after the entry was forced, before its rename reached the disk
+        Path entry;
+        try (Stream<Path> files = Files.list(directory)) {
+            entry = files.findFirst().orElseThrow(AssertionError::new);
+        }
+        Files.move(entry, directory.resolve("0.tmp"));
+        // crash while writing
+        Files.write(directory.resolve("1.tmp"), new byte[]{0, 0});
+
+        delegate = newDelegate();
+        deliverTo(delivered);
+        WriteAheadLedger<String, String> recovered = ledger();
+        awaitDrained(recovered);
+
+        Assert.assertThat("acknowledged entry delivered", delivered, is(Arrays.asList("acknowledged")));
+        Assert.assertThat("partial entry deleted", Files.list(directory).count(), is(0L));
+        recovered.close();
+    }
+
+    @Test
+    public void testEntryForwardedDuringReadIsReturnedOnce() throws Exception {
+        List<Transaction<String>> accepted = new CopyOnWriteArrayList<>();
+        List<Boolean> daemon = new CopyOnWriteArrayList<>();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch forwarded = new CountDownLatch(1);
+        when(delegate.addTransaction(any())).then(invocation -> {
+            reading.await(5, TimeUnit.SECONDS);
+            daemon.add(Thread.currentThread().isDaemon());
+            accepted.add(invocation.getArgument(0));
+            forwarded.countDown();
+            return invocation.getArgument(0);
+        });
+        when(delegate.getTransactions(any(Instant.class), any(Instant.class))).then(invocation -> {
+            reading.countDown();
+            forwarded.await(5, TimeUnit.SECONDS);
+            return new ArrayList<>(accepted);
+        });
+        WriteAheadLedger<String, String> ledger = ledger();
+
+        Instant now = Instant.now();
+        ledger.addTransaction(new MessageTransaction<>("ID", now.plusSeconds(1), "TAG", "m"));
+        List<String> messages = ledger.getTransactions(now, now.plusSeconds(10)).stream()
+                .map(Transaction::getObject)
+                .collect(Collectors.toList());
+
+        Assert.assertThat("returned once", messages, is(Arrays.asList("m")));
+        Assert.assertThat("daemon drainer", daemon, is(Arrays.asList(true)));
+        ledger.close();
+    }
+
+    private static void awaitDrained(WriteAheadLedger<?, ?> ledger) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ledger.getPendingCount() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        Assert.assertThat("drained", ledger.getPendingCount(), is(0));
+    }
+}
@@ -0,0 +1,182 @@
+package org.beyene.ledger.iota;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Runs a poll task with a delay that follows the observed traffic.</p>
+ * <p>A poll that yields new transactions resets the delay to the minimum, an empty poll multiplies it by the
+ * backoff factor up to the maximum. Adding a tag polls immediately. If a budget is set, polls exceeding it
+ * are postponed by the minimum delay.</p>
+ */
+public class AdaptivePollSchedule implements Runnable, TagChangeListener {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptivePollSchedule.class.getName());
+
+    private final ScheduledExecutorService executor;
+    private final IntSupplier task;
+    private final long minInterval;
+    private final long maxInterval;
+    private final double backoffFactor;
+    private final RateLimiter budget;
+
+    // guarded by this
+    private long interval;
+    private ScheduledFuture<?> pending;
+    private boolean polling;
+    private boolean expedite;
+    private boolean stopped;
+
+    private AdaptivePollSchedule(Builder builder) {
+        this.executor = Objects.requireNonNull(builder.executor);
+        this.task = Objects.requireNonNull(builder.task);
+        this.minInterval = builder.minInterval.toMillis();
+        this.maxInterval = Math.max(minInterval, builder.maxInterval.toMillis());
+        this.backoffFactor = builder.backoffFactor;
+        this.budget = builder.budget;
+        this.interval = Math.min(maxInterval, Math.max(minInterval, builder.initialInterval.toMillis()));
+    }
+
+    public synchronized void start() {
+        stopped = false;
+        schedule(0);
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        if (pending != null)
+            pending.cancel(false);
+    }
+
+    public synchronized Duration getInterval() {
+        return Duration.ofMillis(interval);
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (stopped)
+                return;
+
+            if (budget != null && !budget.tryAcquire()) {
+                schedule(minInterval);
+                return;
+            }
+            polling = true;
+            expedite = false;
+        }
+
+        int found = 0;
+        try {
+            found = task.getAsInt();
+        } catch (RuntimeException e) {
+            // node errors count as empty poll, so unreachable nodes are backed off
+            LOGGER.log(Level.INFO, e.toString(), e);
+        }
+
+        synchronized (this) {
+            polling = false;
+            if (found > 0)
+                interval = minInterval;
+            else
+                interval = Math.min(maxInterval, (long) (interval * backoffFactor));
+
+            schedule(expedite ? 0 : interval);
+        }
+    }
+
+    @Override
+    public synchronized void tagChanged(TagChangeEvent e) {
+        if (e.getAction() != TagChangeAction.ADD)
+            return;
+
+        // new tag has no traffic history, start with shortest delay
+        interval = minInterval;
+        if (polling)
+            expedite = true;
+        else if (pending != null && pending.cancel(false))
+            schedule(0);
+    }
+
+    private void schedule(long delay) {
+        if (stopped)
+            return;
+
+        try {
+            pending = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // executor was shut down by ledger
+            LOGGER.log(Level.FINE, e.toString(), e);
+            stopped = true;
+        }
+    }
+
+    static class Builder {
+
+        private ScheduledExecutorService executor;
+        private IntSupplier task;
+        private Duration minInterval = Duration.ofMillis(500);
+        private Duration maxInterval = Duration.ofSeconds(30);
+        private Duration initialInterval = Duration.ofSeconds(5);
+        private double backoffFactor = 2;
+        private RateLimiter budget;
+
+        public Builder setExecutor(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder setTask(IntSupplier task) {
+            this.task = task;
+            return this;
+        }
+
+        /**
+         * @param minInterval minimum delay between polls, at least one millisecond
+         */
+        public Builder setMinInterval(Duration minInterval) {
+            Objects.requireNonNull(minInterval);
+            if (minInterval.toMillis() <= 0)
+                throw new IllegalArgumentException("Minimum interval must be at least 1 ms: " + minInterval);
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        public Builder setMaxInterval(Duration maxInterval) {
+            Objects.requireNonNull(maxInterval);
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        public Builder setInitialInterval(Duration initialInterval) {
+            Objects.requireNonNull(initialInterval);
+            this.initialInterval = initialInterval;
+            return this;
+        }
+
+        public Builder setBackoffFactor(double backoffFactor) {
+            if (backoffFactor < 1)
+                throw new IllegalArgumentException("Backoff factor must be at least 1: " + backoffFactor);
+            this.backoffFactor = backoffFactor;
+            return this;
+        }
+
+        public Builder setBudget(RateLimiter budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        public AdaptivePollSchedule build() {
+            return new AdaptivePollSchedule(this);
+        }
+    }
+}
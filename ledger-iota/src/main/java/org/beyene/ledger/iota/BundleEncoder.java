@@ -0,0 +1,242 @@
+package org.beyene.ledger.iota;
+
+import jota.pow.ICurl;
+import jota.pow.SpongeFactory;
+import jota.utils.Constants;
+import org.beyene.ledger.api.buffer.BufferPool;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>Assembles the trytes of a zero value bundle that carries a message.</p>
+ * <p>Message fragments, address, tags, timestamps and indexes are written directly into one 2673-tryte buffer per
+ * transaction, the bundle hash is computed from the essence trytes of these buffers. The result is the same as
+ * building a jota Bundle with the fragments, finalizing it and converting its transactions, without the
+ * intermediate strings.</p>
+ */
+final class BundleEncoder {
+
+    static final int TRANSACTION_LENGTH = 2673;
+
+    private static final int MESSAGE_LENGTH = Constants.MESSAGE_LENGTH;
+    private static final int HASH_LENGTH = 81;
+    private static final int TAG_LENGTH = Constants.TAG_LENGTH;
+
+    // offsets of the transaction fields in trytes
+    private static final int ADDRESS = MESSAGE_LENGTH;
+    private static final int VALUE = ADDRESS + HASH_LENGTH;
+    private static final int OBSOLETE_TAG = VALUE + 27;
+    private static final int TIMESTAMP = OBSOLETE_TAG + TAG_LENGTH;
+    private static final int CURRENT_INDEX = TIMESTAMP + 9;
+    private static final int LAST_INDEX = CURRENT_INDEX + 9;
+    private static final int BUNDLE = LAST_INDEX + 9;
+    private static final int TRUNK = BUNDLE + HASH_LENGTH;
+    private static final int BRANCH = TRUNK + HASH_LENGTH;
+    private static final int TAG = BRANCH + HASH_LENGTH;
+    private static final int ATTACHMENT_TIMESTAMP = TAG + TAG_LENGTH;
+    private static final int ATTACHMENT_LOWER_BOUND = ATTACHMENT_TIMESTAMP + 9;
+    private static final int ATTACHMENT_UPPER_BOUND = ATTACHMENT_LOWER_BOUND + 9;
+    private static final int NONCE = ATTACHMENT_UPPER_BOUND + 9;
+
+    // address, value, obsolete tag, timestamp and indexes are adjacent
+    private static final int ESSENCE_LENGTH = BUNDLE - ADDRESS;
+
+    // cf. com.iota.iri.TransactionValidator#hasInvalidTimestamp in IRI
+    private static final long MAX_ATTACHMENT_TIMESTAMP = 3_812_798_742_493L;
+
+    private static final String TRYTE_ALPHABET = "9ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    // balanced trits of tryte character, least significant first, indexed by character
+    private static final int[][] TRYTE_TRITS = new int[128][];
+
+    static {
+        for (int i = 0; i < TRYTE_ALPHABET.length(); i++) {
+            int value = i <= 13 ? i : i - 27;
+            int[] trits = new int[3];
+            for (int t = 0; t < 3; t++) {
+                trits[t] = Math.floorMod(value + 1, 3) - 1;
+                value = (value - trits[t]) / 3;
+            }
+            TRYTE_TRITS[TRYTE_ALPHABET.charAt(i)] = trits;
+        }
+    }
+
+    private static final ThreadLocal<ICurl> KERL = ThreadLocal.withInitial(() -> SpongeFactory.create(SpongeFactory.Mode.KERL));
+    private static final ThreadLocal<int[]> TRITS = ThreadLocal.withInitial(() -> new int[3 * ESSENCE_LENGTH]);
+
+    private final BufferPool pool;
+
+    BundleEncoder(BufferPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * @param message   trytes of the message, split into fragments of 2187 trytes
+     * @param length    number of message trytes
+     * @param address   address without checksum, padded with 9s
+     * @param tag       tag and obsolete tag, padded with 9s
+     * @param timestamp attachment timestamp in ms, the transaction timestamp is in seconds
+     * @return transaction trytes, last index first
+     */
+    String[] encode(char[] message, int length, String address, String tag, long timestamp) {
+        if (address.length() > HASH_LENGTH)
+            throw new IllegalArgumentException("Address is longer than " + HASH_LENGTH + " trytes: " + address);
+        if (tag.length() > TAG_LENGTH)
+            throw new IllegalArgumentException("Tag is longer than " + TAG_LENGTH + " trytes: " + tag);
+
+        int count = Math.max(1, (length + MESSAGE_LENGTH - 1) / MESSAGE_LENGTH);
+        char[][] transactions = new char[count][];
+        try {
+            for (int i = 0; i < count; i++) {
+                char[] tx = pool.acquireChars(TRANSACTION_LENGTH);
+                transactions[i] = tx;
+
+                int from = i * MESSAGE_LENGTH;
+                int fragment = Math.max(0, Math.min(MESSAGE_LENGTH, length - from));
+                System.arraycopy(message, from, tx, 0, fragment);
+                Arrays.fill(tx, fragment, MESSAGE_LENGTH, '9');
+
+                putPadded(address, tx, ADDRESS, HASH_LENGTH);
+                putValue(0, tx, VALUE, 27);
+                putPadded(tag, tx, OBSOLETE_TAG, TAG_LENGTH);
+                putValue(timestamp / 1000, tx, TIMESTAMP, 9);
+                putValue(i, tx, CURRENT_INDEX, 9);
+                putValue(count - 1, tx, LAST_INDEX, 9);
+                Arrays.fill(tx, TRUNK, TAG, '9');
+                putPadded(tag, tx, TAG, TAG_LENGTH);
+                putValue(timestamp, tx, ATTACHMENT_TIMESTAMP, 9);
+                putValue(0, tx, ATTACHMENT_LOWER_BOUND, 9);
+                putValue(MAX_ATTACHMENT_TIMESTAMP, tx, ATTACHMENT_UPPER_BOUND, 9);
+                Arrays.fill(tx, NONCE, TRANSACTION_LENGTH, '9');
+            }
+
+            char[] bundle = bundleHash(transactions);
+            String[] trytes = new String[count];
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(bundle, 0, transactions[i], BUNDLE, HASH_LENGTH);
+                trytes[count - 1 - i] = new String(transactions[i], 0, TRANSACTION_LENGTH);
+            }
+            return trytes;
+        } finally {
+            for (char[] tx : transactions)
+                pool.release(tx);
+        }
+    }
+
+    private static char[] bundleHash(char[][] transactions) {
+        ICurl kerl = KERL.get();
+        int[] trits = TRITS.get();
+        int[] values = new int[HASH_LENGTH];
+
+        while (true) {
+            kerl.reset();
+            for (char[] tx : transactions) {
+                toTrits(tx, ADDRESS, ESSENCE_LENGTH, trits);
+                kerl.absorb(trits, 0, 3 * ESSENCE_LENGTH);
+            }
+            kerl.squeeze(trits, 0, 3 * HASH_LENGTH);
+
+            for (int i = 0; i < HASH_LENGTH; i++)
+                values[i] = trits[3 * i] + 3 * trits[3 * i + 1] + 9 * trits[3 * i + 2];
+
+            int insecure = countMaxValues(values);
+            if (insecure == 0)
+                break;
+
+            // a normalized hash with M reveals too much of a signing key,
+            // like jota Bundle#finalize the obsolete tag is incremented once per M
+            for (int i = 0; i < insecure; i++)
+                incrementObsoleteTag(transactions[0]);
+        }
+
+        char[] hash = new char[HASH_LENGTH];
+        for (int i = 0; i < HASH_LENGTH; i++)
+            hash[i] = toTryte(values[i]);
+        return hash;
+    }
+
+    // number of 13s in the normalized hash
+    private static int countMaxValues(int[] hash) {
+        int[] normalized = hash.clone();
+        for (int i = 0; i < 3; i++) {
+            int offset = i * 27;
+            long sum = 0;
+            for (int j = 0; j < 27; j++)
+                sum += normalized[offset + j];
+
+            while (sum > 0) {
+                for (int j = 0; j < 27; j++) {
+                    if (normalized[offset + j] > -13) {
+                        normalized[offset + j]--;
+                        break;
+                    }
+                }
+                sum--;
+            }
+            while (sum < 0) {
+                for (int j = 0; j < 27; j++) {
+                    if (normalized[offset + j] < 13) {
+                        normalized[offset + j]++;
+                        break;
+                    }
+                }
+                sum++;
+            }
+        }
+
+        int count = 0;
+        for (int value : normalized)
+            if (value == 13)
+                count++;
+        return count;
+    }
+
+    private static void incrementObsoleteTag(char[] tx) {
+        // balanced ternary increment, least significant tryte first
+        for (int i = OBSOLETE_TAG; i < OBSOLETE_TAG + TAG_LENGTH; i++) {
+            int[] trits = TRYTE_TRITS[tx[i]].clone();
+            boolean carry = true;
+            for (int t = 0; t < 3 && carry; t++) {
+                if (++trits[t] > 1)
+                    trits[t] = -1;
+                else
+                    carry = false;
+            }
+            tx[i] = toTryte(trits[0] + 3 * trits[1] + 9 * trits[2]);
+            if (!carry)
+                return;
+        }
+    }
+
+    private static void toTrits(char[] trytes, int offset, int length, int[] trits) {
+        for (int i = 0; i < length; i++)
+            System.arraycopy(TRYTE_TRITS[trytes[offset + i]], 0, trits, 3 * i, 3);
+    }
+
+    private static char toTryte(int value) {
+        return TRYTE_ALPHABET.charAt(value < 0 ? value + 27 : value);
+    }
+
+    private static void putPadded(String trytes, char[] target, int offset, int length) {
+        trytes.getChars(0, trytes.length(), target, offset);
+        Arrays.fill(target, offset + trytes.length(), offset + length, '9');
+    }
+
+    // balanced ternary, least significant tryte first
+    private static void putValue(long value, char[] target, int offset, int length) {
+        long remaining = Math.abs(value);
+        for (int i = 0; i < length; i++) {
+            int tryte = 0;
+            for (int t = 0, weight = 1; t < 3; t++, weight *= 3) {
+                int trit = (int) (remaining % 3);
+                remaining /= 3;
+                if (trit == 2) {
+                    trit = -1;
+                    remaining++;
+                }
+                tryte += trit * weight;
+            }
+            target[offset + i] = toTryte(value < 0 ? -tryte : tryte);
+        }
+    }
+}
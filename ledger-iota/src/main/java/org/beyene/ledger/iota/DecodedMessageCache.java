@@ -0,0 +1,161 @@
+package org.beyene.ledger.iota;
+
+import org.beyene.ledger.api.buffer.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>LRU cache of decoded message payloads keyed by bundle hash.</p>
+ * <p>Payloads are kept in direct buffers, so cached messages don't count against the Java heap. The buffers come
+ * from a pool of their own, evicted buffers are reused for new entries instead of allocating direct memory per
+ * entry. The cache is bounded by the total payload size, least recently used bundles are evicted first.
+ * Reattachments share the bundle hash and therefore the cached payload.</p>
+ * <p>The bundle hash is only known once the bundle's transactions are downloaded, so the cache saves decoding and
+ * deserialization, not network requests.</p>
+ */
+public class DecodedMessageCache {
+
+    private final long capacity;
+    private final BufferPool pool;
+
+    // guarded by this
+    private final Map<String, ByteBuffer> entries;
+    private long size;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * @param capacity maximum size of all payloads in bytes
+     */
+    public DecodedMessageCache(long capacity) {
+        this.capacity = capacity;
+        this.pool = new BufferPool.Builder()
+                .setDirect(true)
+                // evicting and inserting threads differ
+                .setThreadCacheSize(0)
+                .setSharedCacheSize(16)
+                .build();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * @return copy of the cached payload or <code>null</code>
+     */
+    public byte[] get(String bundle) {
+        Objects.requireNonNull(bundle);
+
+        byte[] payload;
+        // evicted buffers are reused, so they are only read while holding the lock
+        synchronized (this) {
+            ByteBuffer buffer = entries.get(bundle);
+            if (buffer == null) {
+                payload = null;
+            } else {
+                payload = new byte[buffer.limit()];
+                buffer.duplicate().get(payload);
+            }
+        }
+
+        (payload != null ? hits : misses).increment();
+        return payload;
+    }
+
+    /**
+     * @param target pool that provides the returned buffer
+     * @return copy of the cached payload between position and limit, to be released to target, or
+     * <code>null</code>
+     */
+    public ByteBuffer getBuffer(String bundle, BufferPool target) {
+        Objects.requireNonNull(bundle);
+        Objects.requireNonNull(target);
+
+        ByteBuffer payload;
+        synchronized (this) {
+            ByteBuffer buffer = entries.get(bundle);
+            if (buffer == null) {
+                payload = null;
+            } else {
+                payload = target.acquire(buffer.limit());
+                payload.put(buffer.duplicate());
+                payload.flip();
+            }
+        }
+
+        (payload != null ? hits : misses).increment();
+        return payload;
+    }
+
+    public void put(String bundle, byte[] payload) {
+        Objects.requireNonNull(payload);
+        put(bundle, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Copies the payload between position and limit, the position of payload is not changed.
+     */
+    public void put(String bundle, ByteBuffer payload) {
+        Objects.requireNonNull(bundle);
+        Objects.requireNonNull(payload);
+        if (payload.remaining() > capacity)
+            return;
+
+        // pooled buffers may be larger than the payload, limit marks its end
+        ByteBuffer buffer = pool.acquire(payload.remaining());
+        buffer.put(payload.duplicate());
+        buffer.flip();
+
+        synchronized (this) {
+            ByteBuffer previous = entries.put(bundle, buffer);
+            if (previous != null) {
+                size -= previous.limit();
+                pool.release(previous);
+            }
+            size += buffer.limit();
+
+            Iterator<ByteBuffer> it = entries.values().iterator();
+            while (size > capacity && it.hasNext()) {
+                ByteBuffer evicted = it.next();
+                size -= evicted.limit();
+                it.remove();
+                pool.release(evicted);
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.values().forEach(pool::release);
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -1,20 +1,19 @@
 package org.beyene.ledger.iota;
 
 import jota.error.ArgumentException;
-import jota.model.Bundle;
-import jota.utils.Constants;
-import org.apache.commons.lang3.StringUtils;
+import org.beyene.ledger.api.BufferSerializer;
 import org.beyene.ledger.api.Format;
 import org.beyene.ledger.api.Serializer;
 import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.beyene.ledger.api.metrics.Metrics;
 import org.beyene.ledger.iota.util.Iota;
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,6 +22,9 @@ class DefaultMessageSender<M, D> implements MessageSender<M> {
 
     private static final Logger LOGGER = Logger.getLogger(DefaultMessageSender.class.getName());
 
+    // bundles of more transactions are not accepted by nodes anyway
+    private static final int MAX_MESSAGE_SIZE = 1 << 20;
+
     private final Iota api;
     private final Format<D> format;
     private final Serializer<M, D> serializer;
@@ -32,6 +34,9 @@ class DefaultMessageSender<M, D> implements MessageSender<M> {
 
     private final int depth;
     private final int minWeightMagnitude;
+    private final Metrics metrics;
+    private final BufferPool pool;
+    private final BundleEncoder encoder;
 
     private DefaultMessageSender(Builder<M, D> builder) {
         this.api = builder.api;
@@ -41,17 +46,29 @@ class DefaultMessageSender<M, D> implements MessageSender<M> {
         this.useConfiguredAddress = builder.useConfiguredAddress;
         this.depth = builder.depth;
         this.minWeightMagnitude = builder.minWeightMagnitude;
+        this.metrics = builder.metrics;
+        this.pool = builder.pool;
+        this.encoder = new BundleEncoder(pool);
     }
 
     @Override
     public Transaction<M> addTransaction(Transaction<M> transaction) throws IOException {
+        long start = System.nanoTime();
         M message = transaction.getObject();
-        D serialized = serializer.serialize(message);
-        String messageTrytes = toTrytes(serialized);
-        List<String> signatureFragments = fragmentData(messageTrytes);
-
         Instant timestamp = Optional.ofNullable(transaction.getTimestamp()).orElse(Instant.now());
-        String[] txTrytes = createTransactionTrytes(signatureFragments, transaction, timestamp);
+
+        // pooled, to be released after encoding
+        CharBuffer messageTrytes = serializer instanceof BufferSerializer
+                ? serializeToTrytes(message)
+                : toTrytes(serializer.serialize(message));
+        String[] txTrytes;
+        try {
+            txTrytes = encoder.encode(messageTrytes.array(), messageTrytes.remaining(), addressOf(transaction),
+                    Objects.toString(transaction.getTag(), ""), timestamp.toEpochMilli());
+        } finally {
+            pool.release(messageTrytes.array());
+        }
+        metrics.recordSince("sender.prepare", start);
 
         try {
             String reference = null;
@@ -59,85 +76,51 @@ class DefaultMessageSender<M, D> implements MessageSender<M> {
         } catch (ArgumentException e) {
             LOGGER.log(Level.INFO, e.toString(), e);
             throw new IOException("Sending transaction failed", e);
+        } finally {
+            metrics.recordSince("sender.send", start);
         }
 
         return new MessageTransaction<>(address, timestamp, transaction.getTag(), message);
     }
 
-    private String[] createTransactionTrytes(List<String> signatureFragments, Transaction<M> transaction, Instant timestamp) {
+    private String addressOf(Transaction<M> transaction) {
         String address = transaction.getIdentifier();
         if (useConfiguredAddress)
             address = this.address;
         if (address == null || address.isEmpty())
             address = "";
-
-        address = StringUtils.rightPad(address, Constants.ADDRESS_LENGTH_WITHOUT_CHECKSUM, '9');
-
-        String tagRaw = transaction.getTag();
-        String tag = StringUtils.rightPad(tagRaw, Constants.TAG_LENGTH, '9');
-
-        long value = 0;
-        int signatureMessageLength = signatureFragments.size();
-        Bundle bundle = new Bundle();
-        bundle.addEntry(signatureMessageLength, address, value, tag, 0);
-        bundle.addTrytes(signatureFragments);
-
-        bundle.getTransactions().stream().forEach(this::copyTag);
-        bundle.getTransactions().stream().forEach(tx -> fixTimestamps(tx, timestamp.toEpochMilli()));
-        bundle.finalize(null);
-
-        List<jota.model.Transaction> transactions = bundle.getTransactions();
-        Collections.reverse(transactions);
-        return transactions.stream()
-                .map(jota.model.Transaction::toTrytes)
-                .toArray(String[]::new);
+        return address;
     }
 
-    private String toTrytes(D serialized) {
-        String trytes;
-        if (String.class.isAssignableFrom(format.getType())) {
-            String string = String.class.cast(serialized);
-            trytes = jota.utils.TrytesConverter.toTrytes(string);
-        } else if (byte[].class.isAssignableFrom(format.getType())) {
-            byte[] bytes = byte[].class.cast(serialized);
-
-            // bytes are encoded as hex strings,
-            // since byte to trits conversion is incomplete (values 243-255 are not supported)
-            // cf. https://iota.stackexchange.com/questions/2159/converting-bytes-to-trites-using-iota-libraries
-            String hexBinary = DatatypeConverter.printHexBinary(bytes);
-            trytes = jota.utils.TrytesConverter.toTrytes(hexBinary);
-        } else {
-            throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
+    @SuppressWarnings("unchecked")
+    private CharBuffer serializeToTrytes(M message) {
+        ByteBuffer buffer = pool.serialize((BufferSerializer<M>) serializer, message, MAX_MESSAGE_SIZE);
+        try {
+            char[] trytes = pool.acquireChars(buffer.remaining() * TryteCodec.TRYTES_PER_BYTE);
+            return CharBuffer.wrap(trytes, 0, TryteCodec.toTrytes(buffer, trytes, 0));
+        } finally {
+            pool.release(buffer);
         }
-
-        return trytes;
     }
 
-    private List<String> fragmentData(String trytes) {
-        List<String> signatureFragments = new ArrayList<>();
-        // 2187
-        int messageLength = Constants.MESSAGE_LENGTH;
-
-        for (int i = 0; i < trytes.length(); i += messageLength) {
-            String fragment = trytes.substring(i, Math.min(i + messageLength, trytes.length()));
-            String padded = StringUtils.rightPad(fragment, messageLength, '9');
-            signatureFragments.add(padded);
+    private CharBuffer toTrytes(D serialized) {
+        if (String.class.isAssignableFrom(format.getType())) {
+            String string = String.class.cast(serialized);
+            char[] trytes = pool.acquireChars(2 * string.length());
+            return CharBuffer.wrap(trytes, 0, TryteCodec.toTrytes(string, trytes, 0));
         }
 
-        return signatureFragments;
-    }
-
-    private void copyTag(jota.model.Transaction tx) {
-        tx.setTag(tx.getObsoleteTag());
-    }
-
-    private void fixTimestamps(jota.model.Transaction tx, long timestamp) {
-        // cf. com.iota.iri.TransactionValidator#hasInvalidTimestamp in IRI
-        tx.setTimestamp(timestamp / 1000);
+        ByteBuffer bytes;
+        if (byte[].class.isAssignableFrom(format.getType()))
+            bytes = ByteBuffer.wrap(byte[].class.cast(serialized));
+        else if (ByteBuffer.class.isAssignableFrom(format.getType()))
+            bytes = ByteBuffer.class.cast(serialized);
+        else
+            throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
 
-        tx.setAttachmentTimestamp(timestamp);
-        tx.setAttachmentTimestampLowerBound(0);
-        tx.setAttachmentTimestampUpperBound(3_812_798_742_493L);
+        // bytes are encoded as hex strings, cf. TryteCodec
+        char[] trytes = pool.acquireChars(bytes.remaining() * TryteCodec.TRYTES_PER_BYTE);
+        return CharBuffer.wrap(trytes, 0, TryteCodec.toTrytes(bytes, trytes, 0));
     }
 
     static class Builder<M, D> {
@@ -148,6 +131,8 @@ class DefaultMessageSender<M, D> implements MessageSender<M> {
         private boolean useConfiguredAddress;
         private int depth;
         private int minWeightMagnitude;
+        private Metrics metrics = Metrics.noop();
+        private BufferPool pool = BufferPool.shared();
 
         public Builder<M, D> setApi(Iota api) {
             this.api = api;
@@ -184,6 +169,18 @@ class DefaultMessageSender<M, D> implements MessageSender<M> {
             return this;
         }
 
+        public Builder<M, D> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder<M, D> setBufferPool(BufferPool pool) {
+            Objects.requireNonNull(pool);
+            this.pool = pool;
+            return this;
+        }
+
         public DefaultMessageSender<M, D> build() {
             return new DefaultMessageSender<>(this);
         }
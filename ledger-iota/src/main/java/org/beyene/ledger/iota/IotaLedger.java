@@ -1,7 +1,10 @@
 package org.beyene.ledger.iota;
 
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
 import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.beyene.ledger.api.metrics.Metrics;
 import org.beyene.ledger.iota.TagChangeListener.TagChangeAction;
 import org.beyene.ledger.iota.TagChangeListener.TagChangeEvent;
 import org.beyene.ledger.iota.util.Iota;
@@ -16,28 +19,30 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class IotaLedger<M, D> implements Ledger<M, D> {
 
     private static final Logger LOGGER = Logger.getLogger(IotaLedger.class.getName());
 
+    private final Iota api;
     private final MessageSender<M> sender;
     private final Format<D> format;
 
     private final ScheduledExecutorService scheduledExecutor;
     private final ExecutorService executorService;
+    private final DecodeStage decodeStage;
 
     private final ConcurrentMap<String, TransactionListener<M>> listeners;
     private final EventListenerList tagListeners;
 
-    private final List<Transaction<M>> messagesBeforePushThreshold;
+    private final MessageStore<M> messagesBeforePushThreshold;
+    private final RemoteHistory<M> remoteHistory;
 
     private IotaLedger(Builder<M, D> builder) {
         LOGGER.entering(IotaLedger.class.getSimpleName(), "IotaLedger()");
 
-        Iota api = builder.api;
+        this.api = builder.api;
         this.sender = builder.sender;
 
         this.format = builder.format;
@@ -54,12 +59,24 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
         // TODO
         // Use queue for old txs
         BlockingQueue<Transaction<jota.model.Transaction>> txsBeforePushThreshold = new LinkedBlockingQueue<>();
-        this.messagesBeforePushThreshold = new CopyOnWriteArrayList<>();
+        this.messagesBeforePushThreshold = new MessageStore.Builder()
+                .setMaxSize(builder.historySize)
+                .setRetention(Duration.ofMinutes(builder.historyRetentionMinutes))
+                .build();
 
         // Guava Cache is only LRU-ish
         Map<String, Boolean> knownHashes = CacheBuilder.newBuilder().maximumSize(builder.hashCacheSize).<String, Boolean>build().asMap();
-        // refactor out?
-        TransactionPoller txProducer = new TransactionPoller.Builder()
+        // polls per minute, shared by all shards of this ledger
+        RateLimiter pollBudget = builder.pollBudget > 0 ? RateLimiter.create(builder.pollBudget / 60d) : null;
+        AdaptivePollSchedule.Builder pollSchedule = new AdaptivePollSchedule.Builder()
+                .setExecutor(scheduledExecutor)
+                .setInitialInterval(Duration.ofMillis(builder.pollDelayInterval))
+                .setMinInterval(Duration.ofMillis(builder.minPollInterval))
+                .setMaxInterval(Duration.ofMillis(builder.maxPollInterval))
+                .setBackoffFactor(builder.pollBackoffFactor)
+                .setBudget(pollBudget);
+
+        ShardedPoller txProducer = new ShardedPoller.Builder()
                 .setApi(api)
                 .setQueue(transactionQueue)
                 .setTags(listeners.keySet())
@@ -67,11 +84,23 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
                 .setSlidingWindow(Duration.ofMinutes(builder.slidingWindow))
                 .setTransactionBeforePushThresholdConsumer(txsBeforePushThreshold::addAll)
                 .setKnownHashesCache(knownHashes)
+                .setBatchSize(builder.pollBatchSize)
+                .setShards(builder.pollShards)
+                .setScheduleBuilder(pollSchedule)
+                .setMetrics(builder.metrics)
                 .build();
-        scheduledExecutor.scheduleWithFixedDelay(txProducer, 0, builder.pollDelayInterval, TimeUnit.MILLISECONDS);
         tagListeners.add(TagChangeListener.class, txProducer);
+        txProducer.start();
 
         BlockingQueue<Transaction<M>> messageQueue = new LinkedBlockingQueue<>();
+        // shared by polling and remote history
+        DecodedMessageCache messageCache = builder.messageCacheSize > 0 ? new DecodedMessageCache(builder.messageCacheSize) : null;
+        if (messageCache != null) {
+            builder.metrics.gauge("cache.decoded.hits", messageCache::getHits);
+            builder.metrics.gauge("cache.decoded.misses", messageCache::getMisses);
+            builder.metrics.gauge("cache.decoded.size", messageCache::size);
+        }
+        this.decodeStage = DecodeStage.withThreads(builder.decodeThreads);
         MessageParser<M, D> messageParser = new MessageParser.Builder<M, D>()
                 .setMessageQueue(messageQueue)
                 .setTransactionQueue(transactionQueue)
@@ -80,6 +109,18 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
                 .setFormat(format)
                 .setKeepAliveInterval(Duration.ofMinutes(builder.keepFragmentsAliveMinutes))
                 .setDeserializer(builder.deserializer)
+                .setMessageCache(messageCache)
+                .setMetrics(builder.metrics)
+                .setBufferPool(builder.bufferPool)
+                .setDecodeStage(decodeStage)
+                .build();
+
+        this.remoteHistory = new RemoteHistory.Builder<M>()
+                .setApi(api)
+                .setBundleParser(messageParser::parseBundles)
+                .setBatchSize(builder.pollBatchSize)
+                .setCacheSize(builder.remoteHistoryCacheSize)
+                .setRefreshInterval(Duration.ofMillis(builder.remoteHistoryRefreshInterval))
                 .build();
 
         long initialDelay = builder.pollDelayInterval / 2;
@@ -96,6 +137,7 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
                 .setMonitorContinuously(true)
                 .setListeners(listeners)
                 .setExecutorService(executorService)
+                .setMetrics(builder.metrics)
                 .build();
         scheduledExecutor.submit(dispatcher);
 
@@ -109,11 +151,12 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
 
     @Override
     public List<Transaction<M>> getTransactions(Instant since, Instant to) {
-        return messagesBeforePushThreshold
-                .stream()
-                .filter(tx -> tx.getTimestamp().isAfter(since))
-                .filter(tx -> tx.getTimestamp().isBefore(to))
-                .collect(Collectors.toList());
+        return messagesBeforePushThreshold.getTransactions(since, to);
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        return remoteHistory.getTransactions(tag, since, to);
     }
 
     @Override
@@ -134,7 +177,7 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
 
         listeners.remove(tag);
         // remove messages of unsubscribed tags
-        messagesBeforePushThreshold.removeIf(tx -> tx.getTag().equals(tag));
+        messagesBeforePushThreshold.removeTag(tag);
 
         TagChangeEvent event = new TagChangeEvent(listeners.keySet(), tag, TagChangeAction.REMOVE);
         fireTagChanged(event);
@@ -159,6 +202,8 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
     public void close() throws IOException {
         scheduledExecutor.shutdownNow();
         executorService.shutdownNow();
+        decodeStage.close();
+        api.close();
     }
 
     static class Builder<M, D> {
@@ -170,12 +215,26 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
         private Format<D> format;
         private Map<String, TransactionListener<M>> listeners;
         private int pollDelayInterval = 5_000; // in ms
+        private int minPollInterval = 500; // in ms
+        private int maxPollInterval = 30_000; // in ms
+        private double pollBackoffFactor = 2;
+        private int pollBudget = 0; // polls per minute, 0 is unlimited
+        private int pollShards = 1;
+        private int historySize = 0; // 0 is unbounded
+        private int historyRetentionMinutes = 0; // 0 is unbounded
+        private int remoteHistoryCacheSize = 100_000; // in messages, hashes and pending transactions
+        private int remoteHistoryRefreshInterval = 10_000; // in ms
+        private long messageCacheSize = 16 * 1024 * 1024; // in bytes, 0 disables cache
         private int pushDelayIntervall = 5_000; // in ms
         private int poolThreads = 2;
+        private int decodeThreads = 1; // 0 is number of processors
         private int slidingWindow = 5; // in minutes
         private int hashCacheSize = 1_000;
+        private int pollBatchSize = 500;
         private int listenerThreads = 2;
         private int keepFragmentsAliveMinutes = 60;
+        private Metrics metrics = Metrics.noop();
+        private BufferPool bufferPool = BufferPool.shared();
         private Instant pushThreshold = Instant.now();
 
         public Builder<M, D>  setApi(Iota api) {
@@ -213,6 +272,68 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
             return this;
         }
 
+        public Builder<M, D>  setMinPollInterval(int minPollInterval) {
+            this.minPollInterval = minPollInterval;
+            return this;
+        }
+
+        public Builder<M, D>  setMaxPollInterval(int maxPollInterval) {
+            this.maxPollInterval = maxPollInterval;
+            return this;
+        }
+
+        public Builder<M, D>  setPollBackoffFactor(double pollBackoffFactor) {
+            this.pollBackoffFactor = pollBackoffFactor;
+            return this;
+        }
+
+        public Builder<M, D>  setPollBudget(int pollBudget) {
+            this.pollBudget = pollBudget;
+            return this;
+        }
+
+        public Builder<M, D>  setPollShards(int pollShards) {
+            this.pollShards = pollShards;
+            return this;
+        }
+
+        public Builder<M, D>  setHistorySize(int historySize) {
+            this.historySize = historySize;
+            return this;
+        }
+
+        public Builder<M, D>  setHistoryRetention(int retentionMinutes) {
+            this.historyRetentionMinutes = retentionMinutes;
+            return this;
+        }
+
+        public Builder<M, D>  setRemoteHistoryCacheSize(int cacheSize) {
+            this.remoteHistoryCacheSize = cacheSize;
+            return this;
+        }
+
+        public Builder<M, D>  setRemoteHistoryRefreshInterval(int refreshInterval) {
+            this.remoteHistoryRefreshInterval = refreshInterval;
+            return this;
+        }
+
+        public Builder<M, D>  setMessageCacheSize(long messageCacheSize) {
+            this.messageCacheSize = messageCacheSize;
+            return this;
+        }
+
+        public Builder<M, D>  setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder<M, D>  setBufferPool(BufferPool bufferPool) {
+            Objects.requireNonNull(bufferPool);
+            this.bufferPool = bufferPool;
+            return this;
+        }
+
         public Builder<M, D>  setPushIntervall(int pushIntervall) {
             this.pushDelayIntervall = pushIntervall;
             return this;
@@ -223,6 +344,13 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
             return this;
         }
 
+        public Builder<M, D>  setDecodeThreads(int decodeThreads) {
+            if (decodeThreads < 0)
+                throw new IllegalArgumentException("Number of decode threads must not be negative: " + decodeThreads);
+            this.decodeThreads = decodeThreads;
+            return this;
+        }
+
         public Builder<M, D>  setSlidingWindow(int slidingWindow) {
             this.slidingWindow = slidingWindow;
             return this;
@@ -233,6 +361,11 @@ public class IotaLedger<M, D> implements Ledger<M, D> {
             return this;
         }
 
+        public Builder<M, D>  setPollBatchSize(int pollBatchSize) {
+            this.pollBatchSize = pollBatchSize;
+            return this;
+        }
+
         public Builder<M, D>  setListenerThreads(int listenerThreads) {
             this.listenerThreads = listenerThreads;
             return this;
@@ -2,25 +2,75 @@ package org.beyene.ledger.iota;
 
 import cfb.pearldiver.PearlDiverLocalPoW;
 import jota.IotaLocalPoW;
+import okhttp3.ConnectionPool;
 import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.beyene.ledger.api.metrics.Metrics;
+import org.beyene.ledger.iota.util.CoalescingIota;
 import org.beyene.ledger.iota.util.Iota;
 import org.beyene.ledger.iota.util.IotaAPIExtended;
+import org.beyene.ledger.iota.util.IotaNodePool;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.security.cert.X509Certificate;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * <p>Provider for IotaLedger.</p>
+ * <p>Properties and default values, in addition to the general ones of LedgerProvider:</p>
+ * <ul>
+ * <li>ledger.poll.interval</li>
+ * <p>Initial delay between polls, afterwards it follows the traffic between min and max.</p>
+ * <p>Default is 5000 (in ms, int).</p>
+ * <li>ledger.poll.interval.min</li>
+ * <p>Delay after a poll that found new transactions.</p>
+ * <p>Default is 500 (in ms, int).</p>
+ * <li>ledger.poll.interval.max</li>
+ * <p>Upper bound of the delay after empty polls.</p>
+ * <p>Default is 30000 (in ms, int).</p>
+ * <li>ledger.poll.backoff</li>
+ * <p>Factor by which an empty poll increases the delay, at least 1.</p>
+ * <p>Default is 2 (double).</p>
+ * <li>ledger.poll.budget</li>
+ * <p>Maximum number of polls per minute of all shards, polls beyond it are postponed. Use 0 for no limit.</p>
+ * <p>Default is 0 (int).</p>
+ * <li>ledger.poll.shards</li>
+ * <p>Number of pollers the tags are distributed over.</p>
+ * <p>Default is 1 (int).</p>
+ * <li>ledger.poll.batch</li>
+ * <p>Number of transactions requested from the node at once.</p>
+ * <p>Default is 500 (int).</p>
+ * <li>ledger.history.size</li>
+ * <p>Maximum number of received messages before the push threshold kept for range queries. Use 0 for no
+ * limit.</p>
+ * <p>Default is 0 (int).</p>
+ * <li>ledger.history.retention</li>
+ * <p>Age after which those messages are dropped. Use 0 for no limit.</p>
+ * <p>Default is 0 (in minutes, int).</p>
+ * <li>ledger.history.remote.cache</li>
+ * <p>Maximum number of entries cached for queries of tags without listener: messages, transaction hashes and
+ * transactions of incomplete bundles.</p>
+ * <p>Default is 100000 (int).</p>
+ * <li>ledger.history.remote.refresh</li>
+ * <p>Minimum delay between two fetches of the same tag by such queries.</p>
+ * <p>Default is 10000 (in ms, int).</p>
+ * </ul>
+ */
 public class IotaLedgerProvider implements LedgerProvider {
 
     private static final Logger LOGGER = Logger.getLogger(IotaLedgerProvider.class.getName());
@@ -41,25 +91,33 @@ public class IotaLedgerProvider implements LedgerProvider {
 
         checkConfiguration(properties);
 
-        IotaLocalPoW localPoW = new PearlDiverLocalPoW();
-        IotaAPIExtended.Builder apiBuilder = new IotaAPIExtended.Builder();
-        apiBuilder
-                .protocol(Objects.toString(properties.get("iota.node.protocol")))
-                .host(Objects.toString(properties.get("iota.node.host")))
-                .port(Objects.toString(properties.get("iota.node.port")))
-                .localPoW(localPoW);
+        Metrics metrics = Metrics.fromProperties(properties);
+        BufferPool bufferPool = BufferPool.fromProperties(properties);
+        Iota api = createApi(properties, metrics);
+        // poller, backfill and parser of one ledger ask for the same tags and hashes
+        Object coalescing = properties.get("iota.coalescing");
+        if (Objects.isNull(coalescing) || Boolean.valueOf(Objects.toString(coalescing)))
+            api = new CoalescingIota(api);
 
-        boolean sslDisabled = Boolean.valueOf(Objects.toString(properties.get("ssl.check.disable")));
-        if (sslDisabled) {
-            apiBuilder.httpClientModifier(this::disableCertificateCheck);
-        }
-
-        Iota api = apiBuilder.build();
-        IotaLedger.Builder<M, D> builder = new IotaLedger.Builder<>();
+        IotaLedger.Builder<M, D> builder = new IotaLedger.Builder<M, D>()
+                .setMetrics(metrics);
 
         setNumber(properties.get("ledger.poll.interval"), Number::intValue, builder::setPollInterval);
+        setNumber(properties.get("ledger.poll.batch"), Number::intValue, builder::setPollBatchSize);
+        setNumber(properties.get("ledger.poll.interval.min"), Number::intValue, builder::setMinPollInterval);
+        setNumber(properties.get("ledger.poll.interval.max"), Number::intValue, builder::setMaxPollInterval);
+        setNumber(properties.get("ledger.poll.backoff"), Number::doubleValue, builder::setPollBackoffFactor);
+        setNumber(properties.get("ledger.poll.budget"), Number::intValue, builder::setPollBudget);
+        setNumber(properties.get("ledger.poll.shards"), Number::intValue, builder::setPollShards);
+        setNumber(properties.get("ledger.history.size"), Number::intValue, builder::setHistorySize);
+        setNumber(properties.get("ledger.history.retention"), Number::intValue, builder::setHistoryRetention);
+        setNumber(properties.get("ledger.history.remote.cache"), Number::intValue, builder::setRemoteHistoryCacheSize);
+        setNumber(properties.get("ledger.history.remote.refresh"), Number::intValue,
+                builder::setRemoteHistoryRefreshInterval);
+        setNumber(properties.get("ledger.cache.decoded"), Number::longValue, builder::setMessageCacheSize);
         setNumber(properties.get("tx.push.threshold"), Number::intValue, builder::setPushIntervall);
         setNumber(properties.get("ledger.pool.threads"), Number::intValue, builder::setPoolThreads);
+        setNumber(properties.get(DecodeStage.PROPERTY), Number::intValue, builder::setDecodeThreads);
         setNumber(properties.get("ledger.receive.slidingwindow"), Number::intValue, builder::setSlidingWindow);
         setNumber(properties.get("ledger.receive.hash.cache"), Number::intValue, builder::setHashCacheSize);
         setNumber(properties.get("ledger.fragments.alive"), Number::intValue, builder::setKeepFragmentsAlive);
@@ -74,9 +132,12 @@ public class IotaLedgerProvider implements LedgerProvider {
                 // what about the address
                 //.setAddress("")
                 .setUseConfiguredAddress(false)
+                .setMetrics(metrics)
+                .setBufferPool(bufferPool)
                 .build();
 
         return builder
+                .setBufferPool(bufferPool)
                 .setApi(api)
                 .setMessageSender(messageSender)
                 .setFormat(format)
@@ -88,6 +149,95 @@ public class IotaLedgerProvider implements LedgerProvider {
                 .build();
     }
 
+    private Iota createApi(Map<String, Object> properties, Metrics metrics) {
+        // poller, parser and sender share one pool of warm connections, also across nodes
+        int maxIdleConnections = getNumber(properties.get("iota.http.pool.size"), 5).intValue();
+        long keepAlive = getNumber(properties.get("iota.http.keepalive"), 300_000).longValue();
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS);
+
+        Object nodes = properties.get("iota.nodes");
+        if (Objects.isNull(nodes)) {
+            return createNode(Objects.toString(properties.get("iota.node.protocol")),
+                    Objects.toString(properties.get("iota.node.host")),
+                    Objects.toString(properties.get("iota.node.port")),
+                    connectionPool, metrics, properties);
+        }
+
+        IotaNodePool.Builder poolBuilder = new IotaNodePool.Builder();
+        for (String node : Objects.toString(nodes).split(",")) {
+            URI uri = parseNode(node.trim());
+            poolBuilder.addNode(createNode(uri.getScheme(), uri.getHost(), Objects.toString(uri.getPort()),
+                    connectionPool, metrics, properties));
+        }
+
+        Object routing = properties.get("iota.nodes.routing");
+        if (Objects.nonNull(routing))
+            poolBuilder.setRouting(IotaNodePool.Routing.valueOf(Objects.toString(routing).toUpperCase()));
+
+        setNumber(properties.get("iota.nodes.failures"), Number::intValue, poolBuilder::setFailureThreshold);
+        setNumber(properties.get("iota.nodes.ejection"), Number::longValue,
+                ejection -> poolBuilder.setEjectionTime(Duration.ofMillis(ejection)));
+
+        return poolBuilder.build();
+    }
+
+    private Iota createNode(String protocol, String host, String port,
+                            ConnectionPool connectionPool, Metrics metrics, Map<String, Object> properties) {
+        IotaLocalPoW localPoW = new PearlDiverLocalPoW();
+        IotaAPIExtended.Builder apiBuilder = new IotaAPIExtended.Builder();
+        apiBuilder
+                .protocol(protocol)
+                .host(host)
+                .port(port)
+                .localPoW(localPoW)
+                .tipFreshness(Duration.ofMillis(5_000))
+                .connectionPool(connectionPool)
+                .metrics(metrics);
+        setNumber(properties.get("iota.tips.freshness"), Number::longValue,
+                freshness -> apiBuilder.tipFreshness(Duration.ofMillis(freshness)));
+
+        setNumber(properties.get("iota.http.timeout.connect"), Number::longValue,
+                timeout -> apiBuilder.connectTimeout(Duration.ofMillis(timeout)));
+        setNumber(properties.get("iota.http.timeout.read"), Number::longValue,
+                timeout -> apiBuilder.readTimeout(Duration.ofMillis(timeout)));
+        setNumber(properties.get("iota.http.timeout.write"), Number::longValue,
+                timeout -> apiBuilder.writeTimeout(Duration.ofMillis(timeout)));
+        apiBuilder.dispatcher(getNumber(properties.get("iota.http.dispatcher.requests"), 64).intValue(),
+                getNumber(properties.get("iota.http.dispatcher.requests.host"), 5).intValue());
+
+        Object http2 = properties.get("iota.http.http2");
+        if (Objects.nonNull(http2))
+            apiBuilder.http2(Boolean.valueOf(Objects.toString(http2)));
+
+        Object compression = properties.get("iota.http.compression");
+        if (Objects.nonNull(compression))
+            apiBuilder.compression(Boolean.valueOf(Objects.toString(compression)));
+
+        Object batchedTraversal = properties.get("iota.bundle.batched");
+        if (Objects.nonNull(batchedTraversal))
+            apiBuilder.batchedTraversal(Boolean.valueOf(Objects.toString(batchedTraversal)));
+        setNumber(properties.get("iota.bundle.threads"), Number::intValue, apiBuilder::bundleParallelism);
+
+        boolean sslDisabled = Boolean.valueOf(Objects.toString(properties.get("ssl.check.disable")));
+        if (sslDisabled) {
+            apiBuilder.httpClientModifier(this::disableCertificateCheck);
+        }
+
+        return apiBuilder.build();
+    }
+
+    private URI parseNode(String node) {
+        try {
+            URI uri = new URI(node);
+            if (uri.getScheme() == null || uri.getHost() == null || uri.getPort() == -1)
+                throw new IllegalArgumentException("Node must be given as protocol://host:port: " + node);
+            return uri;
+        } catch (URISyntaxException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalArgumentException("Not a valid node: " + node, e);
+        }
+    }
+
     private <T extends Number> void setNumber(Object value, Function<Number, T> converter, Consumer<T> setter) {
         if (Objects.isNull(value))
             return;
@@ -96,6 +246,10 @@ public class IotaLedgerProvider implements LedgerProvider {
         setter.accept(converter.apply(number));
     }
 
+    private Number getNumber(Object value, Number defaultValue) {
+        return Objects.isNull(value) ? defaultValue : parseNumber(Objects.toString(value));
+    }
+
     private Number parseNumber(String source) throws IllegalArgumentException {
         try {
             return nf.parse(source);
@@ -106,6 +260,10 @@ public class IotaLedgerProvider implements LedgerProvider {
     }
 
     private void checkConfiguration(Map<String, Object> properties) {
+        // node list replaces single node configuration
+        if (properties.containsKey("iota.nodes"))
+            return;
+
         checkKey("iota.node.protocol", properties);
         checkKey("iota.node.host", properties);
         checkKey("iota.node.port", properties);
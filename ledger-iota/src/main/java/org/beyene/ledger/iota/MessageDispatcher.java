@@ -2,6 +2,7 @@ package org.beyene.ledger.iota;
 
 import org.beyene.ledger.api.Transaction;
 import org.beyene.ledger.api.TransactionListener;
+import org.beyene.ledger.api.metrics.Metrics;
 
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
@@ -18,12 +19,15 @@ public class MessageDispatcher<M> implements Runnable {
     private final ConcurrentMap<String, TransactionListener<M>> listeners;
     private final boolean monitorContinuously;
     private final ExecutorService executorService;
+    private final Metrics metrics;
 
     private MessageDispatcher(Builder<M> builder) {
         this.queue = builder.queue;
         this.listeners = builder.listeners;
         this.monitorContinuously = builder.monitorContinuously;
         this.executorService = builder.executorService;
+        this.metrics = builder.metrics;
+        metrics.gauge("dispatcher.queue", queue::size);
     }
 
     @Override
@@ -44,7 +48,11 @@ public class MessageDispatcher<M> implements Runnable {
 
             TransactionListener<M> listener = listeners.get(tx.getTag());
             if (Objects.nonNull(listener)) {
-                executorService.submit(() -> listener.onTransaction(tx));
+                executorService.submit(() -> {
+                    long start = System.nanoTime();
+                    listener.onTransaction(tx);
+                    metrics.recordSince("dispatcher.listener", start);
+                });
             } else {
                 LOGGER.log(Level.INFO, String.format("There is no listener defined for tag: %s", tx.getTag()));
             }
@@ -58,6 +66,7 @@ public class MessageDispatcher<M> implements Runnable {
         private ConcurrentMap<String, TransactionListener<M>> listeners;
         private boolean monitorContinuously;
         private ExecutorService executorService;
+        private Metrics metrics = Metrics.noop();
 
         public Builder<M> setMessageQueue(BlockingQueue<Transaction<M>> queue) {
             this.queue = queue;
@@ -79,6 +88,12 @@ public class MessageDispatcher<M> implements Runnable {
             return this;
         }
 
+        public Builder<M> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
         public MessageDispatcher<M> build() {
             return new MessageDispatcher<>(this);
         }
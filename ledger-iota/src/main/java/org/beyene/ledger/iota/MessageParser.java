@@ -1,13 +1,15 @@
 package org.beyene.ledger.iota;
 
-import jota.utils.TrytesConverter;
 import org.apache.commons.lang3.StringUtils;
+import org.beyene.ledger.api.DecodeStage;
 import org.beyene.ledger.api.Deserializer;
 import org.beyene.ledger.api.Format;
-import org.beyene.ledger.api.error.MappingException;
 import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.beyene.ledger.api.metrics.Metrics;
 
-import javax.xml.bind.DatatypeConverter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -15,7 +17,6 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentHashMap.KeySetView;
 import java.util.function.Consumer;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -37,6 +38,11 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
 
     private final Comparator<Transaction<jota.model.Transaction>> comparator;
 
+    // optional, keyed by bundle hash
+    private final DecodedMessageCache messageCache;
+    private final BufferPool pool;
+    private final DecodeStage decodeStage;
+
     // concurrent sorted set
     // ConcurrentSkipListSet
     // could be used for tx handling OR map by bundle hash
@@ -50,6 +56,10 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
         this.inWork = ConcurrentHashMap.newKeySet();
         this.keepAliveInterval = builder.keepAliveInterval;
         this.deserializer = builder.deserializer;
+        this.messageCache = builder.messageCache;
+        this.pool = builder.pool;
+        this.decodeStage = builder.decodeStage;
+        builder.metrics.gauge("parser.inwork", inWork::size);
 
         // TODO
         // share comparator within transaction poller
@@ -93,12 +103,26 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
                                 Consumer<Collection<Transaction<M>>> messageConsumer) {
         Map<String, List<Transaction<jota.model.Transaction>>> bundles = groupByBundles(batch);
         // extracts and defragments messages, only leaves incomplete ones in map
-        List<Transaction<String>> messagesRaw = defragmentRawMessages(bundles);
+        List<RawTransaction> messagesRaw = defragmentRawMessages(bundles);
         dropOldFragments();
         aggregateUnprocessedTransactions(bundles);
         processMessages(messagesRaw, messageConsumer);
     }
 
+    /**
+     * Reassembles and deserializes the complete bundles of the given transactions, incomplete bundles are
+     * dropped. Unlike {@link #run()}, no fragments are kept, so it may be called concurrently.
+     */
+    List<Transaction<M>> parseBundles(Collection<Transaction<jota.model.Transaction>> txs) {
+        List<Transaction<jota.model.Transaction>> batch = new ArrayList<>(txs);
+        Collections.sort(batch, comparator);
+
+        List<RawTransaction> messagesRaw = defragmentRawMessages(groupByBundles(batch));
+        List<Transaction<M>> messages = new ArrayList<>(messagesRaw.size());
+        processMessages(messagesRaw, messages::addAll);
+        return messages;
+    }
+
     private Map<String, List<Transaction<jota.model.Transaction>>> groupByBundles(Collection<Transaction<jota.model.Transaction>> batch) {
         return batch
                 .stream()
@@ -121,52 +145,92 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
         inWork.addAll(unprocessed);
     }
 
-    private void processMessages(List<Transaction<String>> messagesRaw,
+    private void processMessages(List<RawTransaction> messagesRaw,
                                  Consumer<Collection<Transaction<M>>> messageConsumer) {
-        List<Transaction<M>> messages = new ArrayList<>(messagesRaw.size());
+        // messages that fail with a MappingException are skipped,
+        // possible that non-conforming clients wrote to tag
+        List<Transaction<M>> messages = decodeStage.decode(messagesRaw, this::toMessage);
+        messageConsumer.accept(messages);
+    }
 
-        for (Transaction<String> tx : messagesRaw) {
-            Object object;
-            // refactor out: 'preformat' data with lamda of Function<String, D>
-            // BUT that presupposes backend represents data as strings
-            // SO don't to anything for now - or use higher abstractions, if possible
-            if (String.class.isAssignableFrom(format.getType())) {
-                String trytesTrimmed = StringUtils.stripEnd(tx.getObject(), "9");
-                object = jota.utils.TrytesConverter.toString(trytesTrimmed);
-            } else if (byte[].class.isAssignableFrom(format.getType())) {
-                // bytes are encoded as hex strings,
-                // since byte to trits conversion is incomplete (values 243-255 are not supported)
-                // cf. https://iota.stackexchange.com/questions/2159/converting-bytes-to-trites-using-iota-libraries
-
-                // TODO
-                // already strip 9s off trytes on concatenation in order to avoid copying everything here
-                String trytesTrimmed = StringUtils.stripEnd(tx.getObject(), "9");
-                String hexBinary = TrytesConverter.toString(trytesTrimmed);
-                object = DatatypeConverter.parseHexBinary(hexBinary);
-            } else {
-                throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
-            }
+    private Transaction<M> toMessage(RawTransaction tx) {
+        ByteBuffer pooled = null;
+        try {
+            Object decoded = decode(tx);
+            if (decoded instanceof ByteBuffer)
+                pooled = (ByteBuffer) decoded;
+            D data = format.getType().cast(decoded);
+
+            M message = deserializer.deserialize(data);
+            String tag = StringUtils.stripEnd(tx.getTag(), "9");
+            return new MessageTransaction<>(tx.getIdentifier(), tx.getTimestamp(), tag, message);
+        } finally {
+            // released by the decoding thread, cf. thread caches of BufferPool
+            pool.release(pooled);
+        }
+    }
 
-            D data = format.getType().cast(object);
+    /**
+     * @return decoded payload, buffers are pooled
+     */
+    private Object decode(RawTransaction tx) {
+        boolean isString = String.class.isAssignableFrom(format.getType());
+        boolean isBytes = byte[].class.isAssignableFrom(format.getType());
+        boolean isBuffer = ByteBuffer.class.isAssignableFrom(format.getType());
+        if (!isString && !isBytes && !isBuffer)
+            throw new IllegalStateException("Unsupported data type: " + format.getType().getName());
+
+        if (isBuffer && messageCache != null) {
+            // pooled copy, released after deserialization
+            ByteBuffer cached = messageCache.getBuffer(tx.bundle, pool);
+            if (cached != null)
+                return cached;
+        } else if (messageCache != null) {
+            byte[] cached = messageCache.get(tx.bundle);
+            if (cached != null)
+                return isString ? new String(cached, StandardCharsets.UTF_8) : cached;
+        }
+
+        // padding is excluded by length, fragments are decoded without joining them
+        List<String> fragments = tx.getObject();
+        int length = TryteCodec.trimmedLength(fragments);
 
+        Object object;
+        if (isString) {
+            char[] chars = pool.acquireChars((length + 1) / 2);
             try {
-                M message = deserializer.deserialize(data);
-                String tag = StringUtils.stripEnd(tx.getTag(), "9");
-                Transaction<M> mtx = new MessageTransaction<>(tx.getIdentifier(), tx.getTimestamp(), tag, message);
-                messages.add(mtx);
-            } catch (MappingException e) {
-                // possible that non-conforming clients wrote to tag
-                // just log and ignore
-                LOGGER.log(Level.INFO, e.toString(), e);
+                String decoded = new String(chars, 0, TryteCodec.toChars(fragments, length, chars));
+                if (messageCache != null)
+                    messageCache.put(tx.bundle, decoded.getBytes(StandardCharsets.UTF_8));
+                object = decoded;
+            } finally {
+                pool.release(chars);
             }
-
+        } else if (isBytes) {
+            // bytes are encoded as hex strings, cf. TryteCodec
+            ByteBuffer decoded = ByteBuffer.allocate(length / TryteCodec.TRYTES_PER_BYTE);
+            TryteCodec.toBytes(fragments, length, decoded);
+            if (messageCache != null)
+                messageCache.put(tx.bundle, decoded.array());
+            object = decoded.array();
+        } else {
+            ByteBuffer decoded = pool.acquire(length / TryteCodec.TRYTES_PER_BYTE);
+            try {
+                TryteCodec.toBytes(fragments, length, decoded);
+            } catch (RuntimeException e) {
+                pool.release(decoded);
+                throw e;
+            }
+            decoded.flip();
+            if (messageCache != null)
+                messageCache.put(tx.bundle, decoded);
+            object = decoded;
         }
-
-        messageConsumer.accept(messages);
+        return object;
     }
 
-    private List<Transaction<String>> defragmentRawMessages(Map<String, List<Transaction<jota.model.Transaction>>> bundles) {
-        List<Transaction<String>> defragmented = new ArrayList<>();
+    private List<RawTransaction> defragmentRawMessages(Map<String, List<Transaction<jota.model.Transaction>>> bundles) {
+        List<RawTransaction> defragmented = new ArrayList<>();
 
         Iterator<Map.Entry<String, List<Transaction<jota.model.Transaction>>>> it = bundles.entrySet().iterator();
         while (it.hasNext()) {
@@ -177,12 +241,11 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
             // zero-based bundle index
             boolean bundleComplete = tx.getObject().getLastIndex() == bundle.size() - 1;
             if (bundleComplete) {
-                String bundleTrytes = bundle
-                        .stream()
-                        .map(Transaction::getObject)
-                        .map(jota.model.Transaction::getSignatureFragments)
-                        .collect(Collectors.joining());
-                defragmented.add(new RawTransaction(tx.getIdentifier(), tx.getTimestamp(), tx.getTag(), bundleTrytes));
+                // fragments are concatenated while decoding
+                List<String> fragments = new ArrayList<>(bundle.size());
+                for (Transaction<jota.model.Transaction> fragment : bundle)
+                    fragments.add(fragment.getObject().getSignatureFragments());
+                defragmented.add(new RawTransaction(tx.getIdentifier(), tx.getTimestamp(), tx.getTag(), entry.getKey(), fragments));
                 it.remove();
             }
         }
@@ -198,7 +261,7 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
         return batch;
     }
 
-    private static class RawTransaction implements Transaction<String> {
+    private static class RawTransaction implements Transaction<List<String>> {
 
         private final String id;
 
@@ -206,13 +269,16 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
 
         private final String tag;
 
-        private final String message;
+        private final String bundle;
+
+        private final List<String> fragments;
 
-        public RawTransaction(String id, Instant timestamp, String tag, String message) {
+        public RawTransaction(String id, Instant timestamp, String tag, String bundle, List<String> fragments) {
             this.id = id;
             this.timestamp = timestamp;
             this.tag = tag;
-            this.message = message;
+            this.bundle = bundle;
+            this.fragments = fragments;
         }
 
         @Override
@@ -231,8 +297,8 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
         }
 
         @Override
-        public String getObject() {
-            return message;
+        public List<String> getObject() {
+            return fragments;
         }
     }
 
@@ -245,6 +311,10 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
         private Format<D> format;
         private Duration keepAliveInterval;
         private Deserializer<M, D> deserializer;
+        private DecodedMessageCache messageCache;
+        private Metrics metrics = Metrics.noop();
+        private BufferPool pool = BufferPool.shared();
+        private DecodeStage decodeStage = DecodeStage.sequential();
 
         public Builder<M, D> setMessageQueue(BlockingQueue<Transaction<M>> queue) {
             this.messageQueue = queue;
@@ -281,6 +351,29 @@ public class MessageParser<M, D> implements Runnable, TagChangeListener {
             return this;
         }
 
+        public Builder<M, D> setMessageCache(DecodedMessageCache messageCache) {
+            this.messageCache = messageCache;
+            return this;
+        }
+
+        public Builder<M, D> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder<M, D> setBufferPool(BufferPool pool) {
+            Objects.requireNonNull(pool);
+            this.pool = pool;
+            return this;
+        }
+
+        public Builder<M, D> setDecodeStage(DecodeStage decodeStage) {
+            Objects.requireNonNull(decodeStage);
+            this.decodeStage = decodeStage;
+            return this;
+        }
+
         public MessageParser<M, D> build() {
             return new MessageParser<>(this);
         }
@@ -0,0 +1,211 @@
+package org.beyene.ledger.iota;
+
+import org.beyene.ledger.api.Transaction;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Concurrent store for messages, ordered by timestamp and bucketed by tag.</p>
+ * <p>All messages are kept in one index ordered by timestamp, so range queries are logarithmic and need no
+ * merging; the buckets only serve to remove a tag. Optionally, the number of messages and their age are bounded;
+ * the oldest messages are evicted one by one. Writes change index and buckets together under one lock, reads
+ * don't lock.</p>
+ *
+ * @param <M> Message type
+ */
+public class MessageStore<M> {
+
+    private final ConcurrentNavigableMap<Key, Transaction<M>> index;
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Key, Transaction<M>>> buckets;
+    private final AtomicLong sequence;
+    private final AtomicInteger size;
+    private final Lock lock;
+
+    private final int maxSize;
+    private final Duration retention;
+    private final Clock clock;
+
+    private MessageStore(Builder builder) {
+        this.index = new ConcurrentSkipListMap<>();
+        this.buckets = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong();
+        this.size = new AtomicInteger();
+        this.lock = new ReentrantLock();
+        this.maxSize = builder.maxSize;
+        this.retention = builder.retention;
+        this.clock = builder.clock;
+    }
+
+    public void addAll(Collection<Transaction<M>> transactions) {
+        lock.lock();
+        try {
+            for (Transaction<M> transaction : transactions) {
+                Key key = new Key(transaction.getTimestamp(), sequence.getAndIncrement());
+                buckets.computeIfAbsent(tagOf(transaction), tag -> new ConcurrentSkipListMap<>()).put(key, transaction);
+                index.put(key, transaction);
+                size.incrementAndGet();
+            }
+
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return messages with timestamp in (since, to), ordered by timestamp
+     */
+    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
+        if (!since.isBefore(to))
+            return new ArrayList<>();
+
+        if (isExpired(index.firstEntry())) {
+            lock.lock();
+            try {
+                evictExpired();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // sequence numbers are non-negative, so the bounds exclude all messages with timestamp since or to
+        return new ArrayList<>(index.subMap(new Key(since, Long.MAX_VALUE), false, new Key(to, -1), false).values());
+    }
+
+    public void removeTag(String tag) {
+        lock.lock();
+        try {
+            Map<Key, Transaction<M>> bucket = buckets.remove(tag);
+            if (bucket == null)
+                return;
+
+            bucket.keySet().forEach(index::remove);
+            size.addAndGet(-bucket.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // callers hold the lock
+    private void evict() {
+        evictExpired();
+        if (maxSize <= 0)
+            return;
+
+        while (size.get() > maxSize && removeOldest()) {
+            // one message at a time
+        }
+    }
+
+    private void evictExpired() {
+        while (isExpired(index.firstEntry()) && removeOldest()) {
+            // one message at a time
+        }
+    }
+
+    private boolean isExpired(Map.Entry<Key, Transaction<M>> entry) {
+        return !retention.isZero() && entry != null
+                && entry.getKey().timestamp.isBefore(clock.instant().minus(retention));
+    }
+
+    private boolean removeOldest() {
+        Map.Entry<Key, Transaction<M>> oldest = index.pollFirstEntry();
+        if (oldest == null)
+            return false;
+
+        String tag = tagOf(oldest.getValue());
+        Map<Key, Transaction<M>> bucket = buckets.get(tag);
+        if (bucket != null) {
+            bucket.remove(oldest.getKey());
+            if (bucket.isEmpty())
+                buckets.remove(tag);
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    private static String tagOf(Transaction<?> transaction) {
+        return Objects.toString(transaction.getTag(), "");
+    }
+
+    // messages with equal timestamp are kept apart by sequence
+    private static final class Key implements Comparable<Key> {
+
+        private final Instant timestamp;
+        private final long sequence;
+
+        Key(Instant timestamp, long sequence) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int cmp = timestamp.compareTo(other.timestamp);
+            return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return sequence == key.sequence && timestamp.equals(key.timestamp);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(timestamp, sequence);
+        }
+    }
+
+    static class Builder {
+
+        private int maxSize;
+        private Duration retention = Duration.ZERO;
+        private Clock clock = Clock.systemUTC();
+
+        /**
+         * @param maxSize maximum number of messages, 0 is unbounded
+         */
+        public Builder setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param retention maximum age of messages, zero is unbounded
+         */
+        public Builder setRetention(Duration retention) {
+            Objects.requireNonNull(retention);
+            this.retention = retention;
+            return this;
+        }
+
+        public Builder setClock(Clock clock) {
+            Objects.requireNonNull(clock);
+            this.clock = clock;
+            return this;
+        }
+
+        public <M> MessageStore<M> build() {
+            return new MessageStore<>(this);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.beyene.ledger.iota;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import jota.error.ArgumentException;
+import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.iota.TransactionPoller.TransactionDecorator;
+import org.beyene.ledger.iota.util.Iota;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Answers range queries for arbitrary tags with the tag's transactions on the node.</p>
+ * <p>Bundles are reassembled in parallel and the decoded messages are cached per tag. A query whose window
+ * ends before the tag was fetched is served from cache. Later windows only fetch the transactions that were
+ * added to the tag since and merge their messages into the cached history, at most once per refresh interval;
+ * until then, windows reaching the present may miss the latest messages. The cache is bounded by the total
+ * number of entries of all tags, i.e. messages, known transaction hashes and transactions of incomplete
+ * bundles.</p>
+ *
+ * @param <M> Message type
+ */
+public class RemoteHistory<M> {
+
+    private static final Logger LOGGER = Logger.getLogger(RemoteHistory.class.getName());
+
+    private final Iota api;
+    private final Function<Collection<Transaction<jota.model.Transaction>>, List<Transaction<M>>> bundleParser;
+    private final int batchSize;
+    private final Clock clock;
+    private final Duration refreshInterval;
+    private final Cache<String, TagHistory<M>> cache;
+
+    private RemoteHistory(Builder<M> builder) {
+        this.api = Objects.requireNonNull(builder.api);
+        this.bundleParser = Objects.requireNonNull(builder.bundleParser);
+        this.batchSize = builder.batchSize;
+        this.clock = builder.clock;
+        this.refreshInterval = builder.refreshInterval;
+        this.cache = CacheBuilder.newBuilder()
+                // one segment, a tag may take the whole weight
+                .concurrencyLevel(1)
+                .maximumWeight(builder.cacheSize)
+                .weigher((String tag, TagHistory<M> history) -> history.weight)
+                .build();
+    }
+
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        Objects.requireNonNull(tag);
+
+        // transactions reaching the node after this call can't be expected in the window
+        Instant now = clock.instant();
+        Instant horizon = to.isBefore(now) ? to : now;
+
+        TagHistory<M> history;
+        try {
+            // concurrent misses share one load
+            history = cache.get(tag, () -> load(tag));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+
+        if (isStale(history, horizon, now) && refresh(tag, history, horizon))
+            // re-weigh merged history, unless it was invalidated meanwhile
+            cache.asMap().replace(tag, history, history);
+
+        return history.messages.getTransactions(since, to);
+    }
+
+    public void invalidate(String tag) {
+        cache.invalidate(tag);
+    }
+
+    private boolean isStale(TagHistory<M> history, Instant horizon, Instant now) {
+        return history.fetched.isBefore(horizon) && !history.fetched.plus(refreshInterval).isAfter(now);
+    }
+
+    private TagHistory<M> load(String tag) throws ArgumentException {
+        TagHistory<M> history = new TagHistory<>(clock.instant());
+
+        Set<String> bundles = new HashSet<>();
+        api.findTransactionObjectsByTag(new String[]{tag}, batchSize, txs -> bundles.addAll(history.collect(txs)));
+        decode(tag, history, bundles);
+        return history;
+    }
+
+    private boolean refresh(String tag, TagHistory<M> history, Instant horizon) {
+        synchronized (history) {
+            // a concurrent query may have refreshed while this one waited
+            if (!isStale(history, horizon, clock.instant()))
+                return false;
+
+            Instant fetched = clock.instant();
+            try {
+                List<String> unknown = new ArrayList<>();
+                api.findTransactions(null, new String[]{tag}, null, null, hash -> {
+                    if (!history.hashes.contains(hash))
+                        unknown.add(hash);
+                });
+
+                Set<String> bundles = new HashSet<>();
+                for (int i = 0; i < unknown.size(); i += batchSize) {
+                    String[] batch = unknown.subList(i, Math.min(i + batchSize, unknown.size())).toArray(new String[0]);
+                    bundles.addAll(history.collect(api.findTransactionsObjectsByHashes(batch)));
+                }
+                decode(tag, history, bundles);
+            } catch (ArgumentException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+
+            history.fetched = fetched;
+            return true;
+        }
+    }
+
+    private void decode(String tag, TagHistory<M> history, Set<String> bundles) {
+        Map<String, List<Transaction<M>>> decoded = bundles
+                .parallelStream()
+                .collect(Collectors.toMap(Function.identity(),
+                        bundle -> bundleParser.apply(history.pending.get(bundle).values())));
+
+        List<Transaction<M>> messages = new ArrayList<>();
+        decoded.forEach((bundle, bundleMessages) -> {
+            // incomplete bundles stay pending, a later fetch may complete them
+            if (bundleMessages.isEmpty())
+                return;
+            history.pending.remove(bundle);
+            history.decoded.add(bundle);
+            messages.addAll(bundleMessages);
+        });
+        history.messages.addAll(messages);
+        history.weigh();
+        LOGGER.fine(() -> String.format("Fetched %d messages in %d bundles for tag %s", messages.size(), bundles.size(), tag));
+    }
+
+    private static class TagHistory<M> {
+
+        private final MessageStore<M> messages = new MessageStore.Builder().build();
+        private final Set<String> hashes = new HashSet<>();
+        private final Set<String> decoded = new HashSet<>();
+        // reattached bundles contain an index more than once
+        private final Map<String, Map<Long, Transaction<jota.model.Transaction>>> pending = new HashMap<>();
+        private volatile Instant fetched;
+        // entries held, updated after each fetch
+        private volatile int weight;
+
+        TagHistory(Instant fetched) {
+            this.fetched = fetched;
+        }
+
+        void weigh() {
+            int transactions = pending.values().stream().mapToInt(Map::size).sum();
+            weight = messages.size() + hashes.size() + transactions;
+        }
+
+        /**
+         * @return bundles that received transactions
+         */
+        Set<String> collect(List<jota.model.Transaction> txs) {
+            Set<String> bundles = new HashSet<>();
+            if (txs == null)
+                return bundles;
+
+            for (jota.model.Transaction tx : txs) {
+                if (!hashes.add(tx.getHash()) || decoded.contains(tx.getBundle()))
+                    continue;
+                pending.computeIfAbsent(tx.getBundle(), bundle -> new HashMap<>())
+                        .putIfAbsent(tx.getCurrentIndex(), new TransactionDecorator(tx));
+                bundles.add(tx.getBundle());
+            }
+            return bundles;
+        }
+    }
+
+    static class Builder<M> {
+
+        private Iota api;
+        private Function<Collection<Transaction<jota.model.Transaction>>, List<Transaction<M>>> bundleParser;
+        private int batchSize = 500;
+        private long cacheSize = 100_000;
+        private Duration refreshInterval = Duration.ofSeconds(10);
+        private Clock clock = Clock.systemUTC();
+
+        public Builder<M> setApi(Iota api) {
+            this.api = api;
+            return this;
+        }
+
+        public Builder<M> setBundleParser(
+                Function<Collection<Transaction<jota.model.Transaction>>, List<Transaction<M>>> bundleParser) {
+            this.bundleParser = bundleParser;
+            return this;
+        }
+
+        public Builder<M> setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param cacheSize maximum number of cached entries: messages, transaction hashes and transactions of
+         *                  incomplete bundles
+         */
+        public Builder<M> setCacheSize(long cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * @param refreshInterval minimum time between two fetches of the same tag
+         */
+        public Builder<M> setRefreshInterval(Duration refreshInterval) {
+            Objects.requireNonNull(refreshInterval);
+            if (refreshInterval.isNegative())
+                throw new IllegalArgumentException("Refresh interval must not be negative: " + refreshInterval);
+            this.refreshInterval = refreshInterval;
+            return this;
+        }
+
+        public Builder<M> setClock(Clock clock) {
+            Objects.requireNonNull(clock);
+            this.clock = clock;
+            return this;
+        }
+
+        public RemoteHistory<M> build() {
+            return new RemoteHistory<>(this);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.beyene.ledger.iota;
+
+import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.api.metrics.Metrics;
+import org.beyene.ledger.iota.util.Iota;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Distributes the subscribed tags over several TransactionPollers.</p>
+ * <p>Every shard queries only its own tags, keeps its own push threshold and sliding window and runs on its
+ * own AdaptivePollSchedule, so a busy tag is polled often without inflating the responses of quiet ones.
+ * New tags go to the shard with the fewest tags, removing a tag moves tags from the largest shard until the
+ * shards differ by at most one tag.</p>
+ * <p>A moved tag takes its push threshold along, so the new shard classifies its transactions like the old one
+ * did. All shards share the known hashes cache, so a moved tag doesn't deliver its transactions twice.</p>
+ */
+public class ShardedPoller implements TagChangeListener {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardedPoller.class.getName());
+
+    private final List<Shard> shards;
+
+    private ShardedPoller(Builder builder) {
+        int shardCount = Math.max(1, builder.shards);
+        List<Set<String>> initialTags = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++)
+            initialTags.add(new HashSet<>());
+
+        int i = 0;
+        for (String tag : builder.tags)
+            initialTags.get(i++ % shardCount).add(tag);
+
+        // initial tags are passed to pollers on creation, so their old txs are processed
+        this.shards = initialTags.stream()
+                .map(tags -> new Shard(builder, tags))
+                .collect(Collectors.toList());
+    }
+
+    public void start() {
+        shards.forEach(shard -> shard.schedule.start());
+    }
+
+    public void stop() {
+        shards.forEach(shard -> shard.schedule.stop());
+    }
+
+    public synchronized List<Set<String>> getShardTags() {
+        return shards.stream()
+                .map(shard -> new HashSet<>(shard.tags))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return push threshold of the tag in its shard, <code>null</code> if no shard polls the tag
+     */
+    public synchronized Instant getPushThreshold(String tag) {
+        return shards.stream()
+                .filter(shard -> shard.tags.contains(tag))
+                .findFirst()
+                .map(shard -> shard.poller.getPushThreshold(tag))
+                .orElse(null);
+    }
+
+    @Override
+    public synchronized void tagChanged(TagChangeEvent e) {
+        String tag = e.getTag();
+        switch (e.getAction()) {
+            case ADD:
+                if (shards.stream().anyMatch(shard -> shard.tags.contains(tag)))
+                    return;
+
+                Shard target = leastLoaded();
+                target.tags.add(tag);
+                target.tagChanged(e);
+                break;
+            case REMOVE:
+                shards.stream()
+                        .filter(shard -> shard.tags.remove(tag))
+                        .forEach(shard -> shard.tagChanged(e));
+                rebalance();
+                break;
+        }
+    }
+
+    private void rebalance() {
+        Comparator<Shard> bySize = Comparator.comparingInt(shard -> shard.tags.size());
+        Shard largest = Collections.max(shards, bySize);
+        Shard smallest = Collections.min(shards, bySize);
+        while (largest.tags.size() - smallest.tags.size() > 1) {
+            // moved tag is no subscription, so don't trigger processing of old txs, but keep its push threshold
+            String tag = largest.tags.iterator().next();
+            smallest.poller.moveIn(tag, largest.poller.moveOut(tag));
+            int index = shards.indexOf(smallest);
+            LOGGER.fine(() -> "Moved tag " + tag + " to shard " + index);
+
+            largest = Collections.max(shards, bySize);
+            smallest = Collections.min(shards, bySize);
+        }
+    }
+
+    private Shard leastLoaded() {
+        return Collections.min(shards, Comparator.comparingInt(shard -> shard.tags.size()));
+    }
+
+    private static class Shard {
+
+        private final Set<String> tags;
+        private final TransactionPoller poller;
+        private final AdaptivePollSchedule schedule;
+
+        Shard(Builder builder, Set<String> initialTags) {
+            this.tags = ConcurrentHashMap.newKeySet();
+            tags.addAll(initialTags);
+            this.poller = new TransactionPoller.Builder()
+                    .setApi(builder.api)
+                    .setQueue(builder.queue)
+                    .setTags(tags)
+                    .setPushThreshold(builder.pushThreshold)
+                    .setSlidingWindow(builder.slidingWindow)
+                    .setTransactionBeforePushThresholdConsumer(builder.oldTxsConsumer)
+                    .setKnownHashesCache(builder.knownHashes)
+                    .setBatchSize(builder.batchSize)
+                    .setMetrics(builder.metrics)
+                    .build();
+            this.schedule = builder.scheduleBuilder
+                    .setTask(poller::poll)
+                    .build();
+        }
+
+        void tagChanged(TagChangeEvent e) {
+            poller.tagChanged(e);
+            schedule.tagChanged(e);
+        }
+    }
+
+    static class Builder {
+
+        private Iota api;
+        private BlockingQueue<Transaction<jota.model.Transaction>> queue;
+        private Set<String> tags = Collections.emptySet();
+        private Instant pushThreshold;
+        private Duration slidingWindow;
+        private Consumer<Collection<Transaction<jota.model.Transaction>>> oldTxsConsumer;
+        private Map<String, Boolean> knownHashes;
+        private int batchSize = 500;
+        private int shards = 1;
+        private AdaptivePollSchedule.Builder scheduleBuilder;
+        private Metrics metrics = Metrics.noop();
+
+        public Builder setApi(Iota api) {
+            this.api = api;
+            return this;
+        }
+
+        public Builder setQueue(BlockingQueue<Transaction<jota.model.Transaction>> queue) {
+            this.queue = queue;
+            return this;
+        }
+
+        public Builder setTags(Set<String> tags) {
+            Objects.requireNonNull(tags);
+            this.tags = tags;
+            return this;
+        }
+
+        public Builder setPushThreshold(Instant pushThreshold) {
+            this.pushThreshold = pushThreshold;
+            return this;
+        }
+
+        public Builder setSlidingWindow(Duration slidingWindow) {
+            this.slidingWindow = slidingWindow;
+            return this;
+        }
+
+        public Builder setTransactionBeforePushThresholdConsumer(
+                Consumer<Collection<Transaction<jota.model.Transaction>>> oldTxsConsumer) {
+            this.oldTxsConsumer = oldTxsConsumer;
+            return this;
+        }
+
+        public Builder setKnownHashesCache(Map<String, Boolean> knownHashes) {
+            this.knownHashes = knownHashes;
+            return this;
+        }
+
+        public Builder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder setShards(int shards) {
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * Template for the schedule of each shard, the task is set per shard.
+         */
+        public Builder setScheduleBuilder(AdaptivePollSchedule.Builder scheduleBuilder) {
+            this.scheduleBuilder = scheduleBuilder;
+            return this;
+        }
+
+        public Builder setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public ShardedPoller build() {
+            Objects.requireNonNull(scheduleBuilder);
+            return new ShardedPoller(this);
+        }
+    }
+}
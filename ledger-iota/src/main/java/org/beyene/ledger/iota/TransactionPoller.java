@@ -4,6 +4,7 @@ import jota.error.ArgumentException;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.api.metrics.Metrics;
 import org.beyene.ledger.iota.util.Iota;
 
 import java.time.Duration;
@@ -11,10 +12,12 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -31,6 +34,8 @@ public class TransactionPoller implements Runnable, TagChangeListener {
 
     // grows with every call
     private final AtomicReference<Instant> pushThreshold;
+    // own thresholds of tags that were moved here from another poller
+    private final ConcurrentMap<String, AtomicReference<Instant>> movedThresholds;
     private final Duration slidingWindowSize;
 
     // old txs get saved exactly once
@@ -39,6 +44,8 @@ public class TransactionPoller implements Runnable, TagChangeListener {
     private final Consumer<Collection<Transaction<jota.model.Transaction>>> oldTxsConsumer;
 
     private final Comparator<jota.model.Transaction> comparator;
+    private final int batchSize;
+    private final Metrics metrics;
 
     private TransactionPoller(Builder builder) {
         this.api = builder.api;
@@ -49,6 +56,7 @@ public class TransactionPoller implements Runnable, TagChangeListener {
         oldTxTags.addAll(tags);
 
         this.pushThreshold = new AtomicReference<>(builder.pushThreshold);
+        this.movedThresholds = new ConcurrentHashMap<>();
         this.processOldTxs = new AtomicBoolean(true);
         this.oldTxsConsumer = builder.oldTxsConsumer;
         this.comparator = Comparator.comparing(jota.model.Transaction::getTimestamp)
@@ -56,31 +64,57 @@ public class TransactionPoller implements Runnable, TagChangeListener {
                 .thenComparing(jota.model.Transaction::getCurrentIndex);
         this.knownHashes = builder.knownHashes;
         this.slidingWindowSize = builder.slidingWindow;
+        this.batchSize = builder.batchSize;
+        this.metrics = builder.metrics;
     }
 
     @Override
     public void run() {
+        poll();
+    }
+
+    /**
+     * Polls the tangle once.
+     *
+     * @return number of new transactions that were forwarded to the queue
+     */
+    public int poll() {
         if (tags.isEmpty())
-            return;
+            return 0;
+
+        long start = System.nanoTime();
+        // old txs are only kept if they are going to be processed
+        boolean collectOldTxs = processOldTxs.get();
+        List<jota.model.Transaction> oldTxs = new ArrayList<>();
+        AtomicInteger forwarded = new AtomicInteger();
+        Instant reference = pushThreshold.get().minus(slidingWindowSize);
+        Map<String, Instant> movedReferences = new HashMap<>();
+        movedThresholds.forEach((tag, threshold) -> movedReferences.put(tag, threshold.get().minus(slidingWindowSize)));
 
         // (a) complete and slow supplier (HTTP API)
         // (b) incomplete/delta and fast/push supplier (ZMQ API)
         // after change of tags use complete
-        Supplier<List<jota.model.Transaction>> txSupplier = this::readTxsFromTangle;
-        List<jota.model.Transaction> transactions = txSupplier.get();
-        if (transactions.isEmpty())
-            return;
-
-        Map<Boolean, List<jota.model.Transaction>> partition = partitionTxsByPushThreshold(transactions);
-        List<jota.model.Transaction> newTransactions = processNewTransactions(partition);
-        // NOTE newTransactions still has duplicates, unique txs are already forwarded to queue
-        updatePushThreshold(newTransactions);
-
-        boolean skipOldTxs = !processOldTxs.compareAndSet(true, false);
-        if (!skipOldTxs) {
-            List<jota.model.Transaction> oldTxs = partition.getOrDefault(Boolean.FALSE, Collections.emptyList());
+        // batches are handed over while the response is still being read
+        boolean received = readTxsFromTangle(transactions -> {
+            metrics.increment("poller.transactions", transactions.size());
+            Map<Boolean, List<jota.model.Transaction>> partition = partitionTxsByPushThreshold(transactions,
+                    tag -> movedReferences.getOrDefault(tag, reference));
+            List<jota.model.Transaction> newTransactions = processNewTransactions(partition, forwarded);
+            // NOTE newTransactions still has duplicates, unique txs are already forwarded to queue
+            updatePushThreshold(newTransactions);
+
+            if (collectOldTxs)
+                oldTxs.addAll(partition.getOrDefault(Boolean.FALSE, Collections.emptyList()));
+        });
+        metrics.recordSince("poller.duration", start);
+        if (!received)
+            return 0;
+
+        // tag added during this run is handled by next run
+        if (collectOldTxs && processOldTxs.compareAndSet(true, false))
             processOldTransactions(oldTxs);
-        }
+
+        return forwarded.get();
     }
 
     @Override
@@ -88,48 +122,101 @@ public class TransactionPoller implements Runnable, TagChangeListener {
         if (e.getAction() == TagChangeAction.ADD) {
             oldTxTags.add(e.getTag());
             processOldTxs.compareAndSet(false, true);
+        } else {
+            movedThresholds.remove(e.getTag());
         }
     }
 
-    private List<jota.model.Transaction> processNewTransactions(Map<Boolean, List<jota.model.Transaction>> partition) {
+    /**
+     * @return push threshold that applies to the tag
+     */
+    public Instant getPushThreshold(String tag) {
+        AtomicReference<Instant> moved = movedThresholds.get(tag);
+        return moved != null ? moved.get() : pushThreshold.get();
+    }
+
+    /**
+     * Takes over a tag that another poller has polled so far. The tag keeps the push threshold of that poller,
+     * so its transactions are neither classed as old nor delivered again.
+     */
+    void moveIn(String tag, Instant threshold) {
+        movedThresholds.put(tag, new AtomicReference<>(threshold));
+        tags.add(tag);
+    }
+
+    /**
+     * Stops polling the tag, because it moves to another poller.
+     *
+     * @return push threshold of the tag
+     */
+    Instant moveOut(String tag) {
+        tags.remove(tag);
+        Instant threshold = getPushThreshold(tag);
+        movedThresholds.remove(tag);
+        return threshold;
+    }
+
+    private List<jota.model.Transaction> processNewTransactions(Map<Boolean, List<jota.model.Transaction>> partition,
+                                                                AtomicInteger forwarded) {
         List<jota.model.Transaction> newTransactions = partition.getOrDefault(Boolean.TRUE, Collections.emptyList());
         Collections.sort(newTransactions, comparator);
         newTransactions.stream()
                 .sequential()
                 .filter(tx -> !knownHashes.containsKey(tx.getHash()))
                 .peek(tx -> knownHashes.put(tx.getHash(), Boolean.TRUE))
+                .peek(tx -> forwarded.incrementAndGet())
                 .map(TransactionDecorator::new).forEach(queue::add);
         return newTransactions;
     }
 
-    private List<jota.model.Transaction> readTxsFromTangle() {
+    private boolean readTxsFromTangle(Consumer<List<jota.model.Transaction>> batchConsumer) {
         String[] currentTags = this.tags.stream().toArray(String[]::new);
 
-        List<jota.model.Transaction> txs;
+        AtomicBoolean received = new AtomicBoolean();
         try {
-            txs = api.findTransactionObjectsByTag(currentTags);
+            api.findTransactionObjectsByTag(currentTags, batchSize, txs -> {
+                if (txs.isEmpty())
+                    return;
+                received.set(true);
+                batchConsumer.accept(txs);
+            });
         } catch (ArgumentException e) {
             // TODO
             // Handle exception
-            txs = Collections.emptyList();
             LOGGER.log(Level.INFO, e.toString(), e);
         }
-        return txs;
+        return received.get();
     }
 
     private Map<Boolean, List<jota.model.Transaction>> partitionTxsByPushThreshold(
-            List<jota.model.Transaction> transactions) {
-        Instant reference = pushThreshold.get().minus(slidingWindowSize);
+            List<jota.model.Transaction> transactions, Function<String, Instant> reference) {
         return transactions.stream()
                 .filter(tx -> tx.getTimestamp() > 0)
                 .filter(tx -> !knownHashes.containsKey(tx.getHash()))
-                .collect(Collectors.groupingBy(tx -> Instant.ofEpochMilli(1_000 * tx.getTimestamp()).isAfter(reference)));
+                .collect(Collectors.groupingBy(tx -> Instant.ofEpochMilli(1_000 * tx.getTimestamp())
+                        .isAfter(reference.apply(StringUtils.stripEnd(tx.getTag(), "9")))));
     }
 
     private void updatePushThreshold(List<jota.model.Transaction> newTransactions) {
+        if (!newTransactions.isEmpty() && !movedThresholds.isEmpty()) {
+            // newest tx per moved tag
+            Map<String, Instant> movedMax = new HashMap<>();
+            for (jota.model.Transaction tx : newTransactions) {
+                String tag = StringUtils.stripEnd(tx.getTag(), "9");
+                if (movedThresholds.containsKey(tag))
+                    movedMax.merge(tag, Instant.ofEpochMilli(1_000 * tx.getTimestamp()), ObjectUtils::max);
+            }
+            movedMax.forEach((tag, max) -> {
+                AtomicReference<Instant> threshold = movedThresholds.get(tag);
+                if (threshold != null)
+                    threshold.accumulateAndGet(max, ObjectUtils::max);
+            });
+        }
+
         if (!newTransactions.isEmpty()) {
             int lastIndex = newTransactions.size() - 1;
-            Instant currentMax = Instant.ofEpochMilli(newTransactions.get(lastIndex).getTimestamp());
+            // timestamps are in s
+            Instant currentMax = Instant.ofEpochMilli(1_000 * newTransactions.get(lastIndex).getTimestamp());
             Instant previous = pushThreshold.get();
             pushThreshold.set(ObjectUtils.max(currentMax, previous));
         }
@@ -161,6 +248,8 @@ public class TransactionPoller implements Runnable, TagChangeListener {
         private Consumer<Collection<Transaction<jota.model.Transaction>>> oldTxsConsumer;
         private Duration slidingWindow;
         private Map<String, Boolean> knownHashes;
+        private int batchSize = 500;
+        private Metrics metrics = Metrics.noop();
 
         public Builder setApi(Iota api) {
             this.api = api;
@@ -198,12 +287,23 @@ public class TransactionPoller implements Runnable, TagChangeListener {
             return this;
         }
 
+        public Builder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
         public TransactionPoller build() {
             return new TransactionPoller(this);
         }
     }
 
-    private static class TransactionDecorator implements Transaction<jota.model.Transaction> {
+    static class TransactionDecorator implements Transaction<jota.model.Transaction> {
 
         private final jota.model.Transaction delegate;
 
@@ -0,0 +1,212 @@
+package org.beyene.ledger.iota;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Converts binary payloads to trytes and back without intermediate strings.</p>
+ * <p>Bytes are encoded as upper case hex characters and every character as two trytes, as
+ * jota.utils.TrytesConverter would do for the hex string, since byte to trits conversion is incomplete
+ * (values 243-255 are not supported).</p>
+ *
+ * @see <a href="https://iota.stackexchange.com/questions/2159/converting-bytes-to-trites-using-iota-libraries">
+ * Converting bytes to trytes</a>
+ */
+final class TryteCodec {
+
+    private static final String TRYTE_ALPHABET = "9ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String HEX_ALPHABET = "0123456789ABCDEF";
+
+    static final int TRYTES_PER_BYTE = 4;
+
+    // four trytes per byte value
+    private static final char[] BYTE_TRYTES = new char[256 * TRYTES_PER_BYTE];
+    // value of tryte character, -1 if invalid
+    private static final int[] TRYTE_VALUES = new int[128];
+    // value of hex character, -1 if invalid
+    private static final int[] HEX_VALUES = new int[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            appendChar(HEX_ALPHABET.charAt(b >>> 4), b * TRYTES_PER_BYTE);
+            appendChar(HEX_ALPHABET.charAt(b & 0xf), b * TRYTES_PER_BYTE + 2);
+        }
+
+        Arrays.fill(TRYTE_VALUES, -1);
+        for (int i = 0; i < TRYTE_ALPHABET.length(); i++)
+            TRYTE_VALUES[TRYTE_ALPHABET.charAt(i)] = i;
+
+        Arrays.fill(HEX_VALUES, -1);
+        for (int i = 0; i < HEX_ALPHABET.length(); i++) {
+            HEX_VALUES[HEX_ALPHABET.charAt(i)] = i;
+            HEX_VALUES[Character.toLowerCase(HEX_ALPHABET.charAt(i))] = i;
+        }
+    }
+
+    private static void appendChar(char c, int offset) {
+        BYTE_TRYTES[offset] = TRYTE_ALPHABET.charAt(c % 27);
+        BYTE_TRYTES[offset + 1] = TRYTE_ALPHABET.charAt(c / 27);
+    }
+
+    private TryteCodec() {
+        throw new AssertionError("no instances");
+    }
+
+    /**
+     * Encodes the bytes between position and limit, the position of data is not changed.
+     */
+    static String toTrytes(ByteBuffer data) {
+        char[] trytes = new char[data.remaining() * TRYTES_PER_BYTE];
+        toTrytes(data, trytes, 0);
+        return new String(trytes);
+    }
+
+    /**
+     * Encodes the bytes between position and limit into target, the position of data is not changed.
+     *
+     * @return number of trytes written
+     */
+    static int toTrytes(ByteBuffer data, char[] target, int offset) {
+        int length = data.remaining();
+        for (int i = 0; i < length; i++) {
+            int b = data.get(data.position() + i) & 0xff;
+            System.arraycopy(BYTE_TRYTES, b * TRYTES_PER_BYTE, target, offset + i * TRYTES_PER_BYTE, TRYTES_PER_BYTE);
+        }
+        return length * TRYTES_PER_BYTE;
+    }
+
+    /**
+     * Encodes every character as two trytes like jota.utils.TrytesConverter, characters beyond 255 become spaces.
+     *
+     * @return number of trytes written
+     */
+    static int toTrytes(CharSequence string, char[] target, int offset) {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            int c = string.charAt(i);
+            if (c > 255)
+                c = ' ';
+            target[offset + 2 * i] = TRYTE_ALPHABET.charAt(c % 27);
+            target[offset + 2 * i + 1] = TRYTE_ALPHABET.charAt(c / 27);
+        }
+        return 2 * length;
+    }
+
+    /**
+     * @param length number of trytes to decode, trailing padding has to be excluded
+     * @throws IllegalArgumentException if trytes are no encoded bytes
+     */
+    static byte[] toBytes(CharSequence trytes, int length) {
+        if (length % TRYTES_PER_BYTE != 0)
+            throw new IllegalArgumentException("Trytes don't encode bytes, length: " + length);
+
+        ByteBuffer bytes = ByteBuffer.allocate(length / TRYTES_PER_BYTE);
+        toBytes(Collections.singletonList(trytes), length, bytes);
+        return bytes.array();
+    }
+
+    /**
+     * Decodes the concatenation of fragments in one pass, without joining them.
+     *
+     * @param length number of trytes to decode, trailing padding has to be excluded
+     * @param target receives length / 4 bytes at its position
+     * @throws IllegalArgumentException if trytes are no encoded bytes
+     */
+    static void toBytes(List<? extends CharSequence> fragments, int length, ByteBuffer target) {
+        if (length % TRYTES_PER_BYTE != 0)
+            throw new IllegalArgumentException("Trytes don't encode bytes, length: " + length);
+
+        // fragments have an odd length, so characters and bytes may span two fragments
+        int read = 0;
+        int first = 0;
+        int high = 0;
+        for (CharSequence fragment : fragments) {
+            int end = Math.min(fragment.length(), length - read);
+            for (int i = 0; i < end; i++, read++) {
+                int value = tryteValue(fragment.charAt(i));
+                if ((read & 1) == 0) {
+                    first = value;
+                    continue;
+                }
+
+                int nibble = hexValue(first + 27 * value, read);
+                if ((read & 2) == 0)
+                    high = nibble;
+                else
+                    target.put((byte) (high << 4 | nibble));
+            }
+        }
+    }
+
+    /**
+     * Decodes two trytes per character like jota.utils.TrytesConverter, in one pass over the fragments.
+     *
+     * @param length number of trytes to decode, trailing padding has to be excluded
+     * @param target receives (length + 1) / 2 characters
+     * @return number of characters written
+     */
+    static int toChars(List<? extends CharSequence> fragments, int length, char[] target) {
+        int read = 0;
+        int written = 0;
+        int first = 0;
+        for (CharSequence fragment : fragments) {
+            int end = Math.min(fragment.length(), length - read);
+            for (int i = 0; i < end; i++, read++) {
+                int value = tryteValue(fragment.charAt(i));
+                if ((read & 1) == 0)
+                    first = value;
+                else
+                    target[written++] = (char) (first + 27 * value);
+            }
+        }
+
+        // trailing 9 of the last character was stripped as padding
+        if ((length & 1) == 1)
+            target[written++] = (char) first;
+        return written;
+    }
+
+    private static int hexValue(int c, int offset) {
+        int value = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        if (value < 0)
+            throw new IllegalArgumentException("Trytes don't encode a hex character at " + offset);
+        return value;
+    }
+
+    private static int tryteValue(char tryte) {
+        int value = tryte < TRYTE_VALUES.length ? TRYTE_VALUES[tryte] : -1;
+        if (value < 0)
+            throw new IllegalArgumentException("Invalid tryte: " + tryte);
+        return value;
+    }
+
+    /**
+     * @return length of the concatenated fragments without trailing 9s
+     */
+    static int trimmedLength(List<? extends CharSequence> fragments) {
+        int length = 0;
+        for (CharSequence fragment : fragments)
+            length += fragment.length();
+
+        for (int i = fragments.size() - 1; i >= 0; i--) {
+            CharSequence fragment = fragments.get(i);
+            int trimmed = trimmedLength(fragment);
+            length -= fragment.length() - trimmed;
+            if (trimmed > 0)
+                break;
+        }
+        return length;
+    }
+
+    /**
+     * @return length of trytes without trailing 9s
+     */
+    static int trimmedLength(CharSequence trytes) {
+        int end = trytes.length();
+        while (end > 0 && trytes.charAt(end - 1) == '9')
+            end--;
+        return end;
+    }
+}
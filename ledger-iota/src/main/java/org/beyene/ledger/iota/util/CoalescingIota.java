@@ -0,0 +1,166 @@
+package org.beyene.ledger.iota.util;
+
+import jota.dto.response.FindTransactionResponse;
+import jota.dto.response.GetTrytesResponse;
+import jota.error.ArgumentException;
+import jota.model.Transaction;
+import jota.utils.InputValidator;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Iota decorator that merges concurrent identical node queries into one upstream call.</p>
+ * <p>findTransactions and getTrytes requests with equal arguments share the response of the call that is
+ * already in flight. findTransactionsObjectsByHashes works per hash: hashes that are already requested by
+ * another caller are awaited, only the remaining ones are fetched. The findTransactionObjectsBy* queries are
+ * composed of both, so queries for overlapping tags share their work.</p>
+ * <p>Streamed tag queries are passed to the delegate, so batches are still handed over while the hashes are
+ * being received. Sharing a stream would require keeping its batches for callers that join later.</p>
+ * <p>Waiters receive the same response objects, which must not be modified.</p>
+ */
+public class CoalescingIota extends ForwardingIota {
+
+    private final ConcurrentMap<List<List<String>>, CompletableFuture<FindTransactionResponse>> findRequests;
+    private final ConcurrentMap<List<String>, CompletableFuture<GetTrytesResponse>> trytesRequests;
+    private final ConcurrentMap<String, CompletableFuture<Transaction>> transactionRequests;
+
+    public CoalescingIota(Iota delegate) {
+        super(delegate);
+        this.findRequests = new ConcurrentHashMap<>();
+        this.trytesRequests = new ConcurrentHashMap<>();
+        this.transactionRequests = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public FindTransactionResponse findTransactions(String[] addresses, String[] tags, String[] approvees, String[] bundles) throws ArgumentException {
+        // result is a set of hashes, so order of arguments doesn't matter
+        List<List<String>> key = Arrays.asList(sorted(addresses), sorted(tags), sorted(approvees), sorted(bundles));
+        return coalesce(findRequests, key, () -> delegate().findTransactions(addresses, tags, approvees, bundles));
+    }
+
+    @Override
+    public GetTrytesResponse getTrytes(String... hashes) throws ArgumentException {
+        // response is ordered like request
+        List<String> key = Arrays.asList(hashes.clone());
+        return coalesce(trytesRequests, key, () -> delegate().getTrytes(hashes));
+    }
+
+    @Override
+    public List<Transaction> findTransactionsObjectsByHashes(String[] hashes) throws ArgumentException {
+        if (!InputValidator.isArrayOfHashes(hashes))
+            // don't let other waiters fail because of invalid input
+            return delegate().findTransactionsObjectsByHashes(hashes);
+
+        Map<String, CompletableFuture<Transaction>> owned = new LinkedHashMap<>();
+        List<CompletableFuture<Transaction>> futures = new ArrayList<>(hashes.length);
+        for (String hash : hashes) {
+            CompletableFuture<Transaction> future = owned.get(hash);
+            if (future == null) {
+                CompletableFuture<Transaction> created = new CompletableFuture<>();
+                future = transactionRequests.putIfAbsent(hash, created);
+                if (future == null) {
+                    future = created;
+                    owned.put(hash, created);
+                }
+            }
+            futures.add(future);
+        }
+
+        if (!owned.isEmpty())
+            fetchTransactions(owned);
+
+        List<Transaction> transactions = new ArrayList<>(futures.size());
+        for (CompletableFuture<Transaction> future : futures)
+            transactions.add(await(future));
+
+        return transactions;
+    }
+
+    private void fetchTransactions(Map<String, CompletableFuture<Transaction>> owned) throws ArgumentException {
+        String[] missing = owned.keySet().toArray(new String[0]);
+        try {
+            List<Transaction> fetched = delegate().findTransactionsObjectsByHashes(missing);
+            if (fetched.size() != missing.length)
+                throw new IllegalStateException(String.format("Expected %d transactions, got %d", missing.length, fetched.size()));
+
+            for (int i = 0; i < missing.length; i++)
+                owned.get(missing[i]).complete(fetched.get(i));
+        } catch (ArgumentException | RuntimeException | Error e) {
+            owned.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            owned.forEach(transactionRequests::remove);
+        }
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByTag(String[] tags) throws ArgumentException {
+        return findTransactionObjects(findTransactions(null, tags, null, null));
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByApprovees(String[] approvees) throws ArgumentException {
+        return findTransactionObjects(findTransactions(null, null, approvees, null));
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByBundle(String[] bundles) throws ArgumentException {
+        return findTransactionObjects(findTransactions(null, null, null, bundles));
+    }
+
+    private List<Transaction> findTransactionObjects(FindTransactionResponse ftr) throws ArgumentException {
+        return ftr != null && ftr.getHashes() != null ? findTransactionsObjectsByHashes(ftr.getHashes()) : new ArrayList<>();
+    }
+
+    private static List<String> sorted(String[] values) {
+        if (values == null)
+            return null;
+
+        String[] copy = values.clone();
+        Arrays.sort(copy);
+        return Arrays.asList(copy);
+    }
+
+    private static <K, V> V coalesce(ConcurrentMap<K, CompletableFuture<V>> inFlight, K key, Request<V> request)
+            throws ArgumentException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null)
+            return await(existing);
+
+        try {
+            V value = request.execute();
+            future.complete(value);
+            return value;
+        } catch (ArgumentException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws ArgumentException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ArgumentException)
+                throw (ArgumentException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request<V> {
+        V execute() throws ArgumentException;
+    }
+}
@@ -8,7 +8,9 @@ import jota.model.Transaction;
 import jota.model.Transfer;
 import jota.utils.StopWatch;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface Iota extends IotaCore {
     GetNewAddressResponse getNewAddress(String seed, int security, int index, boolean checksum, int total, boolean returnAll) throws ArgumentException;
@@ -27,6 +29,20 @@ public interface Iota extends IotaCore {
 
     List<Transaction> findTransactionObjectsByTag(String[] tags) throws ArgumentException;
 
+    /**
+     * Hands the transactions with the given tags to the consumer in batches of at most batchSize. The default
+     * implementation loads all transactions first, implementations may fetch batches while hashes are still
+     * being received.
+     */
+    default void findTransactionObjectsByTag(String[] tags, int batchSize, Consumer<List<Transaction>> batchConsumer) throws ArgumentException {
+        List<Transaction> txs = findTransactionObjectsByTag(tags);
+        if (txs == null)
+            return;
+
+        for (int i = 0; i < txs.size(); i += batchSize)
+            batchConsumer.accept(new ArrayList<>(txs.subList(i, Math.min(i + batchSize, txs.size()))));
+    }
+
     List<Transaction> findTransactionObjectsByApprovees(String[] approvees) throws ArgumentException;
 
     List<Transaction> findTransactionObjectsByBundle(String[] bundles) throws ArgumentException;
@@ -54,4 +70,10 @@ public interface Iota extends IotaCore {
     void validateTransfersAddresses(String seed, int security, List<String> trytes) throws ArgumentException;
 
     List<String> addRemainder(String seed, int security, List<Input> inputs, Bundle bundle, String tag, long totalValue, String remainderAddress, List<String> signatureFragments) throws ArgumentException;
+
+    /**
+     * Stops background threads of the client, e.g. for tip caching. Does nothing by default.
+     */
+    default void close() {
+    }
 }
@@ -5,6 +5,9 @@ package org.beyene.ledger.iota.util;
 // (powered by Fernflower decompiler)
 //
 
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import jota.IotaAPIService;
 import jota.IotaLocalPoW;
 import jota.dto.request.*;
@@ -13,8 +16,13 @@ import jota.error.ArgumentException;
 import jota.model.Transaction;
 import jota.utils.Checksum;
 import jota.utils.InputValidator;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +35,10 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
@@ -38,7 +49,13 @@ public class IotaAPICoreExtended implements IotaCore {
 
     private static final Logger log = LoggerFactory.getLogger(IotaAPICoreExtended.class);
 
+    private static final MediaType JSON = MediaType.parse("application/json");
+
     private IotaAPIService service;
+    // raw access for responses that are parsed incrementally
+    private OkHttpClient client;
+    private String nodeUrl;
+    private final Gson gson = new Gson();
     private String protocol;
     private String host;
     private String port;
@@ -51,7 +68,10 @@ public class IotaAPICoreExtended implements IotaCore {
         this.localPoW = builder.localPoW;
 
         InetSocketAddress socket = new InetSocketAddress(host, Integer.valueOf(port));
-        this.service = constructService(protocol, socket, builder.httpClientModifier);
+        this.service = constructService(protocol, socket, httpClient -> {
+            builder.configureHttpClient(httpClient);
+            builder.httpClientModifier.accept(httpClient);
+        }, builder.compression);
     }
 
     protected static <T> Response<T> wrapCheckedException(Call<T> call) {
@@ -96,21 +116,24 @@ public class IotaAPICoreExtended implements IotaCore {
         }
     }
 
-    protected IotaAPIService constructService(String protocol, InetSocketAddress socket, Consumer<okhttp3.OkHttpClient.Builder> httpClientModifier) {
+    protected IotaAPIService constructService(String protocol, InetSocketAddress socket, Consumer<okhttp3.OkHttpClient.Builder> httpClientModifier, boolean compression) {
         String nodeUrl = protocol + "://" + socket.getHostString() + ":" + socket.getPort();
 
         okhttp3.OkHttpClient.Builder builder = new okhttp3.OkHttpClient.Builder();
         httpClientModifier.accept(builder);
 
-        OkHttpClient client = builder
-                .readTimeout(5000L, TimeUnit.SECONDS)
+        this.nodeUrl = nodeUrl;
+        this.client = builder
                 .addInterceptor(chain -> {
                     Request request = chain.request();
-                    Request newRequest = request.newBuilder().addHeader("X-IOTA-API-Version", "1").build();
-                    return chain.proceed(newRequest);
+                    Request.Builder newRequest = request.newBuilder().addHeader("X-IOTA-API-Version", "1");
+                    // okhttp requests and decodes gzip transparently unless an encoding is set explicitly
+                    if (!compression)
+                        newRequest.header("Accept-Encoding", "identity");
+                    return chain.proceed(newRequest.build());
                 })
-                .connectTimeout(5000L, TimeUnit.SECONDS).build();
-        Retrofit retrofit = (new retrofit2.Retrofit.Builder()).baseUrl(nodeUrl).addConverterFactory(GsonConverterFactory.create()).client(client).build();
+                .build();
+        Retrofit retrofit = (new retrofit2.Retrofit.Builder()).baseUrl(nodeUrl).addConverterFactory(GsonConverterFactory.create(gson)).client(client).build();
 
         log.debug("Jota-API Java proxy pointing to node url: \'{}\'", nodeUrl);
         return retrofit.create(IotaAPIService.class);
@@ -153,6 +176,12 @@ public class IotaAPICoreExtended implements IotaCore {
         return wrapCheckedException(res).body();
     }
 
+    @Override
+    public void findTransactions(String[] addresses, String[] tags, String[] approvees, String[] bundles, Consumer<String> hashConsumer) throws ArgumentException {
+        IotaFindTransactionsRequest findTransRequest = IotaFindTransactionsRequest.createFindTransactionRequest().byAddresses(addresses).byTags(tags).byApprovees(approvees).byBundles(bundles);
+        stream(findTransRequest, "hashes", hashConsumer);
+    }
+
     @Override
     public FindTransactionResponse findTransactionsByAddresses(String... addresses) throws ArgumentException {
         List<String> addressesWithoutChecksum = new ArrayList<>();
@@ -202,6 +231,58 @@ public class IotaAPICoreExtended implements IotaCore {
         }
     }
 
+    @Override
+    public void getTrytes(String[] hashes, Consumer<String> trytesConsumer) throws ArgumentException {
+        if (!InputValidator.isArrayOfHashes(hashes)) {
+            throw new ArgumentException("Invalid hashes provided.");
+        } else {
+            stream(IotaGetTrytesRequest.createGetTrytesRequest(hashes), "trytes", trytesConsumer);
+        }
+    }
+
+    /**
+     * Posts the command and hands the elements of the given array field to the consumer while the
+     * response is read, so the array is never materialized.
+     */
+    protected void stream(Object command, String field, Consumer<String> consumer) throws ArgumentException {
+        Request request = new Request.Builder()
+                .url(nodeUrl)
+                .post(RequestBody.create(JSON, gson.toJson(command)))
+                .build();
+
+        try (okhttp3.Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful()) {
+                String error = body != null ? body.string() : "";
+                if (response.code() == 400)
+                    throw new ArgumentException(error);
+                if (response.code() == 401 || response.code() == 500)
+                    throw new IllegalAccessError(response.code() + " " + error);
+                throw new IllegalStateException(response.code() + " " + error);
+            }
+
+            if (body == null)
+                return;
+
+            JsonReader reader = new JsonReader(body.charStream());
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (field.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        consumer.accept(reader.nextString());
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException e) {
+            log.error("Execution of the API call raised exception. IOTA Node not reachable?", e);
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
     @Override
     public GetTransactionsToApproveResponse getTransactionsToApprove(int depth) {
         return getTransactionsToApprove(depth, null);
@@ -336,6 +417,16 @@ public class IotaAPICoreExtended implements IotaCore {
         protected IotaLocalPoW localPoW;
         protected Consumer<okhttp3.OkHttpClient.Builder> httpClientModifier = builder -> {
         };
+        protected ConnectionPool connectionPool;
+        protected int maxIdleConnections = 5;
+        protected Duration keepAlive = Duration.ofMinutes(5);
+        protected boolean http2 = true;
+        protected Duration connectTimeout = Duration.ofSeconds(5000);
+        protected Duration readTimeout = Duration.ofSeconds(5000);
+        protected Duration writeTimeout = Duration.ofSeconds(10);
+        protected int maxRequests = 64;
+        protected int maxRequestsPerHost = 5;
+        protected boolean compression = true;
 
         private FileReader fileReader = null;
         private BufferedReader bufferedReader = null;
@@ -423,5 +514,86 @@ public class IotaAPICoreExtended implements IotaCore {
             this.httpClientModifier = httpClientModifier;
             return self();
         }
+
+        /**
+         * Shares warm connections between several clients, e.g. the nodes of a pool.
+         * Overrides maxIdleConnections and keepAlive.
+         */
+        public T connectionPool(ConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+            return self();
+        }
+
+        public T maxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return self();
+        }
+
+        public T keepAlive(Duration keepAlive) {
+            Objects.requireNonNull(keepAlive);
+            this.keepAlive = keepAlive;
+            return self();
+        }
+
+        /**
+         * HTTP/2 is negotiated via ALPN, i.e. only for https nodes.
+         */
+        public T http2(boolean http2) {
+            this.http2 = http2;
+            return self();
+        }
+
+        public T connectTimeout(Duration connectTimeout) {
+            Objects.requireNonNull(connectTimeout);
+            this.connectTimeout = connectTimeout;
+            return self();
+        }
+
+        public T readTimeout(Duration readTimeout) {
+            Objects.requireNonNull(readTimeout);
+            this.readTimeout = readTimeout;
+            return self();
+        }
+
+        public T writeTimeout(Duration writeTimeout) {
+            Objects.requireNonNull(writeTimeout);
+            this.writeTimeout = writeTimeout;
+            return self();
+        }
+
+        /**
+         * Limits concurrency of asynchronous calls only, API calls of this class are executed synchronously.
+         */
+        public T dispatcher(int maxRequests, int maxRequestsPerHost) {
+            this.maxRequests = maxRequests;
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return self();
+        }
+
+        public T compression(boolean compression) {
+            this.compression = compression;
+            return self();
+        }
+
+        protected void configureHttpClient(okhttp3.OkHttpClient.Builder builder) {
+            ConnectionPool pool = connectionPool != null
+                    ? connectionPool
+                    : new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+            List<Protocol> protocols = http2
+                    ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                    : Collections.singletonList(Protocol.HTTP_1_1);
+
+            builder.connectionPool(pool)
+                    .dispatcher(dispatcher)
+                    .protocols(protocols)
+                    .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .writeTimeout(writeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
     }
 }
@@ -7,10 +7,20 @@ import jota.pow.ICurl;
 import jota.pow.SpongeFactory;
 import jota.utils.*;
 import org.apache.commons.lang3.StringUtils;
+import org.beyene.ledger.api.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static jota.utils.Constants.*;
@@ -33,10 +43,49 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
     private static final Logger log = LoggerFactory.getLogger(IotaAPICoreExtended.class);
 
     private ICurl customCurl;
+    private TipCache tipCache;
+    private final Metrics metrics;
+    private final boolean batchedTraversal;
+    private final int bundleParallelism;
+    private final Executor bundleExecutor;
 
     protected IotaAPIExtended(Builder builder) {
         super(builder);
         this.customCurl = builder.customCurl;
+        this.metrics = builder.metrics;
+        this.batchedTraversal = builder.batchedTraversal;
+        this.bundleParallelism = builder.bundleParallelism;
+        this.bundleExecutor = builder.bundleExecutor != null || bundleParallelism == 1
+                ? builder.bundleExecutor
+                : newBundleExecutor(bundleParallelism - 1);
+
+        if (builder.tipFreshness != null && !builder.tipFreshness.isZero()) {
+            this.tipCache = new TipCache.Builder()
+                    .setTipSupplier(this::getTransactionsToApprove)
+                    .setFreshness(builder.tipFreshness)
+                    .build();
+        }
+    }
+
+    /**
+     * Stops the refresh thread of the tip cache.
+     */
+    @Override
+    public void close() {
+        if (tipCache != null)
+            tipCache.close();
+    }
+
+    // idle threads time out, so the executor needs no shutdown
+    private static Executor newBundleExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "iota-bundles");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
@@ -91,70 +140,97 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
     @Override
     public Bundle[] bundlesFromAddresses(String[] addresses, final boolean inclusionStates) throws ArgumentException {
         List<Transaction> trxs = this.findTransactionObjectsByAddresses(addresses);
-        List<String> tailTransactions = new ArrayList<>();
-        List<String> nonTailBundleHashes = new ArrayList<>();
-
-        for (Transaction finalBundles : trxs) {
-            if (finalBundles.getCurrentIndex() == 0L) {
-                tailTransactions.add(finalBundles.getHash());
-            } else if (nonTailBundleHashes.indexOf(finalBundles.getBundle()) == -1) {
-                nonTailBundleHashes.add(finalBundles.getBundle());
+        Set<String> tailTransactions = new LinkedHashSet<>();
+        Set<String> nonTailBundleHashes = new LinkedHashSet<>();
+
+        for (Transaction trx : trxs) {
+            if (trx.getCurrentIndex() == 0L) {
+                tailTransactions.add(trx.getHash());
+            } else {
+                nonTailBundleHashes.add(trx.getBundle());
             }
         }
 
-        List<Transaction> var13 = this.findTransactionObjectsByBundle(nonTailBundleHashes.toArray(new String[nonTailBundleHashes.size()]));
-
-        for (Transaction tailTxArray : var13) {
-            if (tailTxArray.getCurrentIndex() == 0L && tailTransactions.indexOf(tailTxArray.getHash()) == -1) {
-                tailTransactions.add(tailTxArray.getHash());
+        if (!nonTailBundleHashes.isEmpty()) {
+            for (Transaction trx : this.findTransactionObjectsByBundle(nonTailBundleHashes.toArray(new String[0]))) {
+                if (trx.getCurrentIndex() == 0L) {
+                    tailTransactions.add(trx.getHash());
+                }
             }
         }
 
-        final List<Bundle> var15 = new ArrayList<>();
-        final String[] var16 = tailTransactions.toArray(new String[tailTransactions.size()]);
+        String[] tails = tailTransactions.toArray(new String[0]);
         GetInclusionStateResponse gisr = null;
-        if (var16.length != 0 && inclusionStates) {
-            gisr = this.getLatestInclusion(var16);
+        if (tails.length != 0 && inclusionStates) {
+            gisr = this.getLatestInclusion(tails);
             if (gisr == null || gisr.getStates() == null || gisr.getStates().length == 0) {
                 throw new IllegalStateException("Get inclusion state response was null.");
             }
         }
 
-        final GetInclusionStateResponse gisr_ = gisr;
-        Parallel.For(Arrays.asList(var16), param -> {
-            try {
-                GetBundleResponse e = IotaAPIExtended.this.getBundle(param);
-                Bundle gbr = new Bundle(e.getTransactions(), e.getTransactions().size());
-                if (gbr.getTransactions() != null) {
-                    if (inclusionStates) {
-                        boolean thisInclusion = false;
-                        if (gisr_ != null) {
-                            thisInclusion = gisr_.getStates()[Arrays.asList(var16).indexOf(param)];
-                        }
+        // states and bundles are indexed like the tails
+        Bundle[] fetched = this.fetchBundles(tails);
+        List<Bundle> bundles = new ArrayList<>(fetched.length);
+        for (int i = 0; i < fetched.length; i++) {
+            if (fetched[i] == null) {
+                continue;
+            }
 
-                        Iterator<Transaction> var5 = gbr.getTransactions().iterator();
+            if (gisr != null) {
+                boolean inclusion = gisr.getStates()[i];
+                for (Transaction t : fetched[i].getTransactions()) {
+                    t.setPersistence(inclusion);
+                }
+            }
+            bundles.add(fetched[i]);
+        }
 
-                        while (var5.hasNext()) {
-                            Transaction t = var5.next();
-                            t.setPersistence(Boolean.valueOf(thisInclusion));
-                        }
-                    }
+        Collections.sort(bundles);
+        return bundles.toArray(new Bundle[0]);
+    }
 
-                    var15.add(gbr);
-                }
-            } catch (ArgumentException var7) {
-                IotaAPIExtended.log.warn("Get bundle response was null.");
+    /**
+     * Gets the bundles of the tails on up to {@link Builder#bundleParallelism(int)} threads, the calling thread
+     * included. The threads take the next tail until all are done, so slow bundles don't hold up the others.
+     *
+     * @param tails hashes of tail transactions
+     * @return bundle for each tail at the same index, <code>null</code> if it is invalid
+     */
+    private Bundle[] fetchBundles(String[] tails) {
+        Bundle[] bundles = new Bundle[tails.length];
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < tails.length; i = next.getAndIncrement()) {
+                bundles[i] = this.bundleOrNull(tails[i]);
             }
+        };
 
-        });
-        Collections.sort(var15);
-        Bundle[] returnValue = new Bundle[var15.size()];
+        int helpers = Math.min(bundleParallelism, tails.length) - 1;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < helpers; i++) {
+            futures.add(CompletableFuture.runAsync(worker, bundleExecutor));
+        }
+        worker.run();
 
-        for (int i = 0; i < var15.size(); ++i) {
-            returnValue[i] = new Bundle(var15.get(i).getTransactions(), var15.get(i).getTransactions().size());
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
+        return bundles;
+    }
 
-        return returnValue;
+    private Bundle bundleOrNull(String tail) {
+        try {
+            GetBundleResponse response = this.getBundle(tail);
+            return new Bundle(response.getTransactions(), response.getTransactions().size());
+        } catch (ArgumentException e) {
+            log.warn("Get bundle response was null.");
+            return null;
+        }
     }
 
     @Override
@@ -184,15 +260,23 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
      * @throws ArgumentException is thrown when invalid trytes is provided.
      */
     public List<Transaction> sendTrytes(final String[] trytes, final int depth, final int minWeightMagnitude, final String reference) throws ArgumentException {
-        final GetTransactionsToApproveResponse txs = getTransactionsToApprove(depth, reference);
+        // cached tips can't guarantee to reference a given transaction
+        final GetTransactionsToApproveResponse txs = tipCache != null && reference == null
+                ? tipCache.get(depth)
+                : getTransactionsToApprove(depth, reference);
 
         // attach to tangle - do pow
+        long start = System.nanoTime();
         final GetAttachToTangleResponse res = attachToTangle(txs.getTrunkTransaction(), txs.getBranchTransaction(), minWeightMagnitude, trytes);
+        metrics.recordSince("sender.pow", start);
 
+        start = System.nanoTime();
         try {
             broadcastAndStore(res.getTrytes());
         } catch (ArgumentException e) {
             return new ArrayList<>();
+        } finally {
+            metrics.recordSince("sender.broadcast", start);
         }
 
         final List<Transaction> trx = Arrays.asList(res.getTrytes()).stream()
@@ -241,6 +325,69 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
         return ftr != null && ftr.getHashes() != null ? this.findTransactionsObjectsByHashes(ftr.getHashes()) : new ArrayList<>();
     }
 
+    /**
+     * Full batches of hashes are fetched on the bundle executor while the remaining hashes are still being received,
+     * see {@link Builder#bundleExecutor(Executor)}. Fetched batches are handed over in order as soon as they are
+     * complete. At most bundleParallelism batches are fetched or waiting to be handed over, reading pauses until the
+     * oldest one is consumed. With a bundle parallelism of 1, batches are fetched on the calling thread.
+     */
+    @Override
+    public void findTransactionObjectsByTag(String[] tags, int batchSize, Consumer<List<Transaction>> batchConsumer) throws ArgumentException {
+        Deque<CompletableFuture<List<Transaction>>> batches = new ArrayDeque<>(bundleParallelism);
+        List<String> hashes = new ArrayList<>(batchSize);
+        try {
+            this.findTransactions(null, tags, null, null, hash -> {
+                hashes.add(hash);
+                if (hashes.size() < batchSize)
+                    return;
+
+                // bounds the batches in memory, a slow consumer pauses reading
+                if (batches.size() >= bundleParallelism)
+                    handOver(batches.poll(), batchConsumer);
+                while (!batches.isEmpty() && batches.peek().isDone())
+                    handOver(batches.poll(), batchConsumer);
+
+                batches.add(this.findTransactionObjectsAsync(hashes.toArray(new String[0])));
+                hashes.clear();
+            });
+
+            if (!hashes.isEmpty())
+                batches.add(this.findTransactionObjectsAsync(hashes.toArray(new String[0])));
+            while (!batches.isEmpty())
+                handOver(batches.poll(), batchConsumer);
+        } catch (ArgumentException | RuntimeException e) {
+            batches.forEach(batch -> batch.cancel(false));
+            throw e;
+        }
+    }
+
+    private static void handOver(CompletableFuture<List<Transaction>> batch, Consumer<List<Transaction>> batchConsumer) {
+        List<Transaction> transactions;
+        try {
+            transactions = batch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        batchConsumer.accept(transactions);
+    }
+
+    private CompletableFuture<List<Transaction>> findTransactionObjectsAsync(String[] hashes) {
+        Executor executor = bundleExecutor != null ? bundleExecutor : Runnable::run;
+        return CompletableFuture.supplyAsync(() -> this.findTransactionObjects(hashes), executor);
+    }
+
+    private List<Transaction> findTransactionObjects(String[] hashes) {
+        List<Transaction> trxs = new ArrayList<>(hashes.length);
+        try {
+            this.getTrytes(hashes, tryte -> trxs.add(new Transaction(tryte, this.customCurl.clone())));
+        } catch (ArgumentException e) {
+            throw new IllegalStateException("Invalid hashes provided.", e);
+        }
+        return trxs;
+    }
+
     @Override
     public List<Transaction> findTransactionObjectsByApprovees(String[] approvees) throws ArgumentException {
         FindTransactionResponse ftr = this.findTransactions(null, null, approvees, null);
@@ -527,7 +674,9 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
         if (!InputValidator.isHash(transaction)) {
             throw new ArgumentException("Invalid hashes provided.");
         } else {
-            Bundle bundle = this.traverseBundle(transaction, null, new Bundle());
+            Bundle bundle = batchedTraversal
+                    ? this.fetchBundle(transaction)
+                    : this.traverseBundle(transaction, null, new Bundle());
             if (bundle == null) {
                 throw new ArgumentException("Invalid bundle.");
             } else {
@@ -737,6 +886,51 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
         }
     }
 
+    /**
+     * Fetches all transactions of the bundle of the tail in one exchange and orders them by trunk, instead of one
+     * getTrytes call per transaction like {@link #traverseBundle(String, String, Bundle)}. Reattachments share
+     * the bundle hash, but the trunks of the tail lead to its own transactions. The bundle is only walked from
+     * where a trunk isn't among the fetched transactions, e.g. if the node hasn't indexed it yet.
+     *
+     * @param tailTx hash of the tail transaction
+     * @return transactions of the bundle, ordered by current index
+     */
+    public Bundle fetchBundle(String tailTx) throws ArgumentException {
+        GetTrytesResponse gtr = this.getTrytes(tailTx);
+        if (gtr == null)
+            throw new ArgumentException("Get trytes response was null.");
+        if (gtr.getTrytes().length == 0)
+            throw new ArgumentException("Invalid bundle.");
+
+        Transaction tail = new Transaction(gtr.getTrytes()[0], this.customCurl.clone());
+        if (tail.getBundle() == null)
+            throw new ArgumentException("Invalid trytes provided.");
+        if (tail.getCurrentIndex() != 0L)
+            throw new ArgumentException("Invalid tail hash provided.");
+        if (tail.getLastIndex() == 0L)
+            return new Bundle(Collections.singletonList(tail), 1);
+
+        String bundleHash = tail.getBundle();
+        Map<String, Transaction> byHash = new HashMap<>();
+        for (Transaction trx : this.findTransactionObjectsByBundle(new String[]{bundleHash}))
+            byHash.put(trx.getHash(), trx);
+
+        Bundle bundle = new Bundle();
+        bundle.getTransactions().add(tail);
+        Transaction current = tail;
+        while (current.getCurrentIndex() < current.getLastIndex()) {
+            Transaction next = byHash.get(current.getTrunkTransaction());
+            if (next == null || !bundleHash.equals(next.getBundle())) {
+                metrics.increment("iota.bundle.walk", 1);
+                return this.traverseBundle(current.getTrunkTransaction(), bundleHash, bundle);
+            }
+
+            bundle.getTransactions().add(next);
+            current = next;
+        }
+        return bundle;
+    }
+
     @Override
     public List<Transaction> initiateTransfer(int securitySum, String inputAddress, String remainderAddress, List<Transfer> transfers, boolean testMode) throws ArgumentException {
         if (!InputValidator.isAddress(inputAddress)) {
@@ -914,6 +1108,11 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
 
     public static class Builder extends IotaAPICoreExtended.Builder<IotaAPIExtended.Builder> {
         private ICurl customCurl;
+        private Duration tipFreshness;
+        private Metrics metrics = Metrics.noop();
+        private boolean batchedTraversal = true;
+        private int bundleParallelism = Runtime.getRuntime().availableProcessors();
+        private Executor bundleExecutor;
 
         public Builder() {
             this.customCurl = SpongeFactory.create(SpongeFactory.Mode.KERL);
@@ -924,6 +1123,58 @@ public class IotaAPIExtended extends IotaAPICoreExtended implements Iota {
             return this;
         }
 
+        /**
+         * @param tipFreshness time in which tips are reused for sending, <code>null</code> or zero disables caching
+         * @return
+         */
+        public IotaAPIExtended.Builder tipFreshness(Duration tipFreshness) {
+            this.tipFreshness = tipFreshness;
+            return this;
+        }
+
+        /**
+         * @param metrics records the duration of proof of work and broadcast when sending
+         * @return
+         */
+        public IotaAPIExtended.Builder metrics(Metrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics);
+            return this;
+        }
+
+        /**
+         * @param batchedTraversal whether getBundle fetches all transactions of a bundle at once instead of
+         *                         walking it transaction by transaction
+         * @return
+         */
+        public IotaAPIExtended.Builder batchedTraversal(boolean batchedTraversal) {
+            this.batchedTraversal = batchedTraversal;
+            return this;
+        }
+
+        /**
+         * @param bundleParallelism maximum number of bundles that bundlesFromAddresses gets at once, also of
+         *                          transaction batches of streamed tag queries, defaults to the number of
+         *                          available processors
+         * @return
+         */
+        public IotaAPIExtended.Builder bundleParallelism(int bundleParallelism) {
+            if (bundleParallelism < 1)
+                throw new IllegalArgumentException("Bundle parallelism must be positive: " + bundleParallelism);
+
+            this.bundleParallelism = bundleParallelism;
+            return this;
+        }
+
+        /**
+         * @param bundleExecutor runs the additional threads of bundlesFromAddresses and the batch fetches of
+         *                       streamed tag queries, by default an executor with daemon threads is created
+         * @return
+         */
+        public IotaAPIExtended.Builder bundleExecutor(Executor bundleExecutor) {
+            this.bundleExecutor = bundleExecutor;
+            return this;
+        }
+
         @Override
         public IotaAPIExtended build() {
             readConfigIfNotSet();
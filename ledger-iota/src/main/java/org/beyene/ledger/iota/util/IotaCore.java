@@ -3,7 +3,9 @@ package org.beyene.ledger.iota.util;
 import jota.dto.response.*;
 import jota.error.ArgumentException;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IotaCore {
     GetNodeInfoResponse getNodeInfo() throws ArgumentException;
@@ -18,6 +20,16 @@ public interface IotaCore {
 
     FindTransactionResponse findTransactions(String[] addresses, String[] tags, String[] approvees, String[] bundles) throws ArgumentException;
 
+    /**
+     * Hands the found hashes to the consumer one by one. The default implementation reads the whole
+     * response first, implementations may parse it incrementally.
+     */
+    default void findTransactions(String[] addresses, String[] tags, String[] approvees, String[] bundles, Consumer<String> hashConsumer) throws ArgumentException {
+        FindTransactionResponse ftr = findTransactions(addresses, tags, approvees, bundles);
+        if (ftr != null && ftr.getHashes() != null)
+            Arrays.stream(ftr.getHashes()).forEach(hashConsumer);
+    }
+
     FindTransactionResponse findTransactionsByAddresses(String... addresses) throws ArgumentException;
 
     FindTransactionResponse findTransactionsByBundles(String... bundles) throws ArgumentException;
@@ -30,6 +42,15 @@ public interface IotaCore {
 
     GetTrytesResponse getTrytes(String... hashes) throws ArgumentException;
 
+    /**
+     * Hands the trytes to the consumer in order of the given hashes, see {@link #findTransactions(String[], String[], String[], String[], Consumer)}.
+     */
+    default void getTrytes(String[] hashes, Consumer<String> trytesConsumer) throws ArgumentException {
+        GetTrytesResponse response = getTrytes(hashes);
+        if (response != null && response.getTrytes() != null)
+            Arrays.stream(response.getTrytes()).forEach(trytesConsumer);
+    }
+
     GetTransactionsToApproveResponse getTransactionsToApprove(int depth, String reference) throws ArgumentException;
 
     GetTransactionsToApproveResponse getTransactionsToApprove(int depth) throws ArgumentException;
@@ -0,0 +1,546 @@
+package org.beyene.ledger.iota.util;
+
+import jota.dto.response.*;
+import jota.error.ArgumentException;
+import jota.model.Bundle;
+import jota.model.Input;
+import jota.model.Transaction;
+import jota.model.Transfer;
+import jota.utils.StopWatch;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Iota implementation that spreads calls over several nodes.</p>
+ * <p>Reads are routed to one healthy node (round robin or least latency) and fail over to the next one
+ * if a node is not reachable. Writes are broadcast to all healthy nodes in parallel and succeed if one
+ * node accepts them. Nodes that fail repeatedly are ejected for a while and then tried again.</p>
+ * <p>An <code>ArgumentException</code> is caused by the request, not the node, so it is rethrown
+ * without failover.</p>
+ */
+public class IotaNodePool implements Iota {
+
+    private static final Logger LOGGER = Logger.getLogger(IotaNodePool.class.getName());
+
+    public enum Routing {
+        ROUND_ROBIN, LEAST_LATENCY
+    }
+
+    private final List<Node> nodes;
+    private final Routing routing;
+    private final int failureThreshold;
+    private final Duration ejectionTime;
+    private final ExecutorService executorService;
+    private final boolean ownExecutorService;
+    private final Clock clock;
+
+    private final AtomicInteger next;
+
+    private IotaNodePool(Builder builder) {
+        if (builder.nodes.isEmpty())
+            throw new IllegalArgumentException("At least one node is required");
+
+        this.nodes = builder.nodes.stream().map(Node::new).collect(Collectors.toList());
+        this.routing = builder.routing;
+        this.failureThreshold = builder.failureThreshold;
+        this.ejectionTime = builder.ejectionTime;
+        this.executorService = builder.executorService != null ? builder.executorService : Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "iota-node-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ownExecutorService = builder.executorService == null;
+        this.clock = builder.clock;
+        this.next = new AtomicInteger();
+    }
+
+    /**
+     * @return nodes that are currently not ejected
+     */
+    public List<Iota> getHealthyNodes() {
+        Instant now = clock.instant();
+        return nodes.stream()
+                .filter(node -> node.isHealthy(now))
+                .map(node -> node.api)
+                .collect(Collectors.toList());
+    }
+
+    private List<Node> candidates() {
+        Instant now = clock.instant();
+        List<Node> healthy = nodes.stream()
+                .filter(node -> node.isHealthy(now))
+                .collect(Collectors.toList());
+
+        // if all nodes are ejected, try all of them rather than failing without a request
+        List<Node> candidates = healthy.isEmpty() ? new ArrayList<>(nodes) : healthy;
+        if (routing == Routing.LEAST_LATENCY) {
+            // unmeasured nodes have NaN latency, which Double.compare sorts after all measured ones
+            candidates.sort(Comparator.comparingDouble(node -> node.latency));
+        } else {
+            int offset = Math.floorMod(next.getAndIncrement(), candidates.size());
+            Collections.rotate(candidates, -offset);
+        }
+
+        return candidates;
+    }
+
+    private <T> T read(NodeCall<T> call) throws ArgumentException {
+        RuntimeException failure = null;
+
+        for (Node node : candidates()) {
+            try {
+                return node.call(call);
+            } catch (IllegalStateException | IllegalAccessError e) {
+                // node not reachable or internal node error, try next one
+                LOGGER.log(Level.INFO, String.format("Node %s failed: %s", node, e));
+                failure = failure == null ? new IllegalStateException("All nodes failed", e) : failure;
+            }
+        }
+
+        throw failure;
+    }
+
+    private <T> T broadcast(NodeCall<T> call) throws ArgumentException {
+        List<Node> candidates = candidates();
+        List<Future<T>> futures = candidates.stream()
+                .map(node -> executorService.submit(() -> node.call(call)))
+                .collect(Collectors.toList());
+
+        T result = null;
+        boolean success = false;
+        ArgumentException argumentException = null;
+        RuntimeException failure = null;
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                T response = futures.get(i).get();
+                if (!success) {
+                    result = response;
+                    success = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while broadcasting", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                LOGGER.log(Level.INFO, String.format("Node %s failed: %s", candidates.get(i), cause));
+                if (cause instanceof ArgumentException)
+                    argumentException = (ArgumentException) cause;
+                else if (failure == null)
+                    failure = new IllegalStateException("All nodes failed", cause);
+            }
+        }
+
+        if (success)
+            return result;
+        if (argumentException != null)
+            throw argumentException;
+        throw failure;
+    }
+
+    @Override
+    public List<Transaction> sendTrytes(String[] trytes, int depth, int minWeightMagnitude, String reference) throws ArgumentException {
+        // tip selection and pow happen on a single node, other nodes just receive the attached trytes
+        AtomicReference<Node> sender = new AtomicReference<>();
+        List<Transaction> transactions = read(node -> {
+            sender.set(nodeOf(node));
+            return node.sendTrytes(trytes, depth, minWeightMagnitude, reference);
+        });
+
+        if (!transactions.isEmpty() && nodes.size() > 1) {
+            String[] attached = transactions.stream().map(Transaction::toTrytes).toArray(String[]::new);
+            Instant now = clock.instant();
+            nodes.stream()
+                    .filter(node -> node != sender.get())
+                    .filter(node -> node.isHealthy(now))
+                    .forEach(node -> executorService.submit(() -> node.call(api -> api.broadcastTransactions(attached))));
+        }
+
+        return transactions;
+    }
+
+    private Node nodeOf(Iota api) {
+        return nodes.stream().filter(node -> node.api == api).findFirst().orElse(null);
+    }
+
+    @Override
+    public String getProtocol() {
+        return candidates().get(0).api.getProtocol();
+    }
+
+    @Override
+    public String getHost() {
+        return candidates().get(0).api.getHost();
+    }
+
+    @Override
+    public String getPort() {
+        return candidates().get(0).api.getPort();
+    }
+
+    @Override
+    public GetNewAddressResponse getNewAddress(String seed, int security, int index, boolean checksum, int total, boolean returnAll) throws ArgumentException {
+        return read(node -> node.getNewAddress(seed, security, index, checksum, total, returnAll));
+    }
+
+    @Override
+    public GetTransferResponse getTransfers(String seed, int security, int start, int end, boolean inclusionStates) throws ArgumentException {
+        return read(node -> node.getTransfers(seed, security, start, end, inclusionStates));
+    }
+
+    @Override
+    public Bundle[] bundlesFromAddresses(String[] addresses, boolean inclusionStates) throws ArgumentException {
+        return read(node -> node.bundlesFromAddresses(addresses, inclusionStates));
+    }
+
+    @Override
+    public StoreTransactionsResponse broadcastAndStore(String... trytes) throws ArgumentException {
+        return broadcast(node -> node.broadcastAndStore(trytes));
+    }
+
+    @Override
+    public List<Transaction> findTransactionsObjectsByHashes(String[] hashes) throws ArgumentException {
+        return read(node -> node.findTransactionsObjectsByHashes(hashes));
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByAddresses(String[] addresses) throws ArgumentException {
+        return read(node -> node.findTransactionObjectsByAddresses(addresses));
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByTag(String[] tags) throws ArgumentException {
+        return read(node -> node.findTransactionObjectsByTag(tags));
+    }
+
+    @Override
+    public void findTransactionObjectsByTag(String[] tags, int batchSize, Consumer<List<Transaction>> batchConsumer) throws ArgumentException {
+        // batches of a failed node may be handed out again by the next one
+        read(node -> {
+            node.findTransactionObjectsByTag(tags, batchSize, batchConsumer);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByApprovees(String[] approvees) throws ArgumentException {
+        return read(node -> node.findTransactionObjectsByApprovees(approvees));
+    }
+
+    @Override
+    public List<Transaction> findTransactionObjectsByBundle(String[] bundles) throws ArgumentException {
+        return read(node -> node.findTransactionObjectsByBundle(bundles));
+    }
+
+    @Override
+    public List<String> prepareTransfers(String seed, int security, final List<Transfer> transfers, String remainder, List<Input> inputs, List<Transaction> tips, boolean validateInputs) throws ArgumentException {
+        return read(node -> node.prepareTransfers(seed, security, transfers, remainder, inputs, tips, validateInputs));
+    }
+
+    @Override
+    public GetBalancesAndFormatResponse getInputs(String seed, int security, int start, int end, long threshold, final String... tips) throws ArgumentException {
+        return read(node -> node.getInputs(seed, security, start, end, threshold, tips));
+    }
+
+    @Override
+    public GetBalancesAndFormatResponse getBalanceAndFormat(final List<String> addresses, final List<String> tips, long threshold, int start, StopWatch stopWatch, int security) throws ArgumentException, IllegalStateException {
+        return read(node -> node.getBalanceAndFormat(addresses, tips, threshold, start, stopWatch, security));
+    }
+
+    @Override
+    public GetBundleResponse getBundle(String transaction) throws ArgumentException {
+        return read(node -> node.getBundle(transaction));
+    }
+
+    @Override
+    public GetAccountDataResponse getAccountData(String seed, int security, int index, boolean checksum, int total, boolean returnAll, int start, int end, boolean inclusionStates, long threshold) throws ArgumentException {
+        return read(node -> node.getAccountData(seed, security, index, checksum, total, returnAll, start, end, inclusionStates, threshold));
+    }
+
+    @Override
+    public ReplayBundleResponse replayBundle(String tailTransactionHash, int depth, int minWeightMagnitude, String reference) throws ArgumentException {
+        return read(node -> node.replayBundle(tailTransactionHash, depth, minWeightMagnitude, reference));
+    }
+
+    @Override
+    public GetInclusionStateResponse getLatestInclusion(String[] hashes) throws ArgumentException {
+        return read(node -> node.getLatestInclusion(hashes));
+    }
+
+    @Override
+    public SendTransferResponse sendTransfer(String seed, int security, int depth, int minWeightMagnitude, final List<Transfer> transfers, List<Input> inputs, String remainderAddress, boolean validateInputs, boolean validateInputAddresses, final List<Transaction> tips) throws ArgumentException {
+        return read(node -> node.sendTransfer(seed, security, depth, minWeightMagnitude, transfers, inputs, remainderAddress, validateInputs, validateInputAddresses, tips));
+    }
+
+    @Override
+    public Bundle traverseBundle(String trunkTx, String bundleHash, Bundle bundle) throws ArgumentException {
+        return read(node -> node.traverseBundle(trunkTx, bundleHash, bundle));
+    }
+
+    @Override
+    public List<Transaction> initiateTransfer(int securitySum, String inputAddress, String remainderAddress, List<Transfer> transfers, boolean testMode) throws ArgumentException {
+        return read(node -> node.initiateTransfer(securitySum, inputAddress, remainderAddress, transfers, testMode));
+    }
+
+    @Override
+    public void validateTransfersAddresses(String seed, int security, List<String> trytes) throws ArgumentException {
+        read(node -> {
+            node.validateTransfersAddresses(seed, security, trytes);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> addRemainder(String seed, int security, List<Input> inputs, Bundle bundle, String tag, long totalValue, String remainderAddress, List<String> signatureFragments) throws ArgumentException {
+        return read(node -> node.addRemainder(seed, security, inputs, bundle, tag, totalValue, remainderAddress, signatureFragments));
+    }
+
+    @Override
+    public GetNodeInfoResponse getNodeInfo() throws ArgumentException {
+        return read(Iota::getNodeInfo);
+    }
+
+    @Override
+    public GetNeighborsResponse getNeighbors() throws ArgumentException {
+        return read(Iota::getNeighbors);
+    }
+
+    @Override
+    public AddNeighborsResponse addNeighbors(String... uris) throws ArgumentException {
+        return read(node -> node.addNeighbors(uris));
+    }
+
+    @Override
+    public RemoveNeighborsResponse removeNeighbors(String... uris) throws ArgumentException {
+        return read(node -> node.removeNeighbors(uris));
+    }
+
+    @Override
+    public GetTipsResponse getTips() throws ArgumentException {
+        return read(Iota::getTips);
+    }
+
+    @Override
+    public FindTransactionResponse findTransactions(String[] addresses, String[] tags, String[] approvees, String[] bundles) throws ArgumentException {
+        return read(node -> node.findTransactions(addresses, tags, approvees, bundles));
+    }
+
+    @Override
+    public void findTransactions(String[] addresses, String[] tags, String[] approvees, String[] bundles, Consumer<String> hashConsumer) throws ArgumentException {
+        read(node -> {
+            node.findTransactions(addresses, tags, approvees, bundles, hashConsumer);
+            return null;
+        });
+    }
+
+    @Override
+    public FindTransactionResponse findTransactionsByAddresses(String... addresses) throws ArgumentException {
+        return read(node -> node.findTransactionsByAddresses(addresses));
+    }
+
+    @Override
+    public FindTransactionResponse findTransactionsByBundles(String... bundles) throws ArgumentException {
+        return read(node -> node.findTransactionsByBundles(bundles));
+    }
+
+    @Override
+    public FindTransactionResponse findTransactionsByApprovees(String... approvees) throws ArgumentException {
+        return read(node -> node.findTransactionsByApprovees(approvees));
+    }
+
+    @Override
+    public FindTransactionResponse findTransactionsByDigests(String... digests) throws ArgumentException {
+        return read(node -> node.findTransactionsByDigests(digests));
+    }
+
+    @Override
+    public GetInclusionStateResponse getInclusionStates(String[] transactions, String[] tips) throws ArgumentException {
+        return read(node -> node.getInclusionStates(transactions, tips));
+    }
+
+    @Override
+    public GetTrytesResponse getTrytes(String... hashes) throws ArgumentException {
+        return read(node -> node.getTrytes(hashes));
+    }
+
+    @Override
+    public void getTrytes(String[] hashes, Consumer<String> trytesConsumer) throws ArgumentException {
+        read(node -> {
+            node.getTrytes(hashes, trytesConsumer);
+            return null;
+        });
+    }
+
+    @Override
+    public GetTransactionsToApproveResponse getTransactionsToApprove(int depth, String reference) throws ArgumentException {
+        return read(node -> node.getTransactionsToApprove(depth, reference));
+    }
+
+    @Override
+    public GetTransactionsToApproveResponse getTransactionsToApprove(int depth) throws ArgumentException {
+        return read(node -> node.getTransactionsToApprove(depth));
+    }
+
+    @Override
+    public GetBalancesResponse getBalances(int threshold, List<String> addresses, List<String> tips) throws ArgumentException {
+        return read(node -> node.getBalances(threshold, addresses, tips));
+    }
+
+    @Override
+    public GetBalancesResponse getBalances(int threshold, List<String> addresses) throws ArgumentException {
+        return read(node -> node.getBalances(threshold, addresses));
+    }
+
+    @Override
+    public GetAttachToTangleResponse attachToTangle(String trunkTransaction, String branchTransaction, int minWeightMagnitude, String... trytes) throws ArgumentException {
+        return read(node -> node.attachToTangle(trunkTransaction, branchTransaction, minWeightMagnitude, trytes));
+    }
+
+    @Override
+    public InterruptAttachingToTangleResponse interruptAttachingToTangle() throws ArgumentException {
+        return broadcast(Iota::interruptAttachingToTangle);
+    }
+
+    @Override
+    public BroadcastTransactionsResponse broadcastTransactions(String... trytes) throws ArgumentException {
+        return broadcast(node -> node.broadcastTransactions(trytes));
+    }
+
+    @Override
+    public StoreTransactionsResponse storeTransactions(String... trytes) throws ArgumentException {
+        return broadcast(node -> node.storeTransactions(trytes));
+    }
+
+    /**
+     * Closes all nodes and stops the broadcast threads, unless the executor was set with the builder.
+     */
+    @Override
+    public void close() {
+        nodes.forEach(node -> node.api.close());
+        if (ownExecutorService)
+            executorService.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface NodeCall<T> {
+        T apply(Iota api) throws ArgumentException;
+    }
+
+    private class Node {
+
+        private final Iota api;
+        // exponentially weighted moving average in ms, NaN until measured
+        private volatile double latency;
+        private final AtomicInteger failures;
+        private volatile Instant ejectedUntil;
+
+        Node(Iota api) {
+            this.api = Objects.requireNonNull(api);
+            this.latency = Double.NaN;
+            this.failures = new AtomicInteger();
+            this.ejectedUntil = Instant.MIN;
+        }
+
+        boolean isHealthy(Instant now) {
+            return !ejectedUntil.isAfter(now);
+        }
+
+        <T> T call(NodeCall<T> call) throws ArgumentException {
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(api);
+                onSuccess(System.nanoTime() - start);
+                return result;
+            } catch (IllegalStateException | IllegalAccessError e) {
+                onFailure();
+                throw e;
+            }
+        }
+
+        private void onSuccess(long nanos) {
+            failures.set(0);
+            double millis = nanos / 1_000_000d;
+            latency = Double.isNaN(latency) ? millis : 0.8 * latency + 0.2 * millis;
+        }
+
+        private void onFailure() {
+            if (failures.incrementAndGet() >= failureThreshold) {
+                // half-open after ejection, a single failure ejects the node again
+                failures.set(failureThreshold - 1);
+                ejectedUntil = clock.instant().plus(ejectionTime);
+                // measured again once it is back
+                latency = Double.NaN;
+                LOGGER.log(Level.INFO, String.format("Ejecting node %s until %s", this, ejectedUntil));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return api.getProtocol() + "://" + api.getHost() + ":" + api.getPort();
+        }
+    }
+
+    public static class Builder {
+
+        private final List<Iota> nodes = new ArrayList<>();
+        private Routing routing = Routing.ROUND_ROBIN;
+        private int failureThreshold = 3;
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        private ExecutorService executorService;
+        private Clock clock = Clock.systemUTC();
+
+        public Builder addNode(Iota node) {
+            Objects.requireNonNull(node);
+            this.nodes.add(node);
+            return this;
+        }
+
+        public Builder setRouting(Routing routing) {
+            Objects.requireNonNull(routing);
+            this.routing = routing;
+            return this;
+        }
+
+        public Builder setFailureThreshold(int failureThreshold) {
+            if (failureThreshold < 1)
+                throw new IllegalArgumentException("failureThreshold must be positive: " + failureThreshold);
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public Builder setEjectionTime(Duration ejectionTime) {
+            Objects.requireNonNull(ejectionTime);
+            this.ejectionTime = ejectionTime;
+            return this;
+        }
+
+        public Builder setExecutorService(ExecutorService executorService) {
+            this.executorService = executorService;
+            return this;
+        }
+
+        public Builder setClock(Clock clock) {
+            Objects.requireNonNull(clock);
+            this.clock = clock;
+            return this;
+        }
+
+        public IotaNodePool build() {
+            return new IotaNodePool(this);
+        }
+    }
+}
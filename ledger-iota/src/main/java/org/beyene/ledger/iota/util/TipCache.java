@@ -0,0 +1,205 @@
+package org.beyene.ledger.iota.util;
+
+import jota.dto.response.GetTransactionsToApproveResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Caches trunk/branch pairs returned by getTransactionsToApprove per depth.</p>
+ * <p>A pair is served to all senders as long as it is younger than the freshness window. Once a pair
+ * is older than the refresh threshold, it is still served, but a new pair is fetched in the background.
+ * Only expired or missing pairs are fetched synchronously, concurrent callers share that fetch.</p>
+ */
+public class TipCache implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(TipCache.class.getName());
+
+    private final IntFunction<GetTransactionsToApproveResponse> tipSupplier;
+    private final Duration freshness;
+    private final Duration refreshAfter;
+    private final Executor executor;
+    // created by the cache, so it is shut down on close
+    private final ExecutorService ownExecutor;
+    private final Clock clock;
+
+    private final ConcurrentMap<Integer, Tips> tips;
+    private final ConcurrentMap<Integer, CompletableFuture<Tips>> loading;
+    private final Set<Integer> refreshing;
+
+    private TipCache(Builder builder) {
+        this.tipSupplier = Objects.requireNonNull(builder.tipSupplier);
+        this.freshness = Objects.requireNonNull(builder.freshness);
+        this.refreshAfter = builder.refreshAfter != null ? builder.refreshAfter : freshness.dividedBy(2);
+        this.ownExecutor = builder.executor != null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "tip-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = builder.executor != null ? builder.executor : ownExecutor;
+        this.clock = builder.clock;
+        this.tips = new ConcurrentHashMap<>();
+        this.loading = new ConcurrentHashMap<>();
+        this.refreshing = ConcurrentHashMap.newKeySet();
+    }
+
+    public GetTransactionsToApproveResponse get(int depth) {
+        Tips cached = tips.get(depth);
+        Instant now = clock.instant();
+        if (cached != null && cached.isFresh(now)) {
+            if (cached.isDue(now))
+                refreshAsync(depth);
+            return cached.response;
+        }
+
+        // callers for the same depth wait for the future of the first one and share its fetch
+        CompletableFuture<Tips> future = new CompletableFuture<>();
+        CompletableFuture<Tips> running = loading.putIfAbsent(depth, future);
+        if (running != null)
+            return join(running).response;
+
+        try {
+            Tips current = tips.get(depth);
+            if (current == null || !current.isFresh(clock.instant())) {
+                current = fetch(depth);
+                tips.merge(depth, current, Tips::newer);
+            }
+            future.complete(current);
+            return current.response;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(depth, future);
+        }
+    }
+
+    private static Tips join(CompletableFuture<Tips> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    public void invalidate() {
+        tips.clear();
+    }
+
+    private void refreshAsync(int depth) {
+        if (!refreshing.add(depth))
+            return;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    Tips fetched = fetch(depth);
+                    tips.merge(depth, fetched, Tips::newer);
+                } catch (RuntimeException e) {
+                    // keep serving the current pair until it expires
+                    LOGGER.log(Level.INFO, e.toString(), e);
+                } finally {
+                    refreshing.remove(depth);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(depth);
+            LOGGER.log(Level.INFO, e.toString(), e);
+        }
+    }
+
+    /**
+     * Stops the refresh thread, unless the executor was set with the builder.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor != null)
+            ownExecutor.shutdownNow();
+    }
+
+    private Tips fetch(int depth) {
+        Instant start = clock.instant();
+        GetTransactionsToApproveResponse response = tipSupplier.apply(depth);
+        if (response == null || response.getTrunkTransaction() == null || response.getBranchTransaction() == null)
+            throw new IllegalStateException("Tip selection failed for depth: " + depth);
+
+        return new Tips(response, start);
+    }
+
+    private class Tips {
+
+        private final GetTransactionsToApproveResponse response;
+        private final Instant fetched;
+
+        Tips(GetTransactionsToApproveResponse response, Instant fetched) {
+            this.response = response;
+            this.fetched = fetched;
+        }
+
+        boolean isFresh(Instant now) {
+            return fetched.plus(freshness).isAfter(now);
+        }
+
+        boolean isDue(Instant now) {
+            return !fetched.plus(refreshAfter).isAfter(now);
+        }
+
+        Tips newer(Tips other) {
+            return fetched.isAfter(other.fetched) ? this : other;
+        }
+    }
+
+    public static class Builder {
+
+        private IntFunction<GetTransactionsToApproveResponse> tipSupplier;
+        private Duration freshness;
+        private Duration refreshAfter;
+        private Executor executor;
+        private Clock clock = Clock.systemUTC();
+
+        public Builder setTipSupplier(IntFunction<GetTransactionsToApproveResponse> tipSupplier) {
+            this.tipSupplier = tipSupplier;
+            return this;
+        }
+
+        public Builder setFreshness(Duration freshness) {
+            this.freshness = freshness;
+            return this;
+        }
+
+        public Builder setRefreshAfter(Duration refreshAfter) {
+            this.refreshAfter = refreshAfter;
+            return this;
+        }
+
+        public Builder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder setClock(Clock clock) {
+            Objects.requireNonNull(clock);
+            this.clock = clock;
+            return this;
+        }
+
+        public TipCache build() {
+            return new TipCache(this);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.beyene.ledger.iota;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.beyene.ledger.iota.TagChangeListener.TagChangeAction;
+import org.beyene.ledger.iota.TagChangeListener.TagChangeEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class AdaptivePollScheduleTest {
+
+    private final List<Long> delays = new ArrayList<>();
+    private final Queue<Integer> results = new LinkedList<>();
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> future;
+    private int polls;
+
+    @Before
+    public void setUp() {
+        executor = mock(ScheduledExecutorService.class);
+        future = mock(ScheduledFuture.class);
+        doAnswer(invocation -> {
+            delays.add(invocation.getArgument(1));
+            return future;
+        }).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    private AdaptivePollSchedule.Builder scheduleBuilder() {
+        return new AdaptivePollSchedule.Builder()
+                .setExecutor(executor)
+                .setTask(() -> {
+                    polls++;
+                    Integer result = results.poll();
+                    return result != null ? result : 0;
+                })
+                .setInitialInterval(Duration.ofSeconds(1))
+                .setMinInterval(Duration.ofMillis(100))
+                .setMaxInterval(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testBackoffAndReset() throws Exception {
+        AdaptivePollSchedule schedule = scheduleBuilder().build();
+        schedule.start();
+        Collections.addAll(results, 0, 0, 0, 0, 3, 0);
+        for (int i = 0; i < 6; i++)
+            schedule.run();
+
+        Assert.assertThat("delays", delays, is(Arrays.asList(0L, 2_000L, 4_000L, 5_000L, 5_000L, 100L, 200L)));
+    }
+
+    @Test
+    public void testTagAddedPollsImmediately() throws Exception {
+        AdaptivePollSchedule schedule = scheduleBuilder().build();
+        schedule.start();
+        schedule.run();
+        schedule.run();
+        when(future.cancel(false)).thenReturn(true);
+
+        schedule.tagChanged(new TagChangeEvent(Collections.singleton("A"), "A", TagChangeAction.ADD));
+
+        Assert.assertThat("rescheduled without delay", delays.get(delays.size() - 1), is(0L));
+        Assert.assertThat("interval reset", schedule.getInterval(), is(Duration.ofMillis(100)));
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        RateLimiter budget = RateLimiter.create(0.001);
+        AdaptivePollSchedule schedule = scheduleBuilder().setBudget(budget).build();
+        schedule.start();
+        schedule.run();
+        schedule.run();
+
+        Assert.assertThat("second poll exceeds budget", polls, is(1));
+        Assert.assertThat("postponed by min interval", delays.get(delays.size() - 1), is(100L));
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        AdaptivePollSchedule schedule = scheduleBuilder().build();
+        schedule.start();
+        schedule.stop();
+        schedule.run();
+
+        Assert.assertThat("no poll after stop", polls, is(0));
+        verify(future).cancel(false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroMinIntervalIsRejected() throws Exception {
+        scheduleBuilder().setMinInterval(Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBackoffFactorBelowOneIsRejected() throws Exception {
+        scheduleBuilder().setBackoffFactor(0.5);
+    }
+}
@@ -0,0 +1,86 @@
+package org.beyene.ledger.iota;
+
+import jota.model.Bundle;
+import jota.utils.Constants;
+import org.apache.commons.lang3.StringUtils;
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class BundleEncoderTest {
+
+    private static final String TRYTES = "9ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private final BundleEncoder encoder = new BundleEncoder(new BufferPool.Builder().build());
+
+    @Test
+    public void testSameAsJotaBundle() throws Exception {
+        Random random = new Random(42);
+        long timestamp = 1_538_352_000_123L;
+
+        for (int length : new int[]{1, 100, 2186, 2187, 2188, 5000, 7000}) {
+            String message = randomTrytes(random, length);
+            String address = randomTrytes(random, random.nextInt(82));
+            String tag = randomTrytes(random, 1 + random.nextInt(27));
+
+            String[] encoded = encoder.encode(message.toCharArray(), message.length(), address, tag, timestamp);
+            Assert.assertThat("length " + length, encoded, is(jotaBundle(message, address, tag, timestamp)));
+        }
+    }
+
+    @Test
+    public void testEmptyMessage() throws Exception {
+        String[] encoded = encoder.encode(new char[0], 0, "", "TAG", 1_538_352_000_123L);
+        Assert.assertThat("one transaction", encoded.length, is(1));
+
+        jota.model.Transaction tx = new jota.model.Transaction(encoded[0], null);
+        Assert.assertThat("empty fragment", StringUtils.stripEnd(tx.getSignatureFragments(), "9"), is(""));
+        Assert.assertThat("timestamp", tx.getTimestamp(), is(1_538_352_000L));
+        Assert.assertThat("tag", StringUtils.stripEnd(tx.getTag(), "9"), is("TAG"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTagTooLong() throws Exception {
+        encoder.encode(new char[0], 0, "", StringUtils.repeat('A', 28), 0);
+    }
+
+    private static String randomTrytes(Random random, int length) {
+        StringBuilder trytes = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            trytes.append(TRYTES.charAt(random.nextInt(TRYTES.length())));
+        return trytes.toString();
+    }
+
+    // previous implementation of the sender
+    private static String[] jotaBundle(String message, String address, String tag, long timestamp) {
+        List<String> fragments = new ArrayList<>();
+        for (int i = 0; i < message.length(); i += Constants.MESSAGE_LENGTH) {
+            String fragment = message.substring(i, Math.min(i + Constants.MESSAGE_LENGTH, message.length()));
+            fragments.add(StringUtils.rightPad(fragment, Constants.MESSAGE_LENGTH, '9'));
+        }
+
+        Bundle bundle = new Bundle();
+        bundle.addEntry(fragments.size(), StringUtils.rightPad(address, Constants.ADDRESS_LENGTH_WITHOUT_CHECKSUM, '9'),
+                0, StringUtils.rightPad(tag, Constants.TAG_LENGTH, '9'), 0);
+        bundle.addTrytes(fragments);
+        for (jota.model.Transaction tx : bundle.getTransactions()) {
+            tx.setTag(tx.getObsoleteTag());
+            tx.setTimestamp(timestamp / 1000);
+            tx.setAttachmentTimestamp(timestamp);
+            tx.setAttachmentTimestampLowerBound(0);
+            tx.setAttachmentTimestampUpperBound(3_812_798_742_493L);
+        }
+        bundle.finalize(null);
+
+        List<jota.model.Transaction> transactions = bundle.getTransactions();
+        Collections.reverse(transactions);
+        return transactions.stream().map(jota.model.Transaction::toTrytes).toArray(String[]::new);
+    }
+}
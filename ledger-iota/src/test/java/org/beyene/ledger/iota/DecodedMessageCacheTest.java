@@ -0,0 +1,67 @@
+package org.beyene.ledger.iota;
+
+import org.beyene.ledger.api.buffer.BufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class DecodedMessageCacheTest {
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        DecodedMessageCache cache = new DecodedMessageCache(1024);
+        cache.put("BUNDLE", bytes("payload"));
+
+        Assert.assertThat("hit", new String(cache.get("BUNDLE"), StandardCharsets.UTF_8), is("payload"));
+        Assert.assertThat("miss", cache.get("OTHER"), is(nullValue()));
+        Assert.assertThat("hits", cache.getHits(), is(1L));
+        Assert.assertThat("misses", cache.getMisses(), is(1L));
+
+        // returned payload is a copy
+        cache.get("BUNDLE")[0] = 'X';
+        Assert.assertThat("unchanged", new String(cache.get("BUNDLE"), StandardCharsets.UTF_8), is("payload"));
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        DecodedMessageCache cache = new DecodedMessageCache(10);
+        cache.put("A", new byte[4]);
+        cache.put("B", new byte[4]);
+        // A is most recently used now
+        cache.get("A");
+        cache.put("C", new byte[4]);
+
+        Assert.assertThat("B evicted", cache.get("B"), is(nullValue()));
+        Assert.assertThat("A kept", cache.get("A").length, is(4));
+        Assert.assertThat("size", cache.size(), is(8L));
+        Assert.assertThat("evictions", cache.getEvictions(), is(1L));
+
+        cache.put("D", new byte[11]);
+        Assert.assertThat("too large", cache.get("D"), is(nullValue()));
+    }
+
+    @Test
+    public void testBufferIsCopyOfEvictedEntry() throws Exception {
+        BufferPool pool = new BufferPool.Builder().build();
+        DecodedMessageCache cache = new DecodedMessageCache(7);
+        cache.put("A", bytes("payload"));
+
+        ByteBuffer copy = cache.getBuffer("A", pool);
+        cache.put("B", bytes("evicts!"));
+        // reuses the released buffer of A
+        cache.put("C", bytes("changed"));
+
+        Assert.assertThat("evicted", cache.getBuffer("A", pool), is(nullValue()));
+        Assert.assertThat("copy unchanged", StandardCharsets.UTF_8.decode(copy).toString(), is("payload"));
+        pool.release(copy);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -2,6 +2,7 @@ package org.beyene.ledger.iota;
 
 import jota.error.ArgumentException;
 import org.apache.commons.lang3.StringUtils;
+import org.beyene.ledger.api.BufferSerializer;
 import org.beyene.ledger.api.Data;
 import org.beyene.ledger.api.Transaction;
 import org.beyene.ledger.iota.util.Iota;
@@ -11,6 +12,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -134,4 +136,16 @@ public class DefaultMessageSenderTest {
                 .build();
         sender.addTransaction(new MessageTransaction<>("ID", Instant.now(), "TAG", "This is how we do"));
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTransactionTooLarge() throws Exception {
+        BufferSerializer<byte[]> serializer = (bytes, target) -> target.put(bytes);
+        MessageSender<byte[]> sender = new DefaultMessageSender.Builder<byte[], ByteBuffer>()
+                .setApi(api)
+                .setFormat(Data.BYTE_BUFFER)
+                .setSerializer(serializer)
+                .build();
+
+        sender.addTransaction(new MessageTransaction<>("ID", Instant.now(), "TAG", new byte[(1 << 20) + 1]));
+    }
 }
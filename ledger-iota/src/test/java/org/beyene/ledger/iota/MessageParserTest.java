@@ -167,6 +167,37 @@ public class MessageParserTest {
         Assert.assertThat("message", received.getObject(), is(message));
     }
 
+    @Test
+    public void testDecodedMessageCache() throws Exception {
+        DecodedMessageCache cache = new DecodedMessageCache(1024);
+        MessageParser<String, String> cachingParser = new MessageParser.Builder<String, String>()
+                .setMessageQueue(messageQueue)
+                .setTransactionQueue(transactionQueue)
+                .setTransactionsBeforePushThreshold(new LinkedBlockingQueue<>())
+                .setMessagesBeforePushThresholdConsumer(messages -> {
+                })
+                .setFormat(Data.STRING)
+                .setKeepAliveInterval(Duration.ofMinutes(60))
+                .setDeserializer(s -> s)
+                .setMessageCache(cache)
+                .build();
+
+        String message = "This is how we do";
+        sender.addTransaction(new MessageTransaction<>("ID", Instant.now(), "TAG", message));
+        List<Transaction<jota.model.Transaction>> txs = transactionTrytes.stream()
+                .map(txTrytes -> new jota.model.Transaction(txTrytes, null))
+                .map(TransactionDecorator::new)
+                .collect(Collectors.toList());
+
+        List<Transaction<String>> first = cachingParser.parseBundles(txs);
+        List<Transaction<String>> second = cachingParser.parseBundles(txs);
+
+        Assert.assertThat("first", first.get(0).getObject(), is(message));
+        Assert.assertThat("second", second.get(0).getObject(), is(message));
+        Assert.assertThat("decoded once", cache.getMisses(), is(1L));
+        Assert.assertThat("served from cache", cache.getHits(), is(1L));
+    }
+
     private static class TransactionDecorator implements Transaction<jota.model.Transaction> {
 
         private final jota.model.Transaction delegate;
@@ -0,0 +1,141 @@
+package org.beyene.ledger.iota;
+
+import org.beyene.ledger.api.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class MessageStoreTest {
+
+    private static final Instant T0 = Instant.parse("2018-10-01T12:00:00Z");
+
+    @Test
+    public void testRangeQuery() throws Exception {
+        MessageStore<String> store = new MessageStore.Builder().build();
+        store.addAll(Arrays.asList(message("B", 3, "b3"), message("A", 1, "a1"), message("A", 2, "a2")));
+        store.addAll(Arrays.asList(message("B", 2, "b2"), message("A", 4, "a4")));
+
+        Assert.assertThat("ordered by time", contents(store.getTransactions(T0, T0.plusSeconds(10))),
+                is(Arrays.asList("a1", "a2", "b2", "b3", "a4")));
+        // bounds are exclusive
+        Assert.assertThat("window", contents(store.getTransactions(T0.plusSeconds(1), T0.plusSeconds(4))),
+                is(Arrays.asList("a2", "b2", "b3")));
+        Assert.assertThat("empty window", store.getTransactions(T0.plusSeconds(4), T0.plusSeconds(1)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRemoveTag() throws Exception {
+        MessageStore<String> store = new MessageStore.Builder().build();
+        store.addAll(Arrays.asList(message("A", 1, "a1"), message("B", 2, "b2"), message("A", 3, "a3")));
+
+        store.removeTag("A");
+
+        Assert.assertThat("remaining", contents(store.getTransactions(Instant.MIN, Instant.MAX)), is(Arrays.asList("b2")));
+        Assert.assertThat("size", store.size(), is(1));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        MessageStore<String> store = new MessageStore.Builder().setMaxSize(3).build();
+        store.addAll(Arrays.asList(message("A", 1, "a1"), message("B", 2, "b2"), message("A", 3, "a3")));
+        store.addAll(Arrays.asList(message("B", 4, "b4"), message("A", 5, "a5")));
+
+        Assert.assertThat("oldest evicted", contents(store.getTransactions(Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("a3", "b4", "a5")));
+        Assert.assertThat("size", store.size(), is(3));
+    }
+
+    @Test
+    public void testEvictExactlyExcess() throws Exception {
+        MessageStore<String> store = new MessageStore.Builder().setMaxSize(3).build();
+        store.addAll(Arrays.asList(message("A", 1, "a1"), message("B", 1, "b1"), message("A", 1, "a1'")));
+        store.addAll(Arrays.asList(message("B", 2, "b2")));
+
+        // messages with the same timestamp are evicted one by one
+        Assert.assertThat("one evicted", contents(store.getTransactions(Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("b1", "a1'", "b2")));
+        Assert.assertThat("size", store.size(), is(3));
+    }
+
+    @Test
+    public void testConcurrentAddAndEvict() throws Exception {
+        MessageStore<String> store = new MessageStore.Builder().setMaxSize(100).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String tag = "T" + t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    store.addAll(Collections.singletonList(message(tag, i % 10, tag + i)));
+                    store.getTransactions(Instant.MIN, Instant.MAX);
+                }
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Assert.assertThat("bounded", store.size(), is(100));
+        Assert.assertThat("size matches contents", store.getTransactions(Instant.MIN, Instant.MAX).size(), is(100));
+        for (int t = 0; t < 4; t++)
+            store.removeTag("T" + t);
+        Assert.assertThat("empty", store.size(), is(0));
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        Clock clock = Clock.fixed(T0.plusSeconds(60), ZoneOffset.UTC);
+        MessageStore<String> store = new MessageStore.Builder()
+                .setRetention(Duration.ofSeconds(30))
+                .setClock(clock)
+                .build();
+        store.addAll(Arrays.asList(message("A", 10, "a10"), message("A", 40, "a40")));
+
+        Assert.assertThat("expired evicted", contents(store.getTransactions(Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("a40")));
+    }
+
+    private static List<String> contents(List<Transaction<String>> transactions) {
+        return transactions.stream().map(Transaction::getObject).collect(Collectors.toList());
+    }
+
+    private static Transaction<String> message(String tag, int second, String content) {
+        Instant timestamp = T0.plusSeconds(second);
+        return new Transaction<String>() {
+            @Override
+            public String getIdentifier() {
+                return content;
+            }
+
+            @Override
+            public Instant getTimestamp() {
+                return timestamp;
+            }
+
+            @Override
+            public String getTag() {
+                return tag;
+            }
+
+            @Override
+            public String getObject() {
+                return content;
+            }
+        };
+    }
+}
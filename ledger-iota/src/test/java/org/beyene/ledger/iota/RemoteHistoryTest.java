@@ -0,0 +1,171 @@
+package org.beyene.ledger.iota;
+
+import jota.dto.response.FindTransactionResponse;
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.iota.util.Iota;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class RemoteHistoryTest {
+
+    private final List<String> transactionTrytes = new ArrayList<>();
+    private final Instant now = Instant.now();
+    private Iota api;
+    private Clock clock;
+    private MessageSender<String> sender;
+    private RemoteHistory<String> history;
+
+    @Before
+    public void setUp() throws Exception {
+        api = mock(Iota.class);
+        doAnswer(invocation -> {
+            Stream.of(invocation.<String[]>getArgument(0)).forEach(transactionTrytes::add);
+            return Collections.emptyList();
+        }).when(api).sendTrytes(any(String[].class), any(int.class), any(int.class), isNull());
+        doAnswer(invocation -> transactions().collect(Collectors.toList())).when(api).findTransactionObjectsByTag(any(String[].class));
+        doCallRealMethod().when(api).findTransactionObjectsByTag(any(String[].class), anyInt(), any());
+        doAnswer(invocation -> {
+            FindTransactionResponse response = mock(FindTransactionResponse.class);
+            String[] hashes = transactions().map(jota.model.Transaction::getHash).toArray(String[]::new);
+            when(response.getHashes()).thenReturn(hashes);
+            return response;
+        }).when(api).findTransactions(isNull(), any(String[].class), isNull(), isNull());
+        doCallRealMethod().when(api).findTransactions(isNull(), any(String[].class), isNull(), isNull(), any());
+        doAnswer(invocation -> {
+            Set<String> hashes = new HashSet<>(Arrays.asList(invocation.<String[]>getArgument(0)));
+            return transactions().filter(tx -> hashes.contains(tx.getHash())).collect(Collectors.toList());
+        }).when(api).findTransactionsObjectsByHashes(any(String[].class));
+
+        sender = new DefaultMessageSender.Builder<String, String>()
+                .setApi(api)
+                .setFormat(Data.STRING)
+                .setSerializer(s -> s)
+                .build();
+        Instant timestamp = now;
+        for (String message : Arrays.asList("A", "B", "C")) {
+            timestamp = timestamp.plusSeconds(1);
+            sender.addTransaction(new MessageTransaction<>("ID" + message, timestamp, "TAG", message));
+        }
+
+        MessageParser<String, String> parser = new MessageParser.Builder<String, String>()
+                .setMessageQueue(new LinkedBlockingQueue<>())
+                .setTransactionQueue(new LinkedBlockingQueue<>())
+                .setTransactionsBeforePushThreshold(new LinkedBlockingQueue<>())
+                .setMessagesBeforePushThresholdConsumer(messages -> {
+                })
+                .setFormat(Data.STRING)
+                .setKeepAliveInterval(Duration.ofMinutes(60))
+                .setDeserializer(s -> s)
+                .build();
+
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(now.plusSeconds(60));
+
+        history = new RemoteHistory.Builder<String>()
+                .setApi(api)
+                .setBundleParser(parser::parseBundles)
+                .setBatchSize(2)
+                .setClock(clock)
+                .build();
+    }
+
+    @Test
+    public void testHistoricQueryIsCached() throws Exception {
+        List<Transaction<String>> first = history.getTransactions("TAG", Instant.MIN, now.plusSeconds(30));
+        List<Transaction<String>> second = history.getTransactions("TAG", Instant.MIN, now.plusSeconds(10));
+
+        Assert.assertThat("messages", contents(first), is(Arrays.asList("A", "B", "C")));
+        Assert.assertThat("cached", contents(second), is(Arrays.asList("A", "B", "C")));
+        verify(api, times(1)).findTransactionObjectsByTag(any(String[].class));
+    }
+
+    @Test
+    public void testRecentQueryFetchesNewTransactions() throws Exception {
+        history.getTransactions("TAG", Instant.MIN, Instant.MAX);
+        sender.addTransaction(new MessageTransaction<>("IDD", now.plusSeconds(70), "TAG", "D"));
+        String added = transactionTrytes.get(transactionTrytes.size() - 1);
+        when(clock.instant()).thenReturn(now.plusSeconds(90));
+
+        List<Transaction<String>> latest = history.getTransactions("TAG", Instant.MIN, Instant.MAX);
+
+        Assert.assertThat("messages", contents(latest), is(Arrays.asList("A", "B", "C", "D")));
+        verify(api, times(1)).findTransactionObjectsByTag(any(String[].class));
+        verify(api, times(1)).findTransactionsObjectsByHashes(
+                new String[]{new jota.model.Transaction(added, null).getHash()});
+    }
+
+    @Test
+    public void testQueryUpToLastFetchIsNotRefreshed() throws Exception {
+        history.getTransactions("TAG", Instant.MIN, Instant.MAX);
+        List<Transaction<String>> latest = history.getTransactions("TAG", Instant.MIN, Instant.MAX);
+
+        Assert.assertThat("messages", contents(latest), is(Arrays.asList("A", "B", "C")));
+        verify(api, never()).findTransactions(isNull(), any(String[].class), isNull(), isNull());
+    }
+
+    @Test
+    public void testRefreshIsRateLimited() throws Exception {
+        history.getTransactions("TAG", Instant.MIN, Instant.MAX);
+        sender.addTransaction(new MessageTransaction<>("IDD", now.plusSeconds(61), "TAG", "D"));
+        when(clock.instant()).thenReturn(now.plusSeconds(65));
+
+        List<Transaction<String>> latest = history.getTransactions("TAG", Instant.MIN, Instant.MAX);
+
+        Assert.assertThat("served from cache", contents(latest), is(Arrays.asList("A", "B", "C")));
+        verify(api, never()).findTransactions(isNull(), any(String[].class), isNull(), isNull());
+    }
+
+    @Test
+    public void testTagMayTakeWholeCache() throws Exception {
+        history = new RemoteHistory.Builder<String>()
+                .setApi(api)
+                .setBundleParser(txs -> txs.stream()
+                        .<Transaction<String>>map(tx -> new MessageTransaction<>(tx.getIdentifier(), now, "TAG", "M"))
+                        .collect(Collectors.toList()))
+                .setBatchSize(2)
+                .setClock(clock)
+                // three messages and their three hashes
+                .setCacheSize(6)
+                .build();
+
+        history.getTransactions("TAG", Instant.MIN, now.plusSeconds(30));
+        history.getTransactions("TAG", Instant.MIN, now.plusSeconds(30));
+        verify(api, times(1)).findTransactionObjectsByTag(any(String[].class));
+
+        history = new RemoteHistory.Builder<String>()
+                .setApi(api)
+                .setBundleParser(txs -> Collections.emptyList())
+                .setBatchSize(2)
+                .setClock(clock)
+                // three hashes and three transactions of incomplete bundles
+                .setCacheSize(5)
+                .build();
+        history.getTransactions("TAG", Instant.MIN, now.plusSeconds(30));
+        history.getTransactions("TAG", Instant.MIN, now.plusSeconds(30));
+        verify(api, times(3)).findTransactionObjectsByTag(any(String[].class));
+    }
+
+    private Stream<jota.model.Transaction> transactions() {
+        return transactionTrytes.stream().map(txTrytes -> new jota.model.Transaction(txTrytes, null));
+    }
+
+    private static List<String> contents(List<Transaction<String>> transactions) {
+        return transactions.stream().map(Transaction::getObject).collect(Collectors.toList());
+    }
+}
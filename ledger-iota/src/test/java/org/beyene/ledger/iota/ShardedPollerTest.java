@@ -0,0 +1,133 @@
+package org.beyene.ledger.iota;
+
+import org.beyene.ledger.iota.TagChangeListener.TagChangeAction;
+import org.beyene.ledger.iota.TagChangeListener.TagChangeEvent;
+import org.beyene.ledger.iota.util.Iota;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ShardedPollerTest {
+
+    private final List<Set<String>> queriedTags = new CopyOnWriteArrayList<>();
+    private final List<Runnable> scheduled = new CopyOnWriteArrayList<>();
+    private Iota api;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        api = mock(Iota.class);
+        doAnswer(invocation -> {
+            queriedTags.add(new HashSet<>(Arrays.asList(invocation.<String[]>getArgument(0))));
+            return new ArrayList<>();
+        }).when(api).findTransactionObjectsByTag(any(String[].class));
+        doCallRealMethod().when(api).findTransactionObjectsByTag(any(String[].class), anyInt(), any());
+
+        executor = mock(ScheduledExecutorService.class);
+        doAnswer(invocation -> {
+            scheduled.add(invocation.getArgument(0));
+            return null;
+        }).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    private ShardedPoller poller(int shards, String... tags) {
+        return new ShardedPoller.Builder()
+                .setApi(api)
+                .setQueue(new LinkedBlockingQueue<>())
+                .setTags(new HashSet<>(Arrays.asList(tags)))
+                .setPushThreshold(Instant.now())
+                .setSlidingWindow(Duration.ofMinutes(5))
+                .setTransactionBeforePushThresholdConsumer(txs -> {
+                })
+                .setKnownHashesCache(new HashMap<>())
+                .setShards(shards)
+                .setScheduleBuilder(new AdaptivePollSchedule.Builder().setExecutor(executor))
+                .build();
+    }
+
+    @Test
+    public void testEachShardPollsOwnTags() throws Exception {
+        ShardedPoller poller = poller(2, "A", "B", "C", "D");
+        poller.start();
+        Assert.assertThat("one schedule per shard", scheduled.size(), is(2));
+
+        scheduled.forEach(Runnable::run);
+
+        Set<Set<String>> expected = new HashSet<>(poller.getShardTags());
+        Assert.assertThat("tags per poll", new HashSet<>(queriedTags), is(expected));
+        Assert.assertThat("shard sizes", sizes(poller), is(Arrays.asList(2, 2)));
+    }
+
+    @Test
+    public void testAddAndRebalance() throws Exception {
+        ShardedPoller poller = poller(3);
+        for (String tag : Arrays.asList("A", "B", "C", "D", "E", "F"))
+            poller.tagChanged(event(tag, TagChangeAction.ADD));
+        Assert.assertThat("balanced after add", sizes(poller), is(Arrays.asList(2, 2, 2)));
+
+        // duplicate subscription doesn't change assignment
+        poller.tagChanged(event("A", TagChangeAction.ADD));
+        Assert.assertThat("no duplicate", sizes(poller), is(Arrays.asList(2, 2, 2)));
+
+        Set<String> first = poller.getShardTags().get(0);
+        first.forEach(tag -> poller.tagChanged(event(tag, TagChangeAction.REMOVE)));
+
+        List<Integer> sizes = sizes(poller);
+        Assert.assertThat("tags left", sizes.stream().mapToInt(Integer::intValue).sum(), is(4));
+        Assert.assertThat("balanced after remove",
+                Collections.max(sizes) - Collections.min(sizes) <= 1, is(true));
+    }
+
+    @Test
+    public void testMovedTagKeepsPushThreshold() throws Exception {
+        Instant ahead = Instant.ofEpochSecond(Instant.now().getEpochSecond() + 3_600);
+        jota.model.Transaction tx = mock(jota.model.Transaction.class);
+        when(tx.getHash()).thenReturn("HASH");
+        when(tx.getBundle()).thenReturn("BUNDLE");
+        when(tx.getTag()).thenReturn("A99");
+        when(tx.getTimestamp()).thenReturn(ahead.getEpochSecond());
+        doAnswer(invocation -> Arrays.asList(invocation.<String[]>getArgument(0)).contains("A")
+                ? new ArrayList<>(Collections.singletonList(tx))
+                : new ArrayList<>()).when(api).findTransactionObjectsByTag(any(String[].class));
+
+        ShardedPoller poller = poller(2);
+        for (String tag : Arrays.asList("A", "B", "C"))
+            poller.tagChanged(event(tag, TagChangeAction.ADD));
+        Assert.assertThat(poller.getShardTags().get(0), is(new HashSet<>(Arrays.asList("A", "C"))));
+
+        // first shard sees a newer transaction, so its threshold is ahead of the second one
+        poller.start();
+        scheduled.get(0).run();
+        Instant behind = poller.getPushThreshold("B");
+        Assert.assertThat(poller.getPushThreshold("A"), is(ahead));
+        Assert.assertThat(behind.isBefore(ahead), is(true));
+
+        poller.tagChanged(event("B", TagChangeAction.REMOVE));
+        Set<String> moved = poller.getShardTags().get(1);
+        Assert.assertThat("one tag moved", moved.size(), is(1));
+        Assert.assertThat("threshold moved along", poller.getPushThreshold(moved.iterator().next()), is(ahead));
+    }
+
+    private static List<Integer> sizes(ShardedPoller poller) {
+        return poller.getShardTags().stream().map(Set::size).collect(Collectors.toList());
+    }
+
+    private static TagChangeEvent event(String tag, TagChangeAction action) {
+        return new TagChangeEvent(Collections.singleton(tag), tag, action);
+    }
+}
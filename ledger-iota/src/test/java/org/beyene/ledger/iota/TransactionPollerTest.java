@@ -3,6 +3,7 @@ package org.beyene.ledger.iota;
 import org.beyene.ledger.api.Transaction;
 import org.beyene.ledger.iota.TagChangeListener.TagChangeAction;
 import org.beyene.ledger.iota.TagChangeListener.TagChangeEvent;
+import org.beyene.ledger.iota.util.CoalescingIota;
 import org.beyene.ledger.iota.util.Iota;
 import org.junit.After;
 import org.junit.Assert;
@@ -26,8 +27,14 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNot.not;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class TransactionPollerTest {
 
@@ -73,6 +80,7 @@ public class TransactionPollerTest {
             // fill txs dependent on state
             return provideTransactions(tags);
         }).when(api).findTransactionObjectsByTag(any(String[].class));
+        doCallRealMethod().when(api).findTransactionObjectsByTag(any(String[].class), anyInt(), any());
 
         this.tags = new HashSet<>(Collections.singletonList("A"));
         this.queue = new LinkedBlockingQueue<>();
@@ -101,6 +109,50 @@ public class TransactionPollerTest {
                 .build();
     }
 
+    @Test
+    public void testCoalescingIotaStreamsPolls() throws Exception {
+        List<jota.model.Transaction> txs = IntStream.range(0, 3)
+                .mapToObj(i -> mockTransaction("HASH" + i))
+                .collect(Collectors.toList());
+
+        Iota delegate = mock(Iota.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<List<jota.model.Transaction>>>getArgument(2).accept(txs);
+            return null;
+        }).when(delegate).findTransactionObjectsByTag(any(String[].class), anyInt(), any());
+
+        CoalescingIota api = new CoalescingIota(delegate);
+        Assert.assertThat("first poll", coalescedPoller(api).poll(), is(3));
+        Assert.assertThat("second poll", coalescedPoller(api).poll(), is(3));
+
+        // streamed queries are passed through, hashes are not loaded at once
+        verify(delegate, times(2)).findTransactionObjectsByTag(any(String[].class), anyInt(), any());
+        verify(delegate, never()).findTransactions(any(), any(), any(), any());
+    }
+
+    private TransactionPoller coalescedPoller(Iota api) {
+        return new TransactionPoller.Builder()
+                .setApi(api)
+                .setQueue(new LinkedBlockingQueue<>())
+                .setTags(new HashSet<>(Collections.singletonList("A")))
+                .setPushThreshold(pushThreshold.minus(Duration.ofMinutes(1)))
+                .setSlidingWindow(slidingWindow)
+                .setTransactionBeforePushThresholdConsumer(txs -> {
+                })
+                .setKnownHashesCache(new HashMap<>())
+                .setBatchSize(2)
+                .build();
+    }
+
+    private jota.model.Transaction mockTransaction(String hash) {
+        jota.model.Transaction tx = mock(jota.model.Transaction.class);
+        when(tx.getHash()).thenReturn(hash);
+        when(tx.getBundle()).thenReturn(hash);
+        when(tx.getTag()).thenReturn("A");
+        when(tx.getTimestamp()).thenReturn(pushThreshold.getEpochSecond());
+        return tx;
+    }
+
     private List<jota.model.Transaction> provideTransactions(Set<String> tags) {
         if (options.contains(PROVIDED))
             return new ArrayList<>(returnedTransactions);
@@ -0,0 +1,77 @@
+package org.beyene.ledger.iota;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class TryteCodecTest {
+
+    @Test
+    public void testCompatibleWithHexTrytes() throws Exception {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) i;
+
+        String expected = jota.utils.TrytesConverter.toTrytes(DatatypeConverter.printHexBinary(bytes));
+        Assert.assertThat("encoded", TryteCodec.toTrytes(ByteBuffer.wrap(bytes)), is(expected));
+        Assert.assertThat("decoded", TryteCodec.toBytes(expected, expected.length()), is(bytes));
+    }
+
+    @Test
+    public void testRoundTripWithPadding() throws Exception {
+        byte[] bytes = new byte[1000];
+        new Random(7).nextBytes(bytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1010);
+        buffer.position(5);
+        buffer.put(bytes);
+        buffer.flip().position(5);
+
+        String padded = TryteCodec.toTrytes(buffer) + "999999999";
+        Assert.assertThat("position unchanged", buffer.position(), is(5));
+        Assert.assertThat("round trip", TryteCodec.toBytes(padded, TryteCodec.trimmedLength(padded)), is(bytes));
+    }
+
+    @Test
+    public void testFragmentsAcrossBoundaries() throws Exception {
+        byte[] bytes = new byte[1500];
+        new Random(11).nextBytes(bytes);
+        String message = "fragmented message \u0001";
+
+        // 2187 trytes per fragment, so bytes and characters span fragments
+        List<String> byteFragments = fragments(TryteCodec.toTrytes(ByteBuffer.wrap(bytes)), 2187);
+        int byteLength = TryteCodec.trimmedLength(byteFragments);
+        ByteBuffer decoded = ByteBuffer.allocate(byteLength / 4);
+        TryteCodec.toBytes(byteFragments, byteLength, decoded);
+        Assert.assertThat("bytes", decoded.array(), is(bytes));
+
+        // last character ends with 9, which is stripped like padding
+        List<String> charFragments = fragments(jota.utils.TrytesConverter.toTrytes(message), 7);
+        int charLength = TryteCodec.trimmedLength(charFragments);
+        char[] chars = new char[(charLength + 1) / 2];
+        int written = TryteCodec.toChars(charFragments, charLength, chars);
+        Assert.assertThat("chars", new String(chars, 0, written), is(message));
+    }
+
+    private static List<String> fragments(String trytes, int length) {
+        List<String> fragments = new ArrayList<>();
+        for (int i = 0; i < trytes.length(); i += length)
+            fragments.add(StringUtils.rightPad(trytes.substring(i, Math.min(i + length, trytes.length())), length, '9'));
+        // padding only
+        fragments.add(StringUtils.repeat('9', length));
+        return fragments;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTrytes() throws Exception {
+        TryteCodec.toBytes("ZZZZ", 4);
+    }
+}
@@ -0,0 +1,142 @@
+package org.beyene.ledger.iota.util;
+
+import jota.dto.response.FindTransactionResponse;
+import jota.model.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class CoalescingIotaTest {
+
+    private static final String HASH_A = hash('A');
+    private static final String HASH_B = hash('B');
+    private static final String HASH_C = hash('C');
+
+    private ExecutorService executor;
+    private CountDownLatch release;
+    private Iota delegate;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        release = new CountDownLatch(1);
+        delegate = mock(Iota.class);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testIdenticalFindTransactionsShareCall() throws Exception {
+        FindTransactionResponse response = mock(FindTransactionResponse.class);
+        CountDownLatch entered = new CountDownLatch(1);
+        when(delegate.findTransactions(isNull(), any(), isNull(), isNull())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return response;
+        });
+
+        CoalescingIota api = new CoalescingIota(delegate);
+        Future<FindTransactionResponse> first = executor.submit(
+                () -> api.findTransactions(null, new String[]{"TAG1", "TAG2"}, null, null));
+        Assert.assertThat("delegate entered", entered.await(5, TimeUnit.SECONDS), is(true));
+
+        // same query with different order of tags joins the call in flight
+        Future<FindTransactionResponse> second = executor.submit(
+                () -> api.findTransactions(null, new String[]{"TAG2", "TAG1"}, null, null));
+        Thread.sleep(100);
+        release.countDown();
+
+        Assert.assertThat("first", first.get(5, TimeUnit.SECONDS), is(sameInstance(response)));
+        Assert.assertThat("second", second.get(5, TimeUnit.SECONDS), is(sameInstance(response)));
+        verify(delegate, times(1)).findTransactions(isNull(), any(), isNull(), isNull());
+
+        // nothing in flight, so next call goes to the node again
+        api.findTransactions(null, new String[]{"TAG1"}, null, null);
+        verify(delegate, times(2)).findTransactions(isNull(), any(), isNull(), isNull());
+    }
+
+    @Test
+    public void testOverlappingHashesAreUnioned() throws Exception {
+        Transaction a = mock(Transaction.class);
+        Transaction b = mock(Transaction.class);
+        Transaction c = mock(Transaction.class);
+        CountDownLatch entered = new CountDownLatch(1);
+        when(delegate.findTransactionsObjectsByHashes(any())).thenAnswer(invocation -> {
+            String[] hashes = invocation.getArgument(0);
+            if (hashes.length == 2) {
+                entered.countDown();
+                release.await();
+            }
+            return Arrays.stream(hashes)
+                    .map(hash -> hash.equals(HASH_A) ? a : hash.equals(HASH_B) ? b : c)
+                    .collect(Collectors.toList());
+        });
+
+        CoalescingIota api = new CoalescingIota(delegate);
+        Future<List<Transaction>> first = executor.submit(
+                () -> api.findTransactionsObjectsByHashes(new String[]{HASH_A, HASH_B}));
+        Assert.assertThat("delegate entered", entered.await(5, TimeUnit.SECONDS), is(true));
+
+        Future<List<Transaction>> second = executor.submit(
+                () -> api.findTransactionsObjectsByHashes(new String[]{HASH_C, HASH_B}));
+
+        // second caller only fetches the hash nobody asked for yet
+        verify(delegate, timeout(5_000)).findTransactionsObjectsByHashes(new String[]{HASH_C});
+        release.countDown();
+
+        Assert.assertThat("first", first.get(5, TimeUnit.SECONDS), is(Arrays.asList(a, b)));
+        Assert.assertThat("second", second.get(5, TimeUnit.SECONDS), is(Arrays.asList(c, b)));
+        verify(delegate, times(2)).findTransactionsObjectsByHashes(any());
+    }
+
+    @Test
+    public void testFailureIsPropagatedToWaiters() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        when(delegate.findTransactions(isNull(), any(), isNull(), isNull())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            throw new IllegalStateException("node down");
+        });
+
+        CoalescingIota api = new CoalescingIota(delegate);
+        Future<FindTransactionResponse> first = executor.submit(
+                () -> api.findTransactions(null, new String[]{"TAG"}, null, null));
+        Assert.assertThat("delegate entered", entered.await(5, TimeUnit.SECONDS), is(true));
+        Future<FindTransactionResponse> second = executor.submit(
+                () -> api.findTransactions(null, new String[]{"TAG"}, null, null));
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<FindTransactionResponse> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("exception expected");
+            } catch (ExecutionException e) {
+                Assert.assertThat("cause", e.getCause() instanceof IllegalStateException, is(true));
+            }
+        }
+        verify(delegate, times(1)).findTransactions(isNull(), any(), isNull(), isNull());
+    }
+
+    private static String hash(char c) {
+        char[] chars = new char[81];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,339 @@
+package org.beyene.ledger.iota.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import jota.error.ArgumentException;
+import jota.model.Bundle;
+import jota.model.Transaction;
+import jota.pow.SpongeFactory;
+import jota.utils.Constants;
+import okhttp3.ConnectionPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class IotaAPICoreExtendedTest {
+
+    private final List<String> encodings = new CopyOnWriteArrayList<>();
+    private final List<JsonObject> commands = new CopyOnWriteArrayList<>();
+    private volatile Function<JsonObject, String> responder = command -> "{\"hashes\":[]}";
+    private volatile int status = 200;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody()) {
+                int b;
+                while ((b = in.read()) != -1)
+                    request.write(b);
+            }
+
+            encodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")));
+            JsonObject command = new JsonParser().parse(new String(request.toByteArray(), StandardCharsets.UTF_8)).getAsJsonObject();
+            commands.add(command);
+            byte[] body = responder.apply(command).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        encodings.clear();
+        commands.clear();
+    }
+
+    private IotaAPIExtended.Builder builder() {
+        return new IotaAPIExtended.Builder()
+                .protocol("http")
+                .host("localhost")
+                .port(Integer.toString(server.getAddress().getPort()));
+    }
+
+    @Test
+    public void testSharedConnectionPool() throws Exception {
+        ConnectionPool connectionPool = new ConnectionPool(5, 1, TimeUnit.MINUTES);
+        IotaAPIExtended first = builder().connectionPool(connectionPool).build();
+        IotaAPIExtended second = builder().connectionPool(connectionPool).build();
+
+        first.findTransactionsByBundles("BUNDLE");
+        second.findTransactionsByBundles("BUNDLE");
+        first.findTransactionsByBundles("BUNDLE");
+
+        Assert.assertThat("requests", encodings.size(), is(3));
+        Assert.assertThat("warm connection reused", connectionPool.connectionCount(), is(1));
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        builder().build().findTransactionsByBundles("BUNDLE");
+        builder().compression(false).build().findTransactionsByBundles("BUNDLE");
+
+        Assert.assertThat("gzip requested", encodings.get(0), is("gzip"));
+        Assert.assertThat("compression disabled", encodings.get(1), is("identity"));
+    }
+
+    @Test
+    public void testStreamedTransactionBatches() throws Exception {
+        List<String> hashes = Arrays.asList(hash('A'), hash('B'), hash('C'));
+        String trytes = String.join("", Collections.nCopies(2673, "9"));
+        responder = command -> {
+            if ("findTransactions".equals(command.get("command").getAsString()))
+                return "{\"duration\":1,\"hashes\":" + toJson(hashes) + "}";
+
+            int n = command.getAsJsonArray("hashes").size();
+            return "{\"trytes\":" + toJson(Collections.nCopies(n, trytes)) + ",\"duration\":1}";
+        };
+
+        List<List<Transaction>> batches = new ArrayList<>();
+        builder().build().findTransactionObjectsByTag(new String[]{"TAG"}, 2, batches::add);
+
+        Assert.assertThat("batch sizes", batches.stream().map(List::size).collect(Collectors.toList()), is(Arrays.asList(2, 1)));
+        Assert.assertThat("one getTrytes call per batch", commands.stream()
+                .filter(command -> "getTrytes".equals(command.get("command").getAsString()))
+                .count(), is(2L));
+    }
+
+    @Test
+    public void testStreamedBatchesOnExecutor() throws Exception {
+        List<String> hashes = Arrays.asList(hash('A'), hash('B'), hash('C'));
+        responder = command -> {
+            if ("findTransactions".equals(command.get("command").getAsString()))
+                return "{\"duration\":1,\"hashes\":" + toJson(hashes) + "}";
+
+            List<String> trytes = new ArrayList<>();
+            // first tryte of the signature tells the hash
+            command.getAsJsonArray("hashes").forEach(hash -> trytes.add(hash.getAsString().charAt(0)
+                    + String.join("", Collections.nCopies(2672, "9"))));
+            return "{\"trytes\":" + toJson(trytes) + ",\"duration\":1}";
+        };
+
+        List<Runnable> tasks = new CopyOnWriteArrayList<>();
+        List<String> received = new ArrayList<>();
+        builder()
+                .bundleParallelism(2)
+                .bundleExecutor(task -> {
+                    tasks.add(task);
+                    new Thread(task).start();
+                })
+                .build()
+                .findTransactionObjectsByTag(new String[]{"TAG"}, 2, batch -> batch.forEach(tx -> received.add(tx.getSignatureFragments().substring(0, 1))));
+
+        Assert.assertThat("batches fetched on executor", tasks.size(), is(2));
+        Assert.assertThat("order of hashes", received, is(Arrays.asList("A", "B", "C")));
+    }
+
+    @Test
+    public void testStreamedBatchesHandedOverWhileReading() throws Exception {
+        List<String> hashes = Arrays.asList(hash('A'), hash('B'), hash('C'));
+        String trytes = String.join("", Collections.nCopies(2673, "9"));
+        responder = command -> {
+            if ("findTransactions".equals(command.get("command").getAsString()))
+                return "{\"duration\":1,\"hashes\":" + toJson(hashes) + "}";
+
+            int n = command.getAsJsonArray("hashes").size();
+            return "{\"trytes\":" + toJson(Collections.nCopies(n, trytes)) + ",\"duration\":1}";
+        };
+
+        List<Long> fetchedBeforeHandOver = new ArrayList<>();
+        builder()
+                .bundleParallelism(1)
+                .build()
+                .findTransactionObjectsByTag(new String[]{"TAG"}, 1, batch -> fetchedBeforeHandOver.add(commands.stream()
+                        .filter(command -> "getTrytes".equals(command.get("command").getAsString()))
+                        .count()));
+
+        Assert.assertThat("each batch consumed before the next is fetched", fetchedBeforeHandOver,
+                is(Arrays.asList(1L, 2L, 3L)));
+    }
+
+    @Test
+    public void testStreamedInvalidTrytes() throws Exception {
+        responder = command -> {
+            if ("findTransactions".equals(command.get("command").getAsString()))
+                return "{\"duration\":1,\"hashes\":" + toJson(Collections.singletonList(hash('A'))) + "}";
+
+            status = 400;
+            return "{\"error\":\"Invalid hashes\"}";
+        };
+
+        try {
+            builder().build().findTransactionObjectsByTag(new String[]{"TAG"}, 2, batch -> Assert.fail());
+            Assert.fail("exception expected");
+        } catch (IllegalStateException e) {
+            Assert.assertThat("cause kept", e.getCause() instanceof ArgumentException, is(true));
+        }
+    }
+
+    @Test(expected = ArgumentException.class)
+    public void testStreamedBadRequest() throws Exception {
+        status = 400;
+        responder = command -> "{\"error\":\"Invalid tag\"}";
+        builder().build().findTransactions(null, new String[]{"TAG"}, null, null, hash -> Assert.fail(hash));
+    }
+
+    @Test
+    public void testBatchedBundle() throws Exception {
+        Map<String, String> trytes = new LinkedHashMap<>();
+        List<String> bundle = linkedBundle(3, hash('A'));
+        // reattachment, same bundle hash but other trunks
+        List<String> reattached = linkedBundle(3, hash('B'));
+        for (String tx : reattached)
+            trytes.put(hashOf(tx), tx);
+        for (String tx : bundle)
+            trytes.put(hashOf(tx), tx);
+        respondWith(trytes, new ArrayList<>(trytes.keySet()));
+
+        String tail = hashOf(bundle.get(0));
+        Transaction[] transactions = builder().build().getBundle(tail).getTransactions().toArray(new Transaction[0]);
+
+        Assert.assertThat("transactions", Arrays.stream(transactions).map(Transaction::toTrytes).collect(Collectors.toList()), is(bundle));
+        Assert.assertThat("getTrytes calls", count("getTrytes"), is(2L));
+        Assert.assertThat("findTransactions calls", count("findTransactions"), is(1L));
+    }
+
+    @Test
+    public void testBatchedBundleFallback() throws Exception {
+        Map<String, String> trytes = new LinkedHashMap<>();
+        List<String> bundle = linkedBundle(3, hash('A'));
+        for (String tx : bundle)
+            trytes.put(hashOf(tx), tx);
+        // node hasn't indexed the last transaction yet
+        respondWith(trytes, new ArrayList<>(trytes.keySet()).subList(0, 2));
+
+        String tail = hashOf(bundle.get(0));
+        List<Transaction> transactions = builder().build().getBundle(tail).getTransactions();
+        Assert.assertThat("transactions", transactions.stream().map(Transaction::toTrytes).collect(Collectors.toList()), is(bundle));
+        // tail, batch, then the last transaction and its trunk
+        Assert.assertThat("walked from the last transaction", count("getTrytes"), is(4L));
+
+        commands.clear();
+        transactions = builder().batchedTraversal(false).build().getBundle(tail).getTransactions();
+        Assert.assertThat(transactions.size(), is(3));
+        Assert.assertThat("one call per transaction and trunk", count("getTrytes"), is(4L));
+        Assert.assertThat("no bundle lookup", count("findTransactions"), is(0L));
+    }
+
+    @Test
+    public void testBundlesFromAddresses() throws Exception {
+        Map<String, String> trytes = new LinkedHashMap<>();
+        List<String> bundle = linkedBundle(3, hash('A'));
+        List<String> reattached = linkedBundle(3, hash('B'));
+        for (String tx : bundle)
+            trytes.put(hashOf(tx), tx);
+        for (String tx : reattached)
+            trytes.put(hashOf(tx), tx);
+        String confirmed = hashOf(bundle.get(0));
+
+        respondWith(trytes, new ArrayList<>(trytes.keySet()));
+        Function<JsonObject, String> delegate = responder;
+        responder = command -> {
+            switch (command.get("command").getAsString()) {
+                case "getNodeInfo":
+                    return "{\"latestSolidSubtangleMilestone\":\"" + hash('M') + "\",\"duration\":1}";
+                case "getInclusionStates":
+                    List<String> states = new ArrayList<>();
+                    command.getAsJsonArray("transactions").forEach(tx -> states.add(String.valueOf(confirmed.equals(tx.getAsString()))));
+                    return "{\"states\":[" + String.join(",", states) + "],\"duration\":1}";
+                default:
+                    return delegate.apply(command);
+            }
+        };
+
+        List<Runnable> tasks = new CopyOnWriteArrayList<>();
+        Bundle[] bundles = builder()
+                .bundleParallelism(2)
+                .bundleExecutor(task -> {
+                    tasks.add(task);
+                    new Thread(task).start();
+                })
+                .build()
+                .bundlesFromAddresses(new String[]{hash('C')}, true);
+
+        Assert.assertThat("tails deduplicated", bundles.length, is(2));
+        Assert.assertThat("one helper thread", tasks.size(), is(1));
+        for (Bundle b : bundles) {
+            Transaction tail = b.getTransactions().get(0);
+            Assert.assertThat("transactions", b.getTransactions().size(), is(3));
+            Assert.assertThat("inclusion of " + tail.getHash(), tail.getPersistence(), is(confirmed.equals(tail.getHash())));
+        }
+        // by address, one lookup for all bundle hashes, then one per getBundle
+        Assert.assertThat(count("findTransactions"), is(4L));
+    }
+
+    private void respondWith(Map<String, String> trytes, List<String> indexed) {
+        responder = command -> {
+            if ("findTransactions".equals(command.get("command").getAsString()))
+                return "{\"duration\":1,\"hashes\":" + toJson(indexed) + "}";
+
+            // unknown transactions are all 9s, like on a node
+            String unknown = String.join("", Collections.nCopies(2673, "9"));
+            List<String> found = new ArrayList<>();
+            command.getAsJsonArray("hashes").forEach(hash -> found.add(trytes.getOrDefault(hash.getAsString(), unknown)));
+            return "{\"trytes\":" + toJson(found) + ",\"duration\":1}";
+        };
+    }
+
+    private long count(String name) {
+        return commands.stream()
+                .filter(command -> name.equals(command.get("command").getAsString()))
+                .count();
+    }
+
+    // zero value bundle, the trunk of each transaction is the next one
+    private static List<String> linkedBundle(int length, String trunk) {
+        Bundle bundle = new Bundle();
+        bundle.addEntry(length, hash('C'), 0, String.join("", Collections.nCopies(Constants.TAG_LENGTH, "9")), 0);
+        bundle.addTrytes(Collections.nCopies(length, String.join("", Collections.nCopies(Constants.MESSAGE_LENGTH, "M"))));
+        bundle.finalize(null);
+
+        String[] trytes = new String[length];
+        for (int i = length - 1; i >= 0; i--) {
+            Transaction tx = bundle.getTransactions().get(i);
+            tx.setTrunkTransaction(trunk);
+            tx.setBranchTransaction(hash('9'));
+            trytes[i] = tx.toTrytes();
+            trunk = hashOf(trytes[i]);
+        }
+        return Arrays.asList(trytes);
+    }
+
+    private static String hashOf(String trytes) {
+        return new Transaction(trytes, SpongeFactory.create(SpongeFactory.Mode.KERL)).getHash();
+    }
+
+    private static String toJson(List<String> values) {
+        return values.stream().map(value -> "\"" + value + "\"").collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String hash(char c) {
+        return String.join("", Collections.nCopies(81, String.valueOf(c)));
+    }
+}
@@ -0,0 +1,167 @@
+package org.beyene.ledger.iota.util;
+
+import com.sun.net.httpserver.HttpServer;
+import jota.dto.response.FindTransactionResponse;
+import jota.error.ArgumentException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class IotaNodePoolTest {
+
+    private final List<StubNode> stubs = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        stubs.add(new StubNode(200));
+        stubs.add(new StubNode(500));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stubs.forEach(StubNode::stop);
+        stubs.clear();
+    }
+
+    private IotaNodePool.Builder poolBuilder() {
+        IotaNodePool.Builder builder = new IotaNodePool.Builder();
+        stubs.forEach(stub -> builder.addNode(stub.api()));
+        return builder;
+    }
+
+    @Test
+    public void testReadFailover() throws Exception {
+        IotaNodePool pool = poolBuilder().build();
+
+        for (int i = 0; i < 4; i++) {
+            FindTransactionResponse response = pool.findTransactions(null, new String[]{"TAG"}, null, null);
+            Assert.assertThat("hashes", response.getHashes().length, is(1));
+        }
+
+        Assert.assertThat("healthy node hit every time", stubs.get(0).requests.get(), is(4));
+    }
+
+    @Test
+    public void testEjection() throws Exception {
+        IotaNodePool pool = poolBuilder().setFailureThreshold(2).build();
+
+        for (int i = 0; i < 10; i++)
+            pool.findTransactions(null, new String[]{"TAG"}, null, null);
+
+        Assert.assertThat("failing node ejected", stubs.get(1).requests.get(), is(2));
+        Assert.assertThat("healthy nodes", pool.getHealthyNodes().size(), is(1));
+    }
+
+    @Test
+    public void testBroadcastToAllNodes() throws Exception {
+        stubs.add(new StubNode(200));
+        IotaNodePool pool = poolBuilder().build();
+
+        pool.storeTransactions("TRYTES");
+        stubs.forEach(stub -> Assert.assertThat("broadcast", stub.requests.get(), is(1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAllNodesFail() throws Exception {
+        stubs.get(0).status = 500;
+        IotaNodePool pool = poolBuilder().build();
+        pool.findTransactions(null, new String[]{"TAG"}, null, null);
+    }
+
+    @Test
+    public void testNoFailoverOnArgumentException() throws Exception {
+        Iota first = mock(Iota.class);
+        Iota second = mock(Iota.class);
+        when(first.getTrytes(any())).thenThrow(new ArgumentException("invalid hashes"));
+        when(second.getTrytes(any())).thenThrow(new ArgumentException("invalid hashes"));
+
+        IotaNodePool pool = new IotaNodePool.Builder().addNode(first).addNode(second).build();
+        try {
+            pool.getTrytes("HASH");
+            Assert.fail("argument exception expected");
+        } catch (ArgumentException e) {
+            // expected
+        }
+
+        verify(first, times(1)).getTrytes(any());
+        verifyZeroInteractions(second);
+    }
+
+    @Test
+    public void testLeastLatencyPrefersMeasuredNodes() throws Exception {
+        Iota measured = mock(Iota.class);
+        Iota unmeasured = mock(Iota.class);
+        FindTransactionResponse response = mock(FindTransactionResponse.class);
+        when(measured.findTransactions(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return response;
+        });
+        when(unmeasured.findTransactions(any(), any(), any(), any())).thenReturn(response);
+
+        IotaNodePool pool = new IotaNodePool.Builder()
+                .addNode(measured)
+                .addNode(unmeasured)
+                .setRouting(IotaNodePool.Routing.LEAST_LATENCY)
+                .build();
+        for (int i = 0; i < 3; i++)
+            pool.findTransactions(null, new String[]{"TAG"}, null, null);
+
+        verify(measured, times(3)).findTransactions(any(), any(), any(), any());
+        verifyZeroInteractions(unmeasured);
+    }
+
+    private static class StubNode {
+
+        private final HttpServer server;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile int status;
+
+        StubNode(int status) throws IOException {
+            this.status = status;
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/", exchange -> {
+                try (InputStream in = exchange.getRequestBody()) {
+                    while (in.read() != -1) {
+                        // drain request
+                    }
+                }
+
+                requests.incrementAndGet();
+                byte[] body = (this.status == 200 ? "{\"hashes\":[\"HASH\"]}" : "{\"error\":\"stub\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(this.status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        Iota api() {
+            return new IotaAPIExtended.Builder()
+                    .protocol("http")
+                    .host("localhost")
+                    .port(Integer.toString(server.getAddress().getPort()))
+                    .build();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+}
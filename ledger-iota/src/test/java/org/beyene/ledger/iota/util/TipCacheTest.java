@@ -0,0 +1,174 @@
+package org.beyene.ledger.iota.util;
+
+import jota.dto.response.GetTransactionsToApproveResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TipCacheTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private MutableClock clock;
+    private TipCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        this.clock = new MutableClock(Instant.now());
+        this.cache = new TipCache.Builder()
+                .setTipSupplier(depth -> newResponse())
+                .setFreshness(Duration.ofSeconds(10))
+                .setRefreshAfter(Duration.ofSeconds(5))
+                .setExecutor(refreshes::add)
+                .setClock(clock)
+                .build();
+    }
+
+    private GetTransactionsToApproveResponse newResponse() {
+        int n = fetches.incrementAndGet();
+        GetTransactionsToApproveResponse response = mock(GetTransactionsToApproveResponse.class);
+        when(response.getTrunkTransaction()).thenReturn("TRUNK" + n);
+        when(response.getBranchTransaction()).thenReturn("BRANCH" + n);
+        return response;
+    }
+
+    @Test
+    public void testReuseWithinFreshness() throws Exception {
+        GetTransactionsToApproveResponse first = cache.get(3);
+        clock.advance(Duration.ofSeconds(1));
+        GetTransactionsToApproveResponse second = cache.get(3);
+
+        Assert.assertThat("same tips", second, is(sameInstance(first)));
+        Assert.assertThat("fetches", fetches.get(), is(1));
+        Assert.assertThat("no refresh", refreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        GetTransactionsToApproveResponse first = cache.get(3);
+        clock.advance(Duration.ofSeconds(6));
+
+        // stale, but still fresh: served from cache while refresh is scheduled once
+        Assert.assertThat("served cached", cache.get(3), is(sameInstance(first)));
+        Assert.assertThat("served cached", cache.get(3), is(sameInstance(first)));
+        Assert.assertThat("single refresh", refreshes.size(), is(1));
+
+        refreshes.remove(0).run();
+        GetTransactionsToApproveResponse refreshed = cache.get(3);
+        Assert.assertThat("refreshed tips", refreshed, is(not(sameInstance(first))));
+        Assert.assertThat("fetches", fetches.get(), is(2));
+    }
+
+    @Test
+    public void testExpiredFetchedSynchronously() throws Exception {
+        GetTransactionsToApproveResponse first = cache.get(3);
+        clock.advance(Duration.ofSeconds(11));
+
+        GetTransactionsToApproveResponse second = cache.get(3);
+        Assert.assertThat("new tips", second, is(not(sameInstance(first))));
+        Assert.assertThat("fetches", fetches.get(), is(2));
+        Assert.assertThat("no refresh", refreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDepthsCachedSeparately() throws Exception {
+        cache.get(3);
+        cache.get(4);
+        Assert.assertThat("fetches", fetches.get(), is(2));
+    }
+
+    @Test
+    public void testConcurrentMissesShareFetch() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger blockedFetches = new AtomicInteger();
+        TipCache blocking = new TipCache.Builder()
+                .setTipSupplier(depth -> {
+                    if (depth == 3) {
+                        blockedFetches.incrementAndGet();
+                        entered.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return newResponse();
+                })
+                .setFreshness(Duration.ofSeconds(10))
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<GetTransactionsToApproveResponse> first = executor.submit(() -> blocking.get(3));
+        entered.await(5, TimeUnit.SECONDS);
+        Future<GetTransactionsToApproveResponse> second = executor.submit(() -> blocking.get(3));
+
+        // not blocked by the fetch in flight
+        Assert.assertThat(blocking.get(4), is(not(nullValue())));
+
+        release.countDown();
+        Assert.assertThat("shared result", second.get(5, TimeUnit.SECONDS), is(sameInstance(first.get(5, TimeUnit.SECONDS))));
+        Assert.assertThat("single fetch", blockedFetches.get(), is(1));
+
+        executor.shutdown();
+        blocking.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingResponse() throws Exception {
+        new TipCache.Builder()
+                .setTipSupplier(depth -> null)
+                .setFreshness(Duration.ofSeconds(10))
+                .build()
+                .get(3);
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package org.beyene.ledger.memory;
+
+import org.beyene.ledger.api.Format;
+import org.beyene.ledger.api.Ledger;
+import org.beyene.ledger.api.Transaction;
+import org.beyene.ledger.api.TransactionListener;
+import org.beyene.ledger.api.metrics.Metrics;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Ledger that keeps its transactions in memory.</p>
+ * <p>Transactions are indexed by timestamp, globally and per tag, so range queries are logarithmic in the number
+ * of transactions. Reads are lock-free, appends and eviction share a lock so both indexes stay consistent.
+ * Listeners are called asynchronously; all transactions of a tag are delivered by the same thread, in the order
+ * they were added. If the number of transactions exceeds the maximum size, the oldest transactions are
+ * evicted.</p>
+ * <p>Messages are stored as objects, the ledger never serializes them.</p>
+ *
+ * @param <M> Message type
+ * @param <D> Data type in ledger, e.g. String or byte[]
+ */
+public class MemoryLedger<M, D> implements Ledger<M, D> {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryLedger.class.getName());
+
+    private final Format<D> format;
+    private final int maxSize;
+    private final Metrics metrics;
+
+    private final ConcurrentNavigableMap<Key, Transaction<M>> transactions;
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Key, Transaction<M>>> tags;
+    private final AtomicLong sequence;
+    private final AtomicInteger size;
+    // guards updates of both indexes
+    private final ReentrantLock lock;
+
+    private final ConcurrentMap<String, TransactionListener<M>> listeners;
+    private final List<ExecutorService> dispatchers;
+
+    private MemoryLedger(Builder<M, D> builder) {
+        this.format = Objects.requireNonNull(builder.format);
+        this.maxSize = builder.maxSize;
+        this.metrics = builder.metrics;
+
+        this.transactions = new ConcurrentSkipListMap<>();
+        this.tags = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong();
+        this.size = new AtomicInteger();
+        this.lock = new ReentrantLock();
+
+        this.listeners = new ConcurrentHashMap<>(builder.listeners);
+
+        int threads = builder.listenerThreads;
+        if (threads == 0)
+            threads = Runtime.getRuntime().availableProcessors();
+
+        // one single-threaded executor per slot keeps the order of each tag
+        List<ExecutorService> dispatchers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++)
+            dispatchers.add(Executors.newSingleThreadExecutor());
+        this.dispatchers = Collections.unmodifiableList(dispatchers);
+
+        metrics.gauge("memory.size", size::get);
+    }
+
+    @Override
+    public Transaction<M> addTransaction(Transaction<M> transaction) {
+        Objects.requireNonNull(transaction);
+        long start = System.nanoTime();
+
+        Instant timestamp = Optional.ofNullable(transaction.getTimestamp()).orElse(Instant.now());
+        String tag = Objects.toString(transaction.getTag(), "");
+        MemoryTransaction<M> tx = new MemoryTransaction<>(transaction.getIdentifier(), timestamp, tag,
+                transaction.getObject());
+
+        lock.lock();
+        try {
+            Key key = new Key(timestamp, sequence.getAndIncrement());
+            transactions.put(key, tx);
+            tags.computeIfAbsent(tag, t -> new ConcurrentSkipListMap<>()).put(key, tx);
+            size.incrementAndGet();
+            evict();
+        } finally {
+            lock.unlock();
+        }
+
+        metrics.recordSince("memory.write", start);
+        dispatch(tx);
+        return tx;
+    }
+
+    private void dispatch(Transaction<M> tx) {
+        TransactionListener<M> listener = listeners.get(tx.getTag());
+        if (listener == null)
+            return;
+
+        ExecutorService dispatcher = dispatchers.get(Math.floorMod(tx.getTag().hashCode(), dispatchers.size()));
+        try {
+            dispatcher.execute(() -> listener.onTransaction(tx));
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Ledger is closed, dropping notification", e);
+        }
+    }
+
+    // requires lock
+    private void evict() {
+        if (maxSize <= 0)
+            return;
+
+        while (size.get() > maxSize) {
+            Map.Entry<Key, Transaction<M>> oldest = transactions.pollFirstEntry();
+            if (oldest == null)
+                return;
+
+            size.decrementAndGet();
+            String tag = oldest.getValue().getTag();
+            ConcurrentNavigableMap<Key, Transaction<M>> bucket = tags.get(tag);
+            if (bucket != null) {
+                bucket.remove(oldest.getKey());
+                // appends create buckets under the same lock
+                if (bucket.isEmpty())
+                    tags.remove(tag);
+            }
+        }
+    }
+
+    /**
+     * @return transactions with timestamp in (since, to), ordered by timestamp and insertion
+     */
+    @Override
+    public List<Transaction<M>> getTransactions(Instant since, Instant to) {
+        return query(transactions, since, to);
+    }
+
+    @Override
+    public List<Transaction<M>> getTransactions(String tag, Instant since, Instant to) {
+        Objects.requireNonNull(tag);
+        ConcurrentNavigableMap<Key, Transaction<M>> bucket = tags.get(tag);
+        return bucket != null ? query(bucket, since, to) : new ArrayList<>();
+    }
+
+    private List<Transaction<M>> query(ConcurrentNavigableMap<Key, Transaction<M>> index, Instant since, Instant to) {
+        if (!since.isBefore(to))
+            return new ArrayList<>();
+
+        long start = System.nanoTime();
+        // sequence numbers are non-negative, so the bounds exclude all keys with timestamp since or to
+        List<Transaction<M>> result = new ArrayList<>(
+                index.subMap(new Key(since, Long.MAX_VALUE), false, new Key(to, -1), false).values());
+        metrics.recordSince("memory.read", start);
+        return result;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean addTransactionListener(String tag, TransactionListener<M> listener) {
+        Objects.requireNonNull(tag);
+        Objects.requireNonNull(listener);
+        listeners.put(tag, listener);
+        return true;
+    }
+
+    @Override
+    public boolean removeTransactionListener(String tag) {
+        return listeners.remove(tag) != null;
+    }
+
+    @Override
+    public Map<String, TransactionListener<M>> getTransactionListeners() {
+        return Collections.unmodifiableMap(listeners);
+    }
+
+    @Override
+    public Format<D> getFormat() {
+        return format;
+    }
+
+    @Override
+    public void close() {
+        dispatchers.forEach(ExecutorService::shutdown);
+        try {
+            for (ExecutorService dispatcher : dispatchers)
+                dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, Integer> getTagSizes() {
+        return tags.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().size()));
+    }
+
+    private static final class Key implements Comparable<Key> {
+
+        private final Instant timestamp;
+        private final long sequence;
+
+        Key(Instant timestamp, long sequence) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int cmp = timestamp.compareTo(other.timestamp);
+            return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key that = (Key) o;
+            return sequence == that.sequence && timestamp.equals(that.timestamp);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * timestamp.hashCode() + Long.hashCode(sequence);
+        }
+    }
+
+    private static class MemoryTransaction<M> implements Transaction<M> {
+
+        private final String identifier;
+        private final Instant timestamp;
+        private final String tag;
+        private final M object;
+
+        MemoryTransaction(String identifier, Instant timestamp, String tag, M object) {
+            this.identifier = identifier;
+            this.timestamp = timestamp;
+            this.tag = tag;
+            this.object = object;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public M getObject() {
+            return object;
+        }
+    }
+
+    public static class Builder<M, D> {
+
+        private Format<D> format;
+        private Map<String, TransactionListener<M>> listeners = Collections.emptyMap();
+        private int maxSize = 100_000; // in transactions, 0 is unbounded
+        private int listenerThreads = 2;
+        private Metrics metrics = Metrics.noop();
+
+        public Builder<M, D> setFormat(Format<D> format) {
+            this.format = format;
+            return this;
+        }
+
+        public Builder<M, D> setListeners(Map<String, TransactionListener<M>> listeners) {
+            Objects.requireNonNull(listeners);
+            this.listeners = listeners;
+            return this;
+        }
+
+        public Builder<M, D> setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param listenerThreads number of threads that call listeners, 0 is number of available processors
+         */
+        public Builder<M, D> setListenerThreads(int listenerThreads) {
+            this.listenerThreads = listenerThreads;
+            return this;
+        }
+
+        public Builder<M, D> setMetrics(Metrics metrics) {
+            Objects.requireNonNull(metrics);
+            this.metrics = metrics;
+            return this;
+        }
+
+        public MemoryLedger<M, D> build() {
+            return new MemoryLedger<>(this);
+        }
+    }
+}
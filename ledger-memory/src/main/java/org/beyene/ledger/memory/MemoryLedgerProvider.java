@@ -0,0 +1,68 @@
+package org.beyene.ledger.memory;
+
+import org.beyene.ledger.api.*;
+import org.beyene.ledger.api.metrics.Metrics;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Provider for MemoryLedger.</p>
+ * <p>Properties and default values:</p>
+ * <ul>
+ * <li>memory.size</li>
+ * <p>Maximum number of transactions, the oldest are evicted first. Use 0 for no limit.</p>
+ * <p>Default is 100000 (int).</p>
+ * <li>ledger.pool.threads</li>
+ * <p>Number of threads that call listeners. Use 0 to set threads to number of available processors.</p>
+ * <p>Default is 2 (int).</p>
+ * </ul>
+ */
+public class MemoryLedgerProvider implements LedgerProvider {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryLedgerProvider.class.getName());
+
+    private final NumberFormat nf = NumberFormat.getInstance();
+
+    @Override
+    public <M, D> Ledger<M, D> newLedger(Serializer<M, D> serializer,
+                                         Deserializer<M, D> deserializer,
+                                         Format<D> format,
+                                         Map<String, TransactionListener<M>> listeners,
+                                         Map<String, Object> properties) {
+        Objects.requireNonNull(serializer);
+        Objects.requireNonNull(deserializer);
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(listeners);
+        Objects.requireNonNull(properties);
+
+        MemoryLedger.Builder<M, D> builder = new MemoryLedger.Builder<M, D>()
+                .setFormat(format)
+                .setListeners(listeners)
+                .setMetrics(Metrics.fromProperties(properties));
+
+        setNumber(properties.get("memory.size"), Number::intValue, builder::setMaxSize);
+        setNumber(properties.get("ledger.pool.threads"), Number::intValue, builder::setListenerThreads);
+
+        return builder.build();
+    }
+
+    private <T extends Number> void setNumber(Object value, Function<Number, T> converter, Consumer<T> setter) {
+        if (Objects.isNull(value))
+            return;
+
+        try {
+            Number number = nf.parse(Objects.toString(value));
+            setter.accept(converter.apply(number));
+        } catch (ParseException e) {
+            LOGGER.log(Level.INFO, e.toString(), e);
+            throw new IllegalArgumentException("Not a valid number: " + value, e);
+        }
+    }
+}
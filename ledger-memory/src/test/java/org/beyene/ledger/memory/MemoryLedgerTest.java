@@ -0,0 +1,198 @@
+package org.beyene.ledger.memory;
+
+import org.beyene.ledger.api.Data;
+import org.beyene.ledger.api.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class MemoryLedgerTest {
+
+    private static final Instant T0 = Instant.parse("2018-10-01T00:00:00Z");
+
+    private MemoryLedger<String, String> ledger;
+
+    @Before
+    public void setUp() throws Exception {
+        ledger = new MemoryLedger.Builder<String, String>()
+                .setFormat(Data.STRING)
+                .setMaxSize(0)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ledger.close();
+    }
+
+    @Test
+    public void testRangeQuery() throws Exception {
+        add("A", 3, "a3");
+        add("B", 1, "b1");
+        add("A", 2, "a2");
+        add("A", 2, "a2'");
+        add("B", 5, "b5");
+
+        Assert.assertThat("all, sorted", messages(ledger.getTransactions(Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("b1", "a2", "a2'", "a3", "b5")));
+        Assert.assertThat("bounds are exclusive", messages(ledger.getTransactions(at(1), at(5))),
+                is(Arrays.asList("a2", "a2'", "a3")));
+        Assert.assertThat("by tag", messages(ledger.getTransactions("B", Instant.MIN, at(5))),
+                is(Collections.singletonList("b1")));
+        Assert.assertThat("unknown tag", ledger.getTransactions("C", Instant.MIN, Instant.MAX).isEmpty(), is(true));
+        Assert.assertThat("empty window", ledger.getTransactions(at(3), at(3)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ledger.close();
+        ledger = new MemoryLedger.Builder<String, String>()
+                .setFormat(Data.STRING)
+                .setMaxSize(3)
+                .build();
+
+        add("A", 4, "a4");
+        add("B", 1, "b1");
+        add("A", 2, "a2");
+        add("B", 3, "b3");
+
+        Assert.assertThat("size", ledger.size(), is(3));
+        Assert.assertThat("oldest evicted", messages(ledger.getTransactions(Instant.MIN, Instant.MAX)),
+                is(Arrays.asList("a2", "b3", "a4")));
+        Assert.assertThat("evicted from tag index", messages(ledger.getTransactions("B", Instant.MIN, Instant.MAX)),
+                is(Collections.singletonList("b3")));
+
+        add("A", 5, "a5");
+        add("A", 6, "a6");
+        Assert.assertThat("empty tag removed", ledger.getTagSizes().keySet(), is(Collections.singleton("A")));
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        IntStream.range(0, 1_000).forEach(i -> executor.execute(() -> add("T" + i % 4, i % 10, "m" + i)));
+        executor.shutdown();
+        Assert.assertThat("terminated", executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+
+        Assert.assertThat("size", ledger.size(), is(1_000));
+        Assert.assertThat("all", ledger.getTransactions(Instant.MIN, Instant.MAX).size(), is(1_000));
+        Assert.assertThat("per tag", ledger.getTransactions("T1", Instant.MIN, Instant.MAX).size(), is(250));
+    }
+
+    @Test
+    public void testConcurrentAppendsWithEviction() throws Exception {
+        ledger.close();
+        ledger = new MemoryLedger.Builder<String, String>()
+                .setFormat(Data.STRING)
+                .setMaxSize(100)
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        IntStream.range(0, 4_000).forEach(i -> executor.execute(() -> add("T" + i % 4, i % 10, "m" + i)));
+        executor.shutdown();
+        Assert.assertThat("terminated", executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+
+        int tagged = ledger.getTagSizes().values().stream().mapToInt(Integer::intValue).sum();
+        Assert.assertThat("size", ledger.size(), is(100));
+        Assert.assertThat("all", ledger.getTransactions(Instant.MIN, Instant.MAX).size(), is(100));
+        Assert.assertThat("tag indexes match", tagged, is(100));
+    }
+
+    @Test
+    public void testListenerIsReplaced() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        ledger.addTransactionListener("A", tx -> received.add("first"));
+        boolean replaced = ledger.addTransactionListener("A", tx -> {
+            received.add("second");
+            latch.countDown();
+        });
+
+        add("A", 1, "a1");
+
+        Assert.assertThat("added", replaced, is(true));
+        Assert.assertThat("delivered", latch.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat("only latest listener", received, is(Collections.singletonList("second")));
+    }
+
+    @Test
+    public void testListenerOrderPerTag() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(100);
+        ledger.addTransactionListener("A", tx -> {
+            received.add(tx.getObject());
+            latch.countDown();
+        });
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add("a" + i);
+            add("A", i, "a" + i);
+            add("B", i, "b" + i);
+        }
+
+        Assert.assertThat("delivered", latch.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat("in order, only own tag", received, is(expected));
+
+        Assert.assertThat("removed", ledger.removeTransactionListener("A"), is(true));
+        Assert.assertThat("no listeners", ledger.getTransactionListeners().isEmpty(), is(true));
+    }
+
+    private void add(String tag, int second, String message) {
+        ledger.addTransaction(new SimpleTransaction(tag, at(second), message));
+    }
+
+    private static Instant at(int second) {
+        return T0.plusSeconds(second);
+    }
+
+    private static List<String> messages(List<Transaction<String>> transactions) {
+        return transactions.stream().map(Transaction::getObject).collect(Collectors.toList());
+    }
+
+    private static class SimpleTransaction implements Transaction<String> {
+
+        private final String tag;
+        private final Instant timestamp;
+        private final String object;
+
+        SimpleTransaction(String tag, Instant timestamp, String object) {
+            this.tag = tag;
+            this.timestamp = timestamp;
+            this.object = object;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "";
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public String getObject() {
+            return object;
+        }
+    }
+}